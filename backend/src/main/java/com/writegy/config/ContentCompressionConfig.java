@@ -0,0 +1,22 @@
+package com.writegy.config;
+
+import com.writegy.model.converter.CompressedContentConverter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ContentCompressionConfig {
+
+    @Value("${documents.content-compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${documents.content-compression.min-length:512}")
+    private int minLength;
+
+    @PostConstruct
+    public void configure() {
+        // The converter and entity setters are created by Hibernate, not Spring, so they read static settings
+        CompressedContentConverter.configure(enabled, minLength);
+    }
+}
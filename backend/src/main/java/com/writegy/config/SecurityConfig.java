@@ -93,8 +93,10 @@ public class SecurityConfig {
 
         config.setAllowedOrigins(origins.stream().distinct().collect(Collectors.toList()));
         // Allow common methods
-        config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        config.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept", "Origin", "X-Requested-With"));
+        config.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
+        config.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept", "Origin", "X-Requested-With",
+                "If-Match", "If-None-Match"));
+        config.setExposedHeaders(List.of("ETag"));
         config.setAllowCredentials(true);
         config.setMaxAge(3600L); // Cache preflight requests for 1 hour
 
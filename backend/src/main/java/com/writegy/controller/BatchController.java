@@ -0,0 +1,26 @@
+package com.writegy.controller;
+
+import com.writegy.dto.BatchOperation;
+import com.writegy.dto.BatchResponse;
+import com.writegy.service.DocumentBatchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/batch")
+public class BatchController {
+
+    @Autowired
+    private DocumentBatchService documentBatchService;
+
+    @PostMapping
+    public ResponseEntity<BatchResponse> executeBatch(@RequestBody List<BatchOperation> operations) {
+        return ResponseEntity.ok(documentBatchService.execute(operations));
+    }
+}
@@ -1,22 +1,53 @@
 package com.writegy.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.writegy.dto.ContentSpliceRequest;
+import com.writegy.dto.DocumentAnalyticsDTO;
+import com.writegy.dto.DocumentChangeFeed;
+import com.writegy.dto.DocumentChunkWindow;
+import com.writegy.dto.DocumentContentStats;
 import com.writegy.dto.DocumentDTO;
+import com.writegy.dto.DocumentImportRequest;
+import com.writegy.dto.DocumentImportResult;
+import com.writegy.dto.DocumentPlacement;
 import com.writegy.dto.DocumentRequest;
+import com.writegy.dto.DocumentSuggestionDTO;
+import com.writegy.dto.DocumentVersionDTO;
+import com.writegy.dto.MoveRequest;
+import com.writegy.dto.NearDuplicateDTO;
+import com.writegy.dto.RelatedDocumentDTO;
+import com.writegy.dto.VocabularyProfileDTO;
 import com.writegy.model.entity.Document;
+import com.writegy.service.DocumentAnalyticsService;
+import com.writegy.service.DocumentChangeService;
+import com.writegy.service.DocumentChunkService;
+import com.writegy.service.DocumentExportService;
 import com.writegy.service.DocumentService;
+import com.writegy.service.DocumentSimilarityService;
+import com.writegy.service.DocumentVersionService;
+import com.writegy.service.DocumentVocabularyService;
+import com.writegy.util.CompactDocumentTree;
+import com.writegy.util.TextDiff;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/documents")
@@ -25,6 +56,30 @@ public class DocumentController {
     @Autowired
     private DocumentService documentService;
 
+    @Autowired
+    private DocumentVersionService documentVersionService;
+
+    @Autowired
+    private DocumentExportService documentExportService;
+
+    @Autowired
+    private DocumentChunkService documentChunkService;
+
+    @Autowired
+    private DocumentChangeService documentChangeService;
+
+    @Autowired
+    private DocumentSimilarityService documentSimilarityService;
+
+    @Autowired
+    private DocumentAnalyticsService documentAnalyticsService;
+
+    @Autowired
+    private DocumentVocabularyService documentVocabularyService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<DocumentDTO> createDocument(
             @RequestParam(value = "file", required = false) MultipartFile file,
@@ -79,83 +134,319 @@ public class DocumentController {
 
     @GetMapping
     public ResponseEntity<List<DocumentDTO>> getAllDocuments() {
-        List<Document> documents = documentService.getDocuments();
-        List<DocumentDTO> dtos = documents.stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        List<DocumentDTO> dtos = documentService.getDocuments();
         return ResponseEntity.ok(dtos);
     }
 
+    // Streaming ingestion: the body is read as a character stream instead of being bound to a String
+
+    @PostMapping(value = "/content", consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.TEXT_HTML_VALUE, MediaType.TEXT_MARKDOWN_VALUE})
+    public ResponseEntity<DocumentContentStats> createDocumentFromStream(@RequestParam("title") String title,
+                                                                        HttpServletRequest request) throws IOException, ExecutionException, InterruptedException {
+        DocumentContentStats stats = documentService.createDocumentStreaming(title, openBodyReader(request));
+        return ResponseEntity.ok().eTag(eTagFor(stats.getId(), stats.getVersion())).body(stats);
+    }
+
+    @PutMapping(value = "/{id}/content", consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.TEXT_HTML_VALUE, MediaType.TEXT_MARKDOWN_VALUE})
+    public ResponseEntity<DocumentContentStats> replaceContent(@PathVariable Long id, HttpServletRequest request) throws IOException {
+        DocumentContentStats stats = documentService.replaceContentStreaming(id, openBodyReader(request));
+        return ResponseEntity.ok().eTag(eTagFor(id, stats.getVersion())).body(stats);
+    }
+
+    // Chunked documents: in-place edits and viewport reads without transferring the whole text
+
+    @PatchMapping("/{id}/content")
+    public ResponseEntity<DocumentContentStats> spliceContent(@PathVariable Long id, @RequestBody ContentSpliceRequest request,
+                                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = ifMatch != null ? expectedVersion(id, ifMatch) : null;
+        DocumentContentStats stats = documentService.spliceContent(id, request.getOffset(), request.getDeleteCount(),
+                request.getText(), expectedVersion);
+        return ResponseEntity.ok().eTag(eTagFor(id, stats.getVersion())).body(stats);
+    }
+
+    @GetMapping("/{id}/chunks")
+    public ResponseEntity<DocumentChunkWindow> getChunks(@PathVariable Long id,
+                                                         @RequestParam(required = false) String after,
+                                                         @RequestParam(required = false) Long offset,
+                                                         @RequestParam(defaultValue = "20") int limit) {
+        DocumentChunkWindow window = documentChunkService.readWindow(id, documentService.getCurrentUserId(), after, offset, limit);
+        return ResponseEntity.ok().eTag(eTagFor(id, window.getVersion())).body(window);
+    }
+
+    // The servlet API defaults text bodies to ISO-8859-1; the editor sends UTF-8
+    private static Reader openBodyReader(HttpServletRequest request) throws IOException {
+        if (request.getCharacterEncoding() == null) {
+            request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        }
+        return request.getReader();
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<DocumentSuggestionDTO>> suggestTitles(
+            @RequestParam("prefix") String prefix,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        // Cap the limit so a typeahead call can never turn into a full listing
+        List<DocumentSuggestionDTO> suggestions = documentService.suggestTitles(prefix, Math.min(Math.max(limit, 1), 50));
+        return ResponseEntity.ok(suggestions);
+    }
+
+    @PostMapping("/import")
+    public ResponseEntity<DocumentImportResult> importDocuments(@RequestBody DocumentImportRequest request) {
+        DocumentImportResult result = documentService.importDocuments(request);
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<DocumentChangeFeed> getChanges(
+            @RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        Long userId = documentService.getCurrentUserId();
+        // Buffered autosaves have no change sequence value yet; write them so they show up on this page
+        documentService.flushAutosaves(userId);
+        return ResponseEntity.ok(documentChangeService.getChanges(userId, since, limit));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportDocuments(@RequestParam(defaultValue = "ndjson") String format) {
+        // Resolve the caller here: the body is written on another thread without the security context
+        Long userId = documentService.getCurrentUserId();
+        // The export reads rows directly, so buffered autosaves are written first
+        documentService.flushAutosaves(userId);
+
+        StreamingResponseBody body;
+        String contentType;
+        if (format.equalsIgnoreCase("zip")) {
+            body = outputStream -> documentExportService.exportZip(userId, outputStream);
+            contentType = "application/zip";
+        } else if (format.equalsIgnoreCase("ndjson")) {
+            body = outputStream -> documentExportService.exportNdjson(userId, outputStream);
+            contentType = "application/x-ndjson";
+        } else {
+            throw new IllegalArgumentException("Unsupported export format: " + format + " (use ndjson or zip)");
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(contentType))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"writegy-export." + format.toLowerCase() + "\"")
+                .body(body);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<DocumentDTO> getDocumentById(@PathVariable Long id) {
-        Document document = documentService.getDocument(id);
-        DocumentDTO dto = mapToDTO(document);
-        return ResponseEntity.ok(dto);
+    public ResponseEntity<DocumentDTO> getDocumentById(@PathVariable Long id,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Revalidation reads only the version; content is loaded only when it has changed
+        if (ifNoneMatch != null) {
+            String eTag = eTagFor(id, documentService.getDocumentVersion(id));
+            if (eTagMatches(ifNoneMatch, eTag, false)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+        }
+
+        DocumentDTO dto = documentService.getDocumentDTO(id);
+        return ResponseEntity.ok().eTag(eTagFor(dto.getId(), dto.getVersion())).body(dto);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<DocumentDTO> updateDocument(@PathVariable Long id, @RequestBody DocumentRequest request) {
-        Document updatedDocument = documentService.updateDocument(id, request.getTitle(), request.getContent());
+    public ResponseEntity<DocumentDTO> updateDocument(@PathVariable Long id, @RequestBody DocumentRequest request,
+                                                      @RequestParam(defaultValue = "false") boolean autosave,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = ifMatch != null ? expectedVersion(id, ifMatch) : null;
+
+        if (autosave) {
+            // Buffered and written back on the next flush; the ETag names the version that flush writes,
+            // so the client's next conditional save is not refused because of its own autosave
+            Long version = documentService.autosaveDocument(id, request.getTitle(), request.getContent(), expectedVersion);
+            return ResponseEntity.accepted().eTag(eTagFor(id, version)).build();
+        }
+
+        Document updatedDocument = documentService.updateDocument(id, request.getTitle(), request.getContent(), expectedVersion);
         DocumentDTO dto = mapToDTO(updatedDocument);
-        return ResponseEntity.ok(dto);
+        return ResponseEntity.ok().eTag(eTagFor(dto.getId(), dto.getVersion())).body(dto);
+    }
+
+    // Strong ETag: every write to a document row bumps its version
+    private static String eTagFor(Long id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    // If-None-Match compares weakly, If-Match strongly (RFC 9110)
+    private static boolean eTagMatches(String header, String eTag, boolean strong) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) {
+                if (strong) continue;
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag)) return true;
+        }
+        return false;
+    }
+
+    // Version the client expects for If-Match; -1 never matches, null means any version ("*")
+    private static Long expectedVersion(Long id, String ifMatch) {
+        if (ifMatch.trim().equals("*")) return null;
+        String prefix = "\"" + id + "-";
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                try {
+                    return Long.parseLong(tag.substring(prefix.length(), tag.length() - 1));
+                } catch (NumberFormatException e) {
+                    // Not one of ours; keep looking
+                }
+            }
+        }
+        return -1L;
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteDocument(@PathVariable Long id) {
-        documentService.deleteDocument(id);
+    public ResponseEntity<Void> deleteDocument(@PathVariable Long id,
+                                               @RequestParam(defaultValue = "false") boolean permanent) {
+        documentService.deleteDocument(id, permanent);
         return ResponseEntity.noContent().build();
     }
 
+    // Trash: deleted documents stay restorable until the purge job removes them
+
+    @GetMapping("/trash")
+    public ResponseEntity<List<DocumentDTO>> getTrash() {
+        return ResponseEntity.ok(documentService.getTrash());
+    }
+
+    @PostMapping("/{id}/restore")
+    public ResponseEntity<DocumentDTO> restoreDocument(@PathVariable Long id) {
+        DocumentDTO dto = documentService.restoreDocument(id);
+        return ResponseEntity.ok().eTag(eTagFor(dto.getId(), dto.getVersion())).body(dto);
+    }
+
     // Tree Hierarchy Endpoints
 
     @GetMapping("/tree")
-    public ResponseEntity<List<Document>> getDocumentTree() {
-        List<Document> tree = documentService.getDocumentTree();
-        return ResponseEntity.ok(tree);
+    public ResponseEntity<StreamingResponseBody> getDocumentTree() {
+        // Query and assemble on the request thread, then stream the nested JSON straight to the client
+        CompactDocumentTree tree = documentService.getDocumentTree();
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                tree.writeJson(generator);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @PostMapping("/{id}/parent")
-    public ResponseEntity<Document> setParent(@PathVariable Long id, @RequestParam Long parentId) {
+    public ResponseEntity<DocumentDTO> setParent(@PathVariable Long id, @RequestParam Long parentId) {
         Document document = documentService.setDocumentParent(id, parentId);
-        return ResponseEntity.ok(document);
+        return ResponseEntity.ok(mapToDTO(document));
     }
 
     @DeleteMapping("/{id}/parent")
-    public ResponseEntity<Document> removeParent(@PathVariable Long id) {
+    public ResponseEntity<DocumentDTO> removeParent(@PathVariable Long id) {
         Document document = documentService.removeDocumentParent(id);
-        return ResponseEntity.ok(document);
+        return ResponseEntity.ok(mapToDTO(document));
+    }
+
+    @PostMapping("/{id}/clone")
+    public ResponseEntity<DocumentDTO> cloneDocument(@PathVariable Long id) {
+        // The copy is made in SQL from the rows, so buffered autosaves are written first
+        documentService.flushAutosaves(documentService.getCurrentUserId());
+        DocumentDTO clone = documentService.cloneDocument(id);
+        return ResponseEntity.ok().eTag(eTagFor(clone.getId(), clone.getVersion())).body(clone);
+    }
+
+    @PostMapping("/moves")
+    public ResponseEntity<List<DocumentPlacement>> moveDocuments(@RequestBody List<MoveRequest> moves) {
+        List<DocumentPlacement> changed = documentService.moveDocuments(moves);
+        return ResponseEntity.ok(changed);
+    }
+
+    @GetMapping("/{id}/near-duplicates")
+    public ResponseEntity<List<NearDuplicateDTO>> getNearDuplicates(@PathVariable Long id,
+                                                                    @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        List<NearDuplicateDTO> duplicates = documentSimilarityService.findNearDuplicates(
+                documentService.getCurrentUserId(), id, Math.min(Math.max(limit, 1), 50));
+        return ResponseEntity.ok(duplicates);
+    }
+
+    @GetMapping("/{id}/related")
+    public ResponseEntity<List<RelatedDocumentDTO>> getRelated(@PathVariable Long id,
+                                                               @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        List<RelatedDocumentDTO> related = documentSimilarityService.findRelated(
+                documentService.getCurrentUserId(), id, Math.min(Math.max(limit, 1), 50));
+        return ResponseEntity.ok(related);
+    }
+
+    @GetMapping("/{id}/analytics")
+    public ResponseEntity<DocumentAnalyticsDTO> getAnalytics(@PathVariable Long id) {
+        DocumentAnalyticsDTO analytics = documentAnalyticsService.analyze(id);
+        return ResponseEntity.ok(analytics);
+    }
+
+    @GetMapping("/vocabulary")
+    public ResponseEntity<VocabularyProfileDTO> getUserVocabulary(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        VocabularyProfileDTO profile = documentVocabularyService.getUserProfile(
+                documentService.getCurrentUserId(), Math.min(Math.max(limit, 1), 100));
+        return ResponseEntity.ok(profile);
+    }
+
+    @GetMapping("/{id}/vocabulary")
+    public ResponseEntity<VocabularyProfileDTO> getVocabulary(@PathVariable Long id,
+                                                              @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        VocabularyProfileDTO profile = documentVocabularyService.getDocumentProfile(
+                documentService.getCurrentUserId(), id, Math.min(Math.max(limit, 1), 100));
+        return ResponseEntity.ok(profile);
     }
 
     @GetMapping("/{id}/children")
-    public ResponseEntity<List<Document>> getChildren(@PathVariable Long id) {
-        List<Document> children = documentService.getDocumentChildren(id);
+    public ResponseEntity<List<DocumentDTO>> getChildren(@PathVariable Long id) {
+        List<DocumentDTO> children = documentService.getDocumentChildren(id);
         return ResponseEntity.ok(children);
     }
 
+    @GetMapping("/{id}/subtree")
+    public ResponseEntity<List<DocumentDTO>> getSubtree(@PathVariable Long id) {
+        List<DocumentDTO> subtree = documentService.getDocumentSubtree(id);
+        return ResponseEntity.ok(subtree);
+    }
+
+    // Version History Endpoints
+
+    @GetMapping("/{id}/versions")
+    public ResponseEntity<List<DocumentVersionDTO>> getVersions(@PathVariable Long id) {
+        List<DocumentVersionDTO> versions = documentVersionService.getVersions(id);
+        return ResponseEntity.ok(versions);
+    }
+
+    @GetMapping("/{id}/versions/diff")
+    public ResponseEntity<StreamingResponseBody> diffVersions(@PathVariable Long id,
+                                                              @RequestParam Integer from,
+                                                              @RequestParam Integer to,
+                                                              @RequestParam(defaultValue = "line") String granularity) {
+        // Checked before anything is read; GlobalExceptionHandler answers IllegalArgumentException with 400
+        TextDiff.Granularity unit = switch (granularity.trim().toLowerCase(Locale.ROOT)) {
+            case "line" -> TextDiff.Granularity.LINE;
+            case "word" -> TextDiff.Granularity.WORD;
+            default -> throw new IllegalArgumentException("Unsupported granularity '" + granularity
+                    + "'; use 'line' or 'word'");
+        };
+        // Rebuild both versions on the request thread, then stream the script while it is computed
+        DocumentVersionDTO base = documentVersionService.materializeVersion(id, from);
+        DocumentVersionDTO target = documentVersionService.materializeVersion(id, to);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                documentVersionService.writeDiff(base, target, unit, generator);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping("/{id}/versions/{versionNumber}")
+    public ResponseEntity<DocumentVersionDTO> getVersion(@PathVariable Long id, @PathVariable Integer versionNumber) {
+        DocumentVersionDTO version = documentVersionService.materializeVersion(id, versionNumber);
+        return ResponseEntity.ok(version);
+    }
+
     private DocumentDTO mapToDTO(Document document) {
-        if (document == null) return null;
-
-        DocumentDTO dto = new DocumentDTO();
-        dto.setId(document.getId());
-        dto.setTitle(document.getTitle());
-        dto.setContent(document.getContent());
-        dto.setStatus(document.getStatus());
-        dto.setWordCount(document.getWordCount());
-        dto.setCharacterCount(document.getCharacterCount());
-        dto.setCreatedAt(document.getCreatedAt());
-        dto.setUpdatedAt(document.getUpdatedAt());
-        dto.setDeletedAt(document.getDeletedAt());
-
-        // Hierarchy fields
-        dto.setParentId(document.getParent() != null ? document.getParent().getId() : null);
-        dto.setDepth(document.getDepth());
-        dto.setTreeOrder(document.getTreeOrder());
-
-        // Include user info without circular reference
-        dto.setUserId(document.getUser() != null ? document.getUser().getId() : null);
-        dto.setUserEmail(document.getUser() != null ? document.getUser().getEmail() : null);
-        dto.setUserName(document.getUser() != null ? document.getUser().getName() : null);
-
-        return dto;
+        return documentService.toDTO(document);
     }
 }
@@ -0,0 +1,41 @@
+package com.writegy.dto;
+
+/**
+ * One operation of a batch request. {@code op} is one of get, children, subtree, update,
+ * setParent, removeParent, delete or restore; the other fields are read as that operation needs
+ * them. {@code version} is the If-Match precondition for update, and a setParent without a
+ * {@code parentId} moves the document to the root level.
+ */
+public class BatchOperation {
+    private String op;
+    private Long id;
+    private Long parentId;
+    private String title;
+    private String content;
+    private Long version;
+    private boolean permanent;
+
+    public BatchOperation() {}
+
+    // Getters and setters
+    public String getOp() { return op; }
+    public void setOp(String op) { this.op = op; }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getParentId() { return parentId; }
+    public void setParentId(Long parentId) { this.parentId = parentId; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public boolean isPermanent() { return permanent; }
+    public void setPermanent(boolean permanent) { this.permanent = permanent; }
+}
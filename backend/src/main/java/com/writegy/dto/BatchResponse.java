@@ -0,0 +1,26 @@
+package com.writegy.dto;
+
+import java.util.List;
+
+/**
+ * Results of a batch, one per operation and in request order. A batch is all or nothing: when
+ * {@code committed} is false none of its writes were kept, even those reported with status 200.
+ */
+public class BatchResponse {
+    private boolean committed;
+    private List<BatchResult> results;
+
+    public BatchResponse() {}
+
+    public BatchResponse(boolean committed, List<BatchResult> results) {
+        this.committed = committed;
+        this.results = results;
+    }
+
+    // Getters and setters
+    public boolean isCommitted() { return committed; }
+    public void setCommitted(boolean committed) { this.committed = committed; }
+
+    public List<BatchResult> getResults() { return results; }
+    public void setResults(List<BatchResult> results) { this.results = results; }
+}
@@ -0,0 +1,29 @@
+package com.writegy.dto;
+
+/**
+ * Outcome of one batch operation, with the HTTP status the matching single-document endpoint
+ * would have answered. {@code error} is set only when the operation failed or was not run.
+ */
+public class BatchResult {
+    private int status;
+    private Object body;
+    private String error;
+
+    public BatchResult() {}
+
+    public BatchResult(int status, Object body, String error) {
+        this.status = status;
+        this.body = body;
+        this.error = error;
+    }
+
+    // Getters and setters
+    public int getStatus() { return status; }
+    public void setStatus(int status) { this.status = status; }
+
+    public Object getBody() { return body; }
+    public void setBody(Object body) { this.body = body; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -0,0 +1,23 @@
+package com.writegy.dto;
+
+/**
+ * Replaces {@code deleteCount} chars at {@code offset} with {@code text}; offsets count UTF-16
+ * chars, as editors do.
+ */
+public class ContentSpliceRequest {
+    private long offset;
+    private long deleteCount;
+    private String text;
+
+    public ContentSpliceRequest() {}
+
+    // Getters and setters
+    public long getOffset() { return offset; }
+    public void setOffset(long offset) { this.offset = offset; }
+
+    public long getDeleteCount() { return deleteCount; }
+    public void setDeleteCount(long deleteCount) { this.deleteCount = deleteCount; }
+
+    public String getText() { return text; }
+    public void setText(String text) { this.text = text; }
+}
@@ -0,0 +1,88 @@
+package com.writegy.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Readability and style figures for a document's current content. Sentence lengths are in
+ * words; {@code sentenceLengthDistribution} maps ranges such as "6-10" to sentence counts.
+ * Percentages are of sentences for passive voice and of words for adverbs.
+ */
+public class DocumentAnalyticsDTO {
+    private Long documentId;
+    private long wordCount;
+    private long sentenceCount;
+    private long paragraphCount;
+    private long syllableCount;
+    private double averageSentenceLength;
+    private int medianSentenceLength;
+    private int p90SentenceLength;
+    private int longestSentenceLength;
+    private Map<String, Long> sentenceLengthDistribution;
+    private double fleschReadingEase;
+    private double fleschKincaidGrade;
+    private long passiveSentenceCount;
+    private double passiveSentencePercent;
+    private long adverbCount;
+    private double adverbPercent;
+    private long repeatedWordCount;
+    private List<String> repeatedWords;
+
+    // Default constructor
+    public DocumentAnalyticsDTO() {}
+
+    // Getters and setters
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public long getWordCount() { return wordCount; }
+    public void setWordCount(long wordCount) { this.wordCount = wordCount; }
+
+    public long getSentenceCount() { return sentenceCount; }
+    public void setSentenceCount(long sentenceCount) { this.sentenceCount = sentenceCount; }
+
+    public long getParagraphCount() { return paragraphCount; }
+    public void setParagraphCount(long paragraphCount) { this.paragraphCount = paragraphCount; }
+
+    public long getSyllableCount() { return syllableCount; }
+    public void setSyllableCount(long syllableCount) { this.syllableCount = syllableCount; }
+
+    public double getAverageSentenceLength() { return averageSentenceLength; }
+    public void setAverageSentenceLength(double averageSentenceLength) { this.averageSentenceLength = averageSentenceLength; }
+
+    public int getMedianSentenceLength() { return medianSentenceLength; }
+    public void setMedianSentenceLength(int medianSentenceLength) { this.medianSentenceLength = medianSentenceLength; }
+
+    public int getP90SentenceLength() { return p90SentenceLength; }
+    public void setP90SentenceLength(int p90SentenceLength) { this.p90SentenceLength = p90SentenceLength; }
+
+    public int getLongestSentenceLength() { return longestSentenceLength; }
+    public void setLongestSentenceLength(int longestSentenceLength) { this.longestSentenceLength = longestSentenceLength; }
+
+    public Map<String, Long> getSentenceLengthDistribution() { return sentenceLengthDistribution; }
+    public void setSentenceLengthDistribution(Map<String, Long> sentenceLengthDistribution) { this.sentenceLengthDistribution = sentenceLengthDistribution; }
+
+    public double getFleschReadingEase() { return fleschReadingEase; }
+    public void setFleschReadingEase(double fleschReadingEase) { this.fleschReadingEase = fleschReadingEase; }
+
+    public double getFleschKincaidGrade() { return fleschKincaidGrade; }
+    public void setFleschKincaidGrade(double fleschKincaidGrade) { this.fleschKincaidGrade = fleschKincaidGrade; }
+
+    public long getPassiveSentenceCount() { return passiveSentenceCount; }
+    public void setPassiveSentenceCount(long passiveSentenceCount) { this.passiveSentenceCount = passiveSentenceCount; }
+
+    public double getPassiveSentencePercent() { return passiveSentencePercent; }
+    public void setPassiveSentencePercent(double passiveSentencePercent) { this.passiveSentencePercent = passiveSentencePercent; }
+
+    public long getAdverbCount() { return adverbCount; }
+    public void setAdverbCount(long adverbCount) { this.adverbCount = adverbCount; }
+
+    public double getAdverbPercent() { return adverbPercent; }
+    public void setAdverbPercent(double adverbPercent) { this.adverbPercent = adverbPercent; }
+
+    public long getRepeatedWordCount() { return repeatedWordCount; }
+    public void setRepeatedWordCount(long repeatedWordCount) { this.repeatedWordCount = repeatedWordCount; }
+
+    public List<String> getRepeatedWords() { return repeatedWords; }
+    public void setRepeatedWords(List<String> repeatedWords) { this.repeatedWords = repeatedWords; }
+}
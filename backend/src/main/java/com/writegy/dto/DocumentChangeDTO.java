@@ -0,0 +1,81 @@
+package com.writegy.dto;
+
+import com.writegy.model.enums.DocumentStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the change feed: a document's metadata as of its latest change, without content.
+ * A non-null {@code deletedAt} is a tombstone. Clients fetch content only for documents they open,
+ * comparing {@code version} with what they hold.
+ */
+public class DocumentChangeDTO {
+    private Long id;
+    private Long parentId;
+    private String title;
+    private DocumentStatus status;
+    private String sortKey;
+    private Integer depth;
+    private Integer wordCount;
+    private Integer characterCount;
+    private Long version;
+    private LocalDateTime updatedAt;
+    private LocalDateTime deletedAt;
+    private Long changeSeq;
+
+    public DocumentChangeDTO() {}
+
+    public DocumentChangeDTO(Long id, Long parentId, String title, DocumentStatus status, String sortKey, Integer depth,
+                             Integer wordCount, Integer characterCount, Long version, LocalDateTime updatedAt,
+                             LocalDateTime deletedAt, Long changeSeq) {
+        this.id = id;
+        this.parentId = parentId;
+        this.title = title;
+        this.status = status;
+        this.sortKey = sortKey;
+        this.depth = depth;
+        this.wordCount = wordCount;
+        this.characterCount = characterCount;
+        this.version = version;
+        this.updatedAt = updatedAt;
+        this.deletedAt = deletedAt;
+        this.changeSeq = changeSeq;
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getParentId() { return parentId; }
+    public void setParentId(Long parentId) { this.parentId = parentId; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public DocumentStatus getStatus() { return status; }
+    public void setStatus(DocumentStatus status) { this.status = status; }
+
+    public String getSortKey() { return sortKey; }
+    public void setSortKey(String sortKey) { this.sortKey = sortKey; }
+
+    public Integer getDepth() { return depth; }
+    public void setDepth(Integer depth) { this.depth = depth; }
+
+    public Integer getWordCount() { return wordCount; }
+    public void setWordCount(Integer wordCount) { this.wordCount = wordCount; }
+
+    public Integer getCharacterCount() { return characterCount; }
+    public void setCharacterCount(Integer characterCount) { this.characterCount = characterCount; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public LocalDateTime getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(LocalDateTime deletedAt) { this.deletedAt = deletedAt; }
+
+    public Long getChangeSeq() { return changeSeq; }
+    public void setChangeSeq(Long changeSeq) { this.changeSeq = changeSeq; }
+}
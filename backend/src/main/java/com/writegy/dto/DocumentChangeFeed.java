@@ -0,0 +1,37 @@
+package com.writegy.dto;
+
+import java.util.List;
+
+/**
+ * A page of the change feed. Pass {@code cursor} as {@code since} on the next call; while
+ * {@code hasMore} is set, more changes are waiting. {@code reset} means documents were
+ * hard-deleted after the given cursor: reload the full list, then continue from this cursor.
+ */
+public class DocumentChangeFeed {
+    private List<DocumentChangeDTO> changes;
+    private String cursor;
+    private boolean hasMore;
+    private boolean reset;
+
+    public DocumentChangeFeed() {}
+
+    public DocumentChangeFeed(List<DocumentChangeDTO> changes, String cursor, boolean hasMore, boolean reset) {
+        this.changes = changes;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+        this.reset = reset;
+    }
+
+    // Getters and setters
+    public List<DocumentChangeDTO> getChanges() { return changes; }
+    public void setChanges(List<DocumentChangeDTO> changes) { this.changes = changes; }
+
+    public String getCursor() { return cursor; }
+    public void setCursor(String cursor) { this.cursor = cursor; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+
+    public boolean isReset() { return reset; }
+    public void setReset(boolean reset) { this.reset = reset; }
+}
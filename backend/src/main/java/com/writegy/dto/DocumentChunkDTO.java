@@ -0,0 +1,34 @@
+package com.writegy.dto;
+
+/**
+ * One chunk of a chunked document as served to viewport-based readers. The offset is where the
+ * chunk starts in the whole text, in chars.
+ */
+public class DocumentChunkDTO {
+    private String key;
+    private long offset;
+    private int length;
+    private String content;
+
+    public DocumentChunkDTO() {}
+
+    public DocumentChunkDTO(String key, long offset, int length, String content) {
+        this.key = key;
+        this.offset = offset;
+        this.length = length;
+        this.content = content;
+    }
+
+    // Getters and setters
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public long getOffset() { return offset; }
+    public void setOffset(long offset) { this.offset = offset; }
+
+    public int getLength() { return length; }
+    public void setLength(int length) { this.length = length; }
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+}
@@ -0,0 +1,41 @@
+package com.writegy.dto;
+
+import java.util.List;
+
+/**
+ * A run of consecutive chunks plus what a reader needs to place it: the document's total length
+ * and version, and whether more chunks follow (fetch them with the last chunk's key as cursor).
+ */
+public class DocumentChunkWindow {
+    private Long documentId;
+    private long totalLength;
+    private Long version;
+    private List<DocumentChunkDTO> chunks;
+    private boolean hasMore;
+
+    public DocumentChunkWindow() {}
+
+    public DocumentChunkWindow(Long documentId, long totalLength, Long version, List<DocumentChunkDTO> chunks, boolean hasMore) {
+        this.documentId = documentId;
+        this.totalLength = totalLength;
+        this.version = version;
+        this.chunks = chunks;
+        this.hasMore = hasMore;
+    }
+
+    // Getters and setters
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public long getTotalLength() { return totalLength; }
+    public void setTotalLength(long totalLength) { this.totalLength = totalLength; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public List<DocumentChunkDTO> getChunks() { return chunks; }
+    public void setChunks(List<DocumentChunkDTO> chunks) { this.chunks = chunks; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+}
@@ -0,0 +1,38 @@
+package com.writegy.dto;
+
+/**
+ * Result of a streamed content write: statistics gathered on the fly, without echoing the content.
+ */
+public class DocumentContentStats {
+    private Long id;
+    private long length;
+    private int wordCount;
+    private int characterCount;
+    private Long version;
+
+    public DocumentContentStats() {}
+
+    public DocumentContentStats(Long id, long length, int wordCount, int characterCount, Long version) {
+        this.id = id;
+        this.length = length;
+        this.wordCount = wordCount;
+        this.characterCount = characterCount;
+        this.version = version;
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public long getLength() { return length; }
+    public void setLength(long length) { this.length = length; }
+
+    public int getWordCount() { return wordCount; }
+    public void setWordCount(int wordCount) { this.wordCount = wordCount; }
+
+    public int getCharacterCount() { return characterCount; }
+    public void setCharacterCount(int characterCount) { this.characterCount = characterCount; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
@@ -1,5 +1,6 @@
 package com.writegy.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.writegy.model.enums.DocumentStatus;
 
 import java.time.LocalDateTime;
@@ -19,6 +20,20 @@ public class DocumentDTO {
     private Long parentId;
     private Integer depth;
     private Integer treeOrder;
+    private String sortKey;
+
+    // Optimistic lock version, echoed in the ETag
+    private Long version;
+
+    // Content is assembled from document_chunks rather than read from the row
+    private boolean chunked;
+
+    // Content is kept in object storage; clients only see whether it is
+    private String archiveKey;
+
+    // Content is empty because it is chunked or archived and was not loaded for this response;
+    // listings leave it out and only the single-document GET fills it in
+    private boolean contentOmitted;
 
     // User info (without circular reference)
     private Long userId;
@@ -47,6 +62,24 @@ public class DocumentDTO {
         this.userName = userName;
     }
 
+    // Constructor used by the repository's DTO queries; rows carry content in one of two columns
+    public DocumentDTO(Long id, String title, String content, String compressedContent, DocumentStatus status,
+                      Integer wordCount, Integer characterCount, LocalDateTime createdAt,
+                      LocalDateTime updatedAt, LocalDateTime deletedAt,
+                      Long parentId, Integer depth, Integer treeOrder, String sortKey, Long version,
+                      Boolean chunked, String archiveKey, Long userId, String userEmail, String userName) {
+        this(id, title, compressedContent != null ? compressedContent : content, status, wordCount, characterCount, createdAt, updatedAt, deletedAt,
+                userId, userEmail, userName);
+        this.parentId = parentId;
+        this.depth = depth;
+        this.treeOrder = treeOrder;
+        this.sortKey = sortKey;
+        this.version = version;
+        this.chunked = Boolean.TRUE.equals(chunked);
+        this.archiveKey = archiveKey;
+        this.contentOmitted = this.chunked || archiveKey != null;
+    }
+
     // Getters and setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -92,4 +125,22 @@ public class DocumentDTO {
 
     public Integer getTreeOrder() { return treeOrder; }
     public void setTreeOrder(Integer treeOrder) { this.treeOrder = treeOrder; }
+
+    public String getSortKey() { return sortKey; }
+    public void setSortKey(String sortKey) { this.sortKey = sortKey; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public boolean isChunked() { return chunked; }
+    public void setChunked(boolean chunked) { this.chunked = chunked; }
+
+    @JsonIgnore
+    public String getArchiveKey() { return archiveKey; }
+    public void setArchiveKey(String archiveKey) { this.archiveKey = archiveKey; }
+
+    public boolean isArchived() { return archiveKey != null; }
+
+    public boolean isContentOmitted() { return contentOmitted; }
+    public void setContentOmitted(boolean contentOmitted) { this.contentOmitted = contentOmitted; }
 }
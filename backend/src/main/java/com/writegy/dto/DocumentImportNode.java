@@ -0,0 +1,30 @@
+package com.writegy.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One document in a bulk import, with the documents nested under it.
+ */
+public class DocumentImportNode {
+    private String title;
+    private String content;
+    private List<DocumentImportNode> children = new ArrayList<>();
+
+    public DocumentImportNode() {}
+
+    public DocumentImportNode(String title, String content) {
+        this.title = title;
+        this.content = content;
+    }
+
+    // Getters and setters
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+
+    public List<DocumentImportNode> getChildren() { return children; }
+    public void setChildren(List<DocumentImportNode> children) { this.children = children; }
+}
@@ -0,0 +1,21 @@
+package com.writegy.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk import: {@code documents} are appended under {@code parentId}, or at the root level when it is null.
+ */
+public class DocumentImportRequest {
+    private Long parentId;
+    private List<DocumentImportNode> documents = new ArrayList<>();
+
+    public DocumentImportRequest() {}
+
+    // Getters and setters
+    public Long getParentId() { return parentId; }
+    public void setParentId(Long parentId) { this.parentId = parentId; }
+
+    public List<DocumentImportNode> getDocuments() { return documents; }
+    public void setDocuments(List<DocumentImportNode> documents) { this.documents = documents; }
+}
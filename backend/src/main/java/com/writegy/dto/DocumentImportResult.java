@@ -0,0 +1,22 @@
+package com.writegy.dto;
+
+import java.util.List;
+
+public class DocumentImportResult {
+    private int importedCount;
+    private List<Long> rootIds;
+
+    public DocumentImportResult() {}
+
+    public DocumentImportResult(int importedCount, List<Long> rootIds) {
+        this.importedCount = importedCount;
+        this.rootIds = rootIds;
+    }
+
+    // Getters and setters
+    public int getImportedCount() { return importedCount; }
+    public void setImportedCount(int importedCount) { this.importedCount = importedCount; }
+
+    public List<Long> getRootIds() { return rootIds; }
+    public void setRootIds(List<Long> rootIds) { this.rootIds = rootIds; }
+}
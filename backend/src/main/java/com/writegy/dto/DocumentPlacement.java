@@ -0,0 +1,51 @@
+package com.writegy.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where a document sits in the tree: parent, materialized path, depth and sibling ordering key.
+ * Loaded for a whole workspace when applying batched moves, so it carries no content.
+ */
+public class DocumentPlacement {
+    private Long id;
+    private Long parentId;
+    private String path;
+    private Integer depth;
+    private String sortKey;
+    private LocalDateTime deletedAt;
+
+    // Default constructor
+    public DocumentPlacement() {}
+
+    public DocumentPlacement(Long id, Long parentId, String path, Integer depth, String sortKey) {
+        this.id = id;
+        this.parentId = parentId;
+        this.path = path;
+        this.depth = depth;
+        this.sortKey = sortKey;
+    }
+
+    public DocumentPlacement(Long id, Long parentId, String path, Integer depth, String sortKey, LocalDateTime deletedAt) {
+        this(id, parentId, path, depth, sortKey);
+        this.deletedAt = deletedAt;
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getParentId() { return parentId; }
+    public void setParentId(Long parentId) { this.parentId = parentId; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public Integer getDepth() { return depth; }
+    public void setDepth(Integer depth) { this.depth = depth; }
+
+    public String getSortKey() { return sortKey; }
+    public void setSortKey(String sortKey) { this.sortKey = sortKey; }
+
+    public LocalDateTime getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(LocalDateTime deletedAt) { this.deletedAt = deletedAt; }
+}
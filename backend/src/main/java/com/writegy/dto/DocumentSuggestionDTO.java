@@ -0,0 +1,21 @@
+package com.writegy.dto;
+
+public class DocumentSuggestionDTO {
+    private Long id;
+    private String title;
+
+    // Default constructor
+    public DocumentSuggestionDTO() {}
+
+    public DocumentSuggestionDTO(Long id, String title) {
+        this.id = id;
+        this.title = title;
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+}
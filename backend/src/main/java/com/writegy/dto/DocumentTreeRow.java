@@ -0,0 +1,34 @@
+package com.writegy.dto;
+
+/**
+ * Content-free projection of a document used to build the sidebar tree.
+ */
+public class DocumentTreeRow {
+    private final Long id;
+    private final Long parentId;
+    private final String title;
+    private final String sortKey;
+    private final Integer depth;
+    private final Integer wordCount;
+    private final Integer characterCount;
+
+    public DocumentTreeRow(Long id, Long parentId, String title, String sortKey, Integer depth,
+                           Integer wordCount, Integer characterCount) {
+        this.id = id;
+        this.parentId = parentId;
+        this.title = title;
+        this.sortKey = sortKey;
+        this.depth = depth;
+        this.wordCount = wordCount;
+        this.characterCount = characterCount;
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public Long getParentId() { return parentId; }
+    public String getTitle() { return title; }
+    public String getSortKey() { return sortKey; }
+    public Integer getDepth() { return depth; }
+    public Integer getWordCount() { return wordCount; }
+    public Integer getCharacterCount() { return characterCount; }
+}
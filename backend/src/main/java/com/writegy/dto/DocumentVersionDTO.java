@@ -0,0 +1,58 @@
+package com.writegy.dto;
+
+import com.writegy.model.enums.VersionStorageType;
+
+import java.time.LocalDateTime;
+
+public class DocumentVersionDTO {
+    private Long documentId;
+    private Integer versionNumber;
+    private String title;
+    private VersionStorageType storageType;
+    private String contentHash;
+    private Integer contentLength;
+    private LocalDateTime createdAt;
+
+    // Only set when a single version is materialized
+    private String content;
+
+    // Default constructor
+    public DocumentVersionDTO() {}
+
+    // Constructor used by the repository's listing query
+    public DocumentVersionDTO(Long documentId, Integer versionNumber, String title, VersionStorageType storageType,
+                              String contentHash, Integer contentLength, LocalDateTime createdAt) {
+        this.documentId = documentId;
+        this.versionNumber = versionNumber;
+        this.title = title;
+        this.storageType = storageType;
+        this.contentHash = contentHash;
+        this.contentLength = contentLength;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and setters
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public Integer getVersionNumber() { return versionNumber; }
+    public void setVersionNumber(Integer versionNumber) { this.versionNumber = versionNumber; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public VersionStorageType getStorageType() { return storageType; }
+    public void setStorageType(VersionStorageType storageType) { this.storageType = storageType; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public Integer getContentLength() { return contentLength; }
+    public void setContentLength(Integer contentLength) { this.contentLength = contentLength; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+}
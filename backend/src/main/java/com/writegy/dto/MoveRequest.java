@@ -0,0 +1,27 @@
+package com.writegy.dto;
+
+/**
+ * One move/reorder in a batch: place {@code documentId} under {@code parentId} (null for the root
+ * level), directly after {@code afterId} or before {@code beforeId}, or at the end when neither is set.
+ */
+public class MoveRequest {
+    private Long documentId;
+    private Long parentId;
+    private Long afterId;
+    private Long beforeId;
+
+    public MoveRequest() {}
+
+    // Getters and setters
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public Long getParentId() { return parentId; }
+    public void setParentId(Long parentId) { this.parentId = parentId; }
+
+    public Long getAfterId() { return afterId; }
+    public void setAfterId(Long afterId) { this.afterId = afterId; }
+
+    public Long getBeforeId() { return beforeId; }
+    public void setBeforeId(Long beforeId) { this.beforeId = beforeId; }
+}
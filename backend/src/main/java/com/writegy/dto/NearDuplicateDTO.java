@@ -0,0 +1,30 @@
+package com.writegy.dto;
+
+/**
+ * A document whose content closely matches another one. {@code similarity} is the estimated
+ * Jaccard similarity of the two documents' word shingles, between 0 and 1.
+ */
+public class NearDuplicateDTO {
+    private Long id;
+    private String title;
+    private double similarity;
+
+    // Default constructor
+    public NearDuplicateDTO() {}
+
+    public NearDuplicateDTO(Long id, String title, double similarity) {
+        this.id = id;
+        this.title = title;
+        this.similarity = similarity;
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public double getSimilarity() { return similarity; }
+    public void setSimilarity(double similarity) { this.similarity = similarity; }
+}
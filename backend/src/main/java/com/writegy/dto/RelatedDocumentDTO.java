@@ -0,0 +1,30 @@
+package com.writegy.dto;
+
+/**
+ * A document on a similar subject to another one. {@code score} is the TF-IDF cosine similarity
+ * of the two documents' term vectors, between 0 and 1.
+ */
+public class RelatedDocumentDTO {
+    private Long id;
+    private String title;
+    private double score;
+
+    // Default constructor
+    public RelatedDocumentDTO() {}
+
+    public RelatedDocumentDTO(Long id, String title, double score) {
+        this.id = id;
+        this.title = title;
+        this.score = score;
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public double getScore() { return score; }
+    public void setScore(double score) { this.score = score; }
+}
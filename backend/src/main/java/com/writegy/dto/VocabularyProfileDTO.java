@@ -0,0 +1,44 @@
+package com.writegy.dto;
+
+import java.util.List;
+
+/**
+ * Word frequency profile of one document, or of all of a user's documents when
+ * {@code documentId} is null. {@code lexicalDiversity} is unique words over total words;
+ * {@code topWords} leaves out common function words, which still count towards the totals.
+ */
+public class VocabularyProfileDTO {
+    private Long documentId;
+    private long totalWords;
+    private int uniqueWords;
+    private double lexicalDiversity;
+    private List<WordCountDTO> topWords;
+
+    // Default constructor
+    public VocabularyProfileDTO() {}
+
+    public VocabularyProfileDTO(Long documentId, long totalWords, int uniqueWords, double lexicalDiversity,
+                                List<WordCountDTO> topWords) {
+        this.documentId = documentId;
+        this.totalWords = totalWords;
+        this.uniqueWords = uniqueWords;
+        this.lexicalDiversity = lexicalDiversity;
+        this.topWords = topWords;
+    }
+
+    // Getters and setters
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public long getTotalWords() { return totalWords; }
+    public void setTotalWords(long totalWords) { this.totalWords = totalWords; }
+
+    public int getUniqueWords() { return uniqueWords; }
+    public void setUniqueWords(int uniqueWords) { this.uniqueWords = uniqueWords; }
+
+    public double getLexicalDiversity() { return lexicalDiversity; }
+    public void setLexicalDiversity(double lexicalDiversity) { this.lexicalDiversity = lexicalDiversity; }
+
+    public List<WordCountDTO> getTopWords() { return topWords; }
+    public void setTopWords(List<WordCountDTO> topWords) { this.topWords = topWords; }
+}
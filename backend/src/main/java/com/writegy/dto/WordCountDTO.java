@@ -0,0 +1,24 @@
+package com.writegy.dto;
+
+/**
+ * A word and how often it occurs.
+ */
+public class WordCountDTO {
+    private String word;
+    private int count;
+
+    // Default constructor
+    public WordCountDTO() {}
+
+    public WordCountDTO(String word, int count) {
+        this.word = word;
+        this.count = count;
+    }
+
+    // Getters and setters
+    public String getWord() { return word; }
+    public void setWord(String word) { this.word = word; }
+
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+}
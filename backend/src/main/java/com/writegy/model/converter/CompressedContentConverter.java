@@ -0,0 +1,122 @@
+package com.writegy.model.converter;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores text as framed bytes in a {@code bytea} column.
+ *
+ * The first byte names the codec: {@link #RAW} is plain UTF-8, used for short text or when
+ * compression does not pay off; {@link #DEFLATE} is followed by the UTF-8 length as a 4-byte
+ * int and a raw deflate stream. New codecs get new frame bytes, so old rows stay readable.
+ *
+ * Whether entities write to the compressed column at all is decided by {@link #isEnabled()},
+ * configured at startup from {@code documents.content-compression.*}.
+ */
+@Converter
+public class CompressedContentConverter implements AttributeConverter<String, byte[]> {
+
+    public static final byte RAW = 0;
+    public static final byte DEFLATE = 1;
+
+    private static volatile boolean enabled = false;
+    private static volatile int minLength = 512;
+
+    public static void configure(boolean enabled, int minLength) {
+        CompressedContentConverter.enabled = enabled;
+        CompressedContentConverter.minLength = minLength;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return attribute != null ? encode(attribute) : null;
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        return dbData != null ? decode(dbData) : null;
+    }
+
+    public static byte[] encode(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length >= minLength) {
+            byte[] compressed = deflate(utf8);
+            // Already-dense text (or pasted base64) can come out larger; keep it raw then
+            if (compressed.length + 5 < utf8.length) {
+                return ByteBuffer.allocate(5 + compressed.length)
+                        .put(DEFLATE).putInt(utf8.length).put(compressed).array();
+            }
+        }
+        byte[] framed = new byte[utf8.length + 1];
+        framed[0] = RAW;
+        System.arraycopy(utf8, 0, framed, 1, utf8.length);
+        return framed;
+    }
+
+    public static String decode(byte[] framed) {
+        if (framed.length == 0) {
+            throw new IllegalArgumentException("Empty compressed content frame");
+        }
+        switch (framed[0]) {
+            case RAW:
+                return new String(framed, 1, framed.length - 1, StandardCharsets.UTF_8);
+            case DEFLATE:
+                int length = ByteBuffer.wrap(framed, 1, 4).getInt();
+                return new String(inflate(framed, 5, length), StandardCharsets.UTF_8);
+            default:
+                throw new IllegalArgumentException("Unknown content codec: " + framed[0]);
+        }
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 3 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] framed, int offset, int length) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(framed, offset, framed.length - offset);
+            byte[] output = new byte[length];
+            int total = 0;
+            while (total < length) {
+                int n = inflater.inflate(output, total, length - total);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                total += n;
+            }
+            if (total != length) {
+                throw new IllegalArgumentException("Compressed content is truncated");
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.writegy.model.entity;
 
+import com.writegy.model.converter.CompressedContentConverter;
 import com.writegy.model.enums.DocumentStatus;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -16,8 +19,10 @@ import java.util.List;
 @EntityListeners(AuditingEntityListener.class)
 public class Document {
 
+    // Pooled sequence ids let Hibernate batch inserts; DocumentIdAllocator draws from the same blocks
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "documents_id_seq")
+    @SequenceGenerator(name = "documents_id_seq", sequenceName = "documents_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -28,9 +33,14 @@ public class Document {
     @Column(nullable = false, length = 500)
     private String title;
 
+    // Legacy plain-text column; left empty once the row's content lives in contentCompressed
     @Column(columnDefinition = "TEXT", nullable = false)
     private String content = "";
 
+    @Column(name = "content_compressed", columnDefinition = "BYTEA")
+    @Convert(converter = CompressedContentConverter.class)
+    private String contentCompressed;
+
     @Enumerated(EnumType.STRING)
     private DocumentStatus status = DocumentStatus.DRAFT;
 
@@ -55,6 +65,7 @@ public class Document {
     // Tree hierarchy fields
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parent_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
     @JsonIgnore
     private Document parent;
 
@@ -65,14 +76,54 @@ public class Document {
     @Column(name = "tree_order")
     private Integer treeOrder = 0;
 
+    // Fractional ordering key among siblings (see FractionalIndex); replaces treeOrder for sorting
+    @Column(name = "sort_key", length = 255)
+    private String sortKey;
+
     private Integer depth = 0;
 
+    // Materialized path of ancestor ids including this one, e.g. "/3/17/42/"
+    @Column(length = 2000)
+    private String path;
+
+    // Optimistic lock; also the basis of the document's ETag. Bulk SQL updates bump it explicitly
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // When set, content is empty and the text lives in document_chunks (see DocumentChunkService)
+    @Column(nullable = false)
+    private Boolean chunked = false;
+
+    // When set, content is empty and the text lives in object storage (see DocumentTieringService)
+    @Column(name = "archive_key", length = 255)
+    private String archiveKey;
+
+    // MinHash signature of the content (see MinHash); null until computed, empty when too short
+    @Column(name = "minhash", columnDefinition = "BYTEA")
+    @JsonIgnore
+    private byte[] minhash;
+
+    // Most frequent terms of the content (see TermVector); null until computed
+    @Column(name = "term_vector", columnDefinition = "BYTEA")
+    @JsonIgnore
+    private byte[] termVector;
+
+    // Word counts of the content by term id (see VocabularyProfile); null until computed
+    @Column(name = "vocabulary", columnDefinition = "BYTEA")
+    @JsonIgnore
+    private byte[] vocabulary;
+
+    // Position in the owner's change feed (see DocumentChangeSequence)
+    @Column(name = "change_seq", nullable = false)
+    private Long changeSeq = 0L;
+
     // Constructors
     public Document() {}
 
     public Document(String title, String content, User user) {
         this.title = title;
-        this.content = content;
+        setContent(content);
         this.user = user;
     }
 
@@ -86,8 +137,16 @@ public class Document {
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
 
-    public String getContent() { return content; }
-    public void setContent(String content) { this.content = content; }
+    public String getContent() { return contentCompressed != null ? contentCompressed : content; }
+    public void setContent(String content) {
+        if (CompressedContentConverter.isEnabled() && content != null && !content.isEmpty()) {
+            this.contentCompressed = content;
+            this.content = "";
+        } else {
+            this.contentCompressed = null;
+            this.content = content;
+        }
+    }
 
     public DocumentStatus getStatus() { return status; }
     public void setStatus(DocumentStatus status) { this.status = status; }
@@ -120,6 +179,34 @@ public class Document {
     public Integer getTreeOrder() { return treeOrder; }
     public void setTreeOrder(Integer treeOrder) { this.treeOrder = treeOrder; }
 
+    public String getSortKey() { return sortKey; }
+    public void setSortKey(String sortKey) { this.sortKey = sortKey; }
+
     public Integer getDepth() { return depth; }
     public void setDepth(Integer depth) { this.depth = depth; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public boolean isChunked() { return Boolean.TRUE.equals(chunked); }
+    public void setChunked(Boolean chunked) { this.chunked = chunked; }
+
+    public String getArchiveKey() { return archiveKey; }
+    public void setArchiveKey(String archiveKey) { this.archiveKey = archiveKey; }
+    public boolean isArchived() { return archiveKey != null; }
+
+    public byte[] getMinhash() { return minhash; }
+    public void setMinhash(byte[] minhash) { this.minhash = minhash; }
+
+    public byte[] getTermVector() { return termVector; }
+    public void setTermVector(byte[] termVector) { this.termVector = termVector; }
+
+    public byte[] getVocabulary() { return vocabulary; }
+    public void setVocabulary(byte[] vocabulary) { this.vocabulary = vocabulary; }
+
+    public Long getChangeSeq() { return changeSeq; }
+    public void setChangeSeq(Long changeSeq) { this.changeSeq = changeSeq; }
 }
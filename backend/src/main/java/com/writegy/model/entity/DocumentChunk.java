@@ -0,0 +1,100 @@
+package com.writegy.model.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One ordered slice of a chunked document's text. Rows are written with JDBC by
+ * DocumentChunkService; the mapping exists for reads and for schema generation outside Flyway.
+ */
+@Entity
+@Table(name = "document_chunks")
+@IdClass(DocumentChunk.Key.class)
+public class DocumentChunk {
+
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    // Fractional ordering key within the document (see FractionalIndex)
+    @Id
+    @Column(name = "chunk_key", length = 255)
+    private String chunkKey;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "document_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Document document;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String content;
+
+    // Length in UTF-16 chars, the unit edit offsets are given in
+    @Column(name = "char_length", nullable = false)
+    private Integer charLength;
+
+    @Column(name = "word_count", nullable = false)
+    private Integer wordCount;
+
+    @Column(name = "character_count", nullable = false)
+    private Integer characterCount;
+
+    @Column(name = "content_hash", length = 64, nullable = false)
+    private String contentHash;
+
+    // Constructors
+    public DocumentChunk() {}
+
+    // Getters and setters
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public String getChunkKey() { return chunkKey; }
+    public void setChunkKey(String chunkKey) { this.chunkKey = chunkKey; }
+
+    public Document getDocument() { return document; }
+    public void setDocument(Document document) { this.document = document; }
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+
+    public Integer getCharLength() { return charLength; }
+    public void setCharLength(Integer charLength) { this.charLength = charLength; }
+
+    public Integer getWordCount() { return wordCount; }
+    public void setWordCount(Integer wordCount) { this.wordCount = wordCount; }
+
+    public Integer getCharacterCount() { return characterCount; }
+    public void setCharacterCount(Integer characterCount) { this.characterCount = characterCount; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public static class Key implements Serializable {
+        private Long documentId;
+        private String chunkKey;
+
+        public Key() {}
+
+        public Key(Long documentId, String chunkKey) {
+            this.documentId = documentId;
+            this.chunkKey = chunkKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(documentId, key.documentId) && Objects.equals(chunkKey, key.chunkKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(documentId, chunkKey);
+        }
+    }
+}
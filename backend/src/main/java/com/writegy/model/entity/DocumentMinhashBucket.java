@@ -0,0 +1,75 @@
+package com.writegy.model.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One LSH band bucket of a document's MinHash signature. Rows are written with JDBC by
+ * DocumentSimilarityService; the mapping exists for schema generation outside Flyway.
+ */
+@Entity
+@Table(name = "document_minhash_buckets")
+@IdClass(DocumentMinhashBucket.Key.class)
+public class DocumentMinhashBucket {
+
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Id
+    @Column(nullable = false)
+    private Long bucket;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "document_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Document document;
+
+    // Owner, so a lookup stays within one user's buckets
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Constructors
+    public DocumentMinhashBucket() {}
+
+    // Getters and setters
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public Long getBucket() { return bucket; }
+    public void setBucket(Long bucket) { this.bucket = bucket; }
+
+    public Document getDocument() { return document; }
+    public void setDocument(Document document) { this.document = document; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public static class Key implements Serializable {
+        private Long documentId;
+        private Long bucket;
+
+        public Key() {}
+
+        public Key(Long documentId, Long bucket) {
+            this.documentId = documentId;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(documentId, key.documentId) && Objects.equals(bucket, key.bucket);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(documentId, bucket);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.writegy.model.entity;
 
+import com.writegy.model.converter.CompressedContentConverter;
+import com.writegy.model.enums.VersionStorageType;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 
 import java.time.LocalDateTime;
 
@@ -14,22 +18,55 @@ import java.time.LocalDateTime;
 public class DocumentVersion {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_versions_id_seq")
+    @SequenceGenerator(name = "document_versions_id_seq", sequenceName = "document_versions_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "document_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
     private Document document;
 
     @Column(nullable = false, length = 500)
     private String title;
 
+    // Full text for snapshots, a DeltaCodec delta against the previous version otherwise
     @Column(columnDefinition = "TEXT", nullable = false)
     private String content;
 
+    // Set instead of content when compression is enabled (see setContent)
+    @Column(name = "content_compressed", columnDefinition = "BYTEA")
+    @Convert(converter = CompressedContentConverter.class)
+    private String contentCompressed;
+
     @Column(nullable = false)
     private Integer versionNumber;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "storage_type", nullable = false, length = 10)
+    private VersionStorageType storageType;
+
+    // SHA-256 of the materialized content, checked after every reconstruction
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "content_length", nullable = false)
+    private Integer contentLength;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
+
+    public String getContent() {
+        return contentCompressed != null ? contentCompressed : content;
+    }
+
+    public void setContent(String content) {
+        if (CompressedContentConverter.isEnabled() && content != null && !content.isEmpty()) {
+            this.contentCompressed = content;
+            this.content = "";
+        } else {
+            this.contentCompressed = null;
+            this.content = content;
+        }
+    }
 }
@@ -46,11 +46,15 @@ public class User {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
-    @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    private UserProfile profile;
+    // Change feed counters, only ever advanced in SQL by DocumentChangeSequence
+    @Column(name = "change_seq", nullable = false, updatable = false)
+    private Long changeSeq = 0L;
 
-    @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    private UserPreferences preferences;
+    @Column(name = "purged_seq", nullable = false, updatable = false)
+    private Long purgedSeq = 0L;
+
+    // UserProfile and UserPreferences are reached through their own user_id: an inverse one-to-one
+    // cannot be proxied, so mapping them here would load both with every user
 
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonIgnore
@@ -98,11 +102,9 @@ public class User {
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
 
-    public UserProfile getProfile() { return profile; }
-    public void setProfile(UserProfile profile) { this.profile = profile; }
+    public Long getChangeSeq() { return changeSeq; }
 
-    public UserPreferences getPreferences() { return preferences; }
-    public void setPreferences(UserPreferences preferences) { this.preferences = preferences; }
+    public Long getPurgedSeq() { return purgedSeq; }
 
     public List<Document> getDocuments() { return documents; }
     public void setDocuments(List<Document> documents) { this.documents = documents; }
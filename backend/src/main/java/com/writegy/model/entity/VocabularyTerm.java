@@ -0,0 +1,47 @@
+package com.writegy.model.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * A word interned for one user's vocabulary profiles. Rows are written with JDBC by
+ * VocabularyTermDictionary; the mapping exists for schema generation outside Flyway.
+ */
+@Entity
+@Table(name = "vocabulary_terms", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "term"})
+})
+public class VocabularyTerm {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @Column(nullable = false, length = 64)
+    private String term;
+
+    // Constructors
+    public VocabularyTerm() {}
+
+    // Getters and setters
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public String getTerm() { return term; }
+    public void setTerm(String term) { this.term = term; }
+}
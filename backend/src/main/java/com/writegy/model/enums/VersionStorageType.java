@@ -0,0 +1,6 @@
+package com.writegy.model.enums;
+
+public enum VersionStorageType {
+    SNAPSHOT,
+    DELTA
+}
@@ -0,0 +1,68 @@
+package com.writegy.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-user change sequence kept on the users row, used to stamp every document write for the
+ * change feed.
+ *
+ * Drawing a value updates the user's row, which stays locked until the transaction ends, so one
+ * user's writes commit in sequence order and a client cursor can never pass a change that has
+ * yet to commit. Callers draw the value before locking any document row, which keeps the lock
+ * order the same on every write path.
+ */
+@Component
+public class DocumentChangeSequence {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatabasePlatform databasePlatform;
+
+    /** Next sequence value for {@code userId}; must be called inside the writing transaction. */
+    public long next(Long userId) {
+        if (databasePlatform.isPostgres()) {
+            Long value = jdbcTemplate.queryForObject(
+                    "UPDATE users SET change_seq = change_seq + 1 WHERE id = ? RETURNING change_seq", Long.class, userId);
+            return require(value, userId);
+        }
+        jdbcTemplate.update("UPDATE users SET change_seq = change_seq + 1 WHERE id = ?", userId);
+        return current(userId)[0];
+    }
+
+    /**
+     * Records that documents were hard-deleted. Those leave no tombstone, so a client whose cursor
+     * is older than this point has to resynchronise from a full listing.
+     */
+    public void markPurged(Long userId) {
+        jdbcTemplate.update("UPDATE users SET change_seq = change_seq + 1, purged_seq = change_seq + 1 WHERE id = ?", userId);
+    }
+
+    /**
+     * Locks the user's row until the transaction ends without drawing a value, for work that has to
+     * be ordered against the user's writes but is not itself a change.
+     */
+    public void lock(Long userId) {
+        jdbcTemplate.queryForList("SELECT id FROM users WHERE id = ? FOR UPDATE", Long.class, userId);
+    }
+
+    /** The user's latest sequence value and the last value at which documents were purged. */
+    public long[] current(Long userId) {
+        long[] values = jdbcTemplate.queryForObject("SELECT change_seq, purged_seq FROM users WHERE id = ?",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, userId);
+        if (values == null) {
+            throw new IllegalStateException("No change sequence for user " + userId);
+        }
+        return values;
+    }
+
+    private static long require(Long value, Long userId) {
+        if (value == null) {
+            throw new IllegalStateException("No change sequence for user " + userId);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,51 @@
+package com.writegy.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out document ids for hand-written batch inserts from the same pooled sequence Hibernate
+ * uses. Each sequence call reserves the block (value - 50, value], exactly as Hibernate's pooled
+ * optimizer does, so ids from both sources never collide.
+ *
+ * Not thread-safe; use one allocator per operation.
+ */
+@Component
+public class DocumentIdAllocator {
+
+    // Must match the allocationSize on Document and the sequence's INCREMENT BY
+    public static final int BLOCK_SIZE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatabasePlatform databasePlatform;
+
+    /** Returns {@code count} fresh ids in ascending order. */
+    public long[] allocate(int count) {
+        long[] ids = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            long high = nextSequenceValue();
+            // Hibernate starts the first block at 1 when the sequence is fresh
+            long low = Math.max(1, high - BLOCK_SIZE + 1);
+            for (long id = low; id <= high && filled < count; id++) {
+                ids[filled++] = id;
+            }
+        }
+        return ids;
+    }
+
+    private long nextSequenceValue() {
+        String sql = databasePlatform.isPostgres()
+                ? "SELECT nextval('documents_id_seq')"
+                : "SELECT NEXT VALUE FOR documents_id_seq";
+        Long value = jdbcTemplate.queryForObject(sql, Long.class);
+        if (value == null) {
+            throw new IllegalStateException("documents_id_seq returned no value");
+        }
+        return value;
+    }
+}
@@ -1,22 +1,162 @@
 package com.writegy.repository;
 
+import com.writegy.dto.DocumentChangeDTO;
+import com.writegy.dto.DocumentDTO;
+import com.writegy.dto.DocumentPlacement;
+import com.writegy.dto.DocumentSuggestionDTO;
+import com.writegy.dto.DocumentTreeRow;
 import com.writegy.model.entity.Document;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
+
+    // Constructor expression for DocumentDTO: user and parent id come from the same statement,
+    // so mapping never touches a lazy association
+    String DTO_SELECT = "SELECT new com.writegy.dto.DocumentDTO(d.id, d.title, d.content, d.contentCompressed, d.status, d.wordCount, " +
+            "d.characterCount, d.createdAt, d.updatedAt, d.deletedAt, d.parent.id, d.depth, d.treeOrder, d.sortKey, d.version, d.chunked, " +
+            "d.archiveKey, u.id, u.email, u.name) FROM Document d JOIN d.user u ";
+
     List<Document> findByUserId(Long userId);
 
+    // Fetch plan for endpoints that map a loaded entity (updates, moves)
+    @EntityGraph(attributePaths = {"user"})
+    Optional<Document> findWithUserById(Long id);
+
+    // Autosave flush: row locks make a concurrent explicit save commit first, so its timestamp is seen
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Document d WHERE d.id IN :ids ORDER BY d.id")
+    List<Document> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    // Owners of the given documents, so their change sequences can be drawn before the rows are locked
+    @Query("SELECT DISTINCT d.user.id FROM Document d WHERE d.id IN :ids ORDER BY d.user.id")
+    List<Long> findUserIdsByIds(@Param("ids") Collection<Long> ids);
+
+    // Index-only revalidation for conditional GETs
+    @Query("SELECT d.version FROM Document d WHERE d.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // Trashed documents (deletedAt set) are left out of every read below unless stated otherwise
+
+    @Query(DTO_SELECT + "WHERE d.id = :id AND d.deletedAt IS NULL")
+    Optional<DocumentDTO> findDTOById(@Param("id") Long id);
+
+    @Query(DTO_SELECT + "WHERE u.id = :userId AND d.deletedAt IS NULL")
+    List<DocumentDTO> findDTOsByUserId(@Param("userId") Long userId);
+
+    @Query(DTO_SELECT + "WHERE d.parent.id = :parentId AND d.deletedAt IS NULL ORDER BY d.sortKey")
+    List<DocumentDTO> findChildDTOs(@Param("parentId") Long parentId);
+
+    @Query(DTO_SELECT + "WHERE u.id = :userId AND d.path LIKE CONCAT(:pathPrefix, '%') AND d.deletedAt IS NULL ORDER BY d.depth, d.sortKey")
+    List<DocumentDTO> findSubtreeDTOs(@Param("userId") Long userId, @Param("pathPrefix") String pathPrefix);
+
+    // Trash listing: only the roots of what was trashed together, newest first
+    @Query(DTO_SELECT + "LEFT JOIN d.parent p WHERE u.id = :userId AND d.deletedAt IS NOT NULL " +
+           "AND (p IS NULL OR p.deletedAt IS NULL OR p.deletedAt <> d.deletedAt) ORDER BY d.deletedAt DESC")
+    List<DocumentDTO> findTrashDTOs(@Param("userId") Long userId);
+
+    // Documents created before word counting existed; normally empty. Such rows are never
+    // recompressed (see ContentRecompressionService), so only the plain column needs checking
+    @Query("SELECT d FROM Document d WHERE d.user.id = :userId AND (d.wordCount IS NULL OR d.wordCount = 0) " +
+           "AND LENGTH(TRIM(d.content)) > 0")
+    List<Document> findUncountedByUserId(@Param("userId") Long userId);
+
+    // Forward-only cursor for exports; callers must consume it inside a transaction and close it
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT d FROM Document d WHERE d.user.id = :userId AND d.deletedAt IS NULL ORDER BY d.path")
+    Stream<Document> streamByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT d.path FROM Document d WHERE d.id = :id AND d.user.id = :userId AND d.deletedAt IS NULL")
+    Optional<String> findPath(@Param("id") Long id, @Param("userId") Long userId);
+
     // Tree hierarchy methods
-    List<Document> findByUserIdAndParentIdIsNullOrderByTreeOrderAsc(Long userId);
+    List<Document> findByUserIdAndParentIdIsNullOrderBySortKeyAsc(Long userId);
 
-    List<Document> findByParentIdOrderByTreeOrderAsc(Long parentId);
+    List<Document> findByParentIdOrderBySortKeyAsc(Long parentId);
 
-    @Query("SELECT d FROM Document d WHERE d.user.id = :userId ORDER BY d.depth, d.treeOrder")
+    @Query("SELECT d FROM Document d WHERE d.user.id = :userId ORDER BY d.depth, d.sortKey")
     List<Document> findAllByUserIdOrderByHierarchy(@Param("userId") Long userId);
+
+    // Sidebar tree: one content-free projection, ordered so siblings come out in display order
+    @Query("SELECT new com.writegy.dto.DocumentTreeRow(d.id, d.parent.id, d.title, d.sortKey, d.depth, d.wordCount, d.characterCount) " +
+           "FROM Document d WHERE d.user.id = :userId AND d.deletedAt IS NULL ORDER BY d.sortKey, d.id")
+    List<DocumentTreeRow> findTreeRowsByUserId(@Param("userId") Long userId);
+
+    // Materialized path queries: a subtree is every row whose path starts with the root's path
+
+    // Rewrites path and depth of a whole subtree at once; depth is derived from the old path's slash
+    // count, so descendants with drifted depths are corrected as a side effect
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Document d SET d.path = CONCAT(:newPrefix, SUBSTRING(d.path, LENGTH(:oldPrefix) + 1)), " +
+           "d.depth = LENGTH(d.path) - LENGTH(REPLACE(d.path, '/', '')) + :depthDelta - 2, d.version = d.version + 1, " +
+           "d.changeSeq = :changeSeq WHERE d.user.id = :userId AND d.path LIKE CONCAT(:oldPrefix, '%')")
+    int moveSubtree(@Param("userId") Long userId, @Param("oldPrefix") String oldPrefix,
+                    @Param("newPrefix") String newPrefix, @Param("depthDelta") int depthDelta,
+                    @Param("changeSeq") long changeSeq);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Document d WHERE d.user.id = :userId AND d.path LIKE CONCAT(:pathPrefix, '%')")
+    int deleteSubtree(@Param("userId") Long userId, @Param("pathPrefix") String pathPrefix);
+
+    // Descendants already in the trash keep their own timestamp, so they are restored separately
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Document d SET d.deletedAt = :deletedAt, d.version = d.version + 1, d.changeSeq = :changeSeq " +
+           "WHERE d.user.id = :userId AND d.path LIKE CONCAT(:pathPrefix, '%') AND d.deletedAt IS NULL")
+    int trashSubtree(@Param("userId") Long userId, @Param("pathPrefix") String pathPrefix,
+                     @Param("deletedAt") LocalDateTime deletedAt, @Param("changeSeq") long changeSeq);
+
+    // Restores exactly the rows trashed together with the subtree root
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Document d SET d.deletedAt = NULL, d.version = d.version + 1, d.changeSeq = :changeSeq " +
+           "WHERE d.user.id = :userId AND d.path LIKE CONCAT(:pathPrefix, '%') AND d.deletedAt = :deletedAt")
+    int restoreSubtree(@Param("userId") Long userId, @Param("pathPrefix") String pathPrefix,
+                       @Param("deletedAt") LocalDateTime deletedAt, @Param("changeSeq") long changeSeq);
+
+    // Includes trashed rows so moves keep their paths consistent; the planner refuses to target them
+    @Query("SELECT new com.writegy.dto.DocumentPlacement(d.id, d.parent.id, d.path, d.depth, d.sortKey, d.deletedAt) FROM Document d WHERE d.user.id = :userId")
+    List<DocumentPlacement> findPlacementsByUserId(@Param("userId") Long userId);
+
+    // Live rows of a subtree, parents before children
+    @Query("SELECT new com.writegy.dto.DocumentPlacement(d.id, d.parent.id, d.path, d.depth, d.sortKey) FROM Document d " +
+           "WHERE d.user.id = :userId AND d.path LIKE CONCAT(:pathPrefix, '%') AND d.deletedAt IS NULL ORDER BY d.depth, d.id")
+    List<DocumentPlacement> findSubtreePlacements(@Param("userId") Long userId, @Param("pathPrefix") String pathPrefix);
+
+    @Query("SELECT MAX(d.sortKey) FROM Document d WHERE d.user.id = :userId AND d.parent IS NULL")
+    String findMaxRootSortKey(@Param("userId") Long userId);
+
+    @Query("SELECT MAX(d.sortKey) FROM Document d WHERE d.parent.id = :parentId")
+    String findMaxChildSortKey(@Param("parentId") Long parentId);
+
+    // Change feed page: keyset on (changeSeq, id), tombstones included, served from the
+    // (user_id, change_seq, id) index however long the history is
+    @Query("SELECT new com.writegy.dto.DocumentChangeDTO(d.id, d.parent.id, d.title, d.status, d.sortKey, d.depth, " +
+           "d.wordCount, d.characterCount, d.version, d.updatedAt, d.deletedAt, d.changeSeq) FROM Document d " +
+           "WHERE d.user.id = :userId AND (d.changeSeq > :changeSeq OR (d.changeSeq = :changeSeq AND d.id > :afterId)) " +
+           "ORDER BY d.changeSeq, d.id")
+    List<DocumentChangeDTO> findChangesAfter(@Param("userId") Long userId, @Param("changeSeq") long changeSeq,
+                                             @Param("afterId") long afterId, Pageable pageable);
+
+    // Title-only projection for the typeahead index (never loads content)
+    @Query("SELECT new com.writegy.dto.DocumentSuggestionDTO(d.id, d.title) FROM Document d WHERE d.user.id = :userId AND d.deletedAt IS NULL")
+    List<DocumentSuggestionDTO> findTitlesByUserId(@Param("userId") Long userId);
 }
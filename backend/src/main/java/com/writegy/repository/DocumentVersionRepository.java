@@ -0,0 +1,39 @@
+package com.writegy.repository;
+
+import com.writegy.dto.DocumentVersionDTO;
+import com.writegy.model.entity.DocumentVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DocumentVersionRepository extends JpaRepository<DocumentVersion, Long> {
+
+    // Metadata only; version bodies are never needed to list history
+    String DTO_SELECT = "SELECT new com.writegy.dto.DocumentVersionDTO(v.document.id, v.versionNumber, v.title, " +
+            "v.storageType, v.contentHash, v.contentLength, v.createdAt) FROM DocumentVersion v ";
+
+    @Query(DTO_SELECT + "WHERE v.document.id = :documentId ORDER BY v.versionNumber DESC")
+    List<DocumentVersionDTO> findDTOsByDocumentId(@Param("documentId") Long documentId);
+
+    @Query(DTO_SELECT + "WHERE v.document.id = :documentId AND v.versionNumber = " +
+            "(SELECT MAX(l.versionNumber) FROM DocumentVersion l WHERE l.document.id = :documentId)")
+    Optional<DocumentVersionDTO> findLatestDTO(@Param("documentId") Long documentId);
+
+    /**
+     * Rows needed to rebuild one version: the nearest snapshot at or below it followed by
+     * every delta up to it, in version order.
+     */
+    @Query("SELECT v FROM DocumentVersion v WHERE v.document.id = :documentId " +
+            "AND v.versionNumber <= :versionNumber " +
+            "AND v.versionNumber >= (SELECT MAX(s.versionNumber) FROM DocumentVersion s " +
+            "WHERE s.document.id = :documentId AND s.versionNumber <= :versionNumber " +
+            "AND s.storageType = com.writegy.model.enums.VersionStorageType.SNAPSHOT) " +
+            "ORDER BY v.versionNumber")
+    List<DocumentVersion> findReconstructionChain(@Param("documentId") Long documentId,
+                                                  @Param("versionNumber") Integer versionNumber);
+}
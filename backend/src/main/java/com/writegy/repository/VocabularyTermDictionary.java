@@ -0,0 +1,215 @@
+package com.writegy.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.writegy.util.AfterCommit;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Interns the words of vocabulary profiles: each distinct word of a user gets one row in
+ * vocabulary_terms and is referred to everywhere else by its int id. Terms belong to the user
+ * whose documents they came from, so they are deleted with the user, and words no longer in any
+ * of the user's documents are pruned when documents are purged (see {@link #retainOnly}).
+ *
+ * Both directions are cached in bounded local caches. Words are interned inside the transaction
+ * that stores their ids, so a rolled-back save takes its new words with it; ids only enter the
+ * cache once the transaction that made them commits. Existing words are looked up before
+ * inserting, since a conflicting insert still uses up a value of the id sequence. Interning and
+ * pruning both run with the user's row locked (see DocumentChangeSequence), so a prune never
+ * removes a word a concurrent save is about to use.
+ */
+@Component
+public class VocabularyTermDictionary {
+
+    private static final int QUERY_CHUNK = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final Cache<Key, Integer> idsByTerm;
+    private final Cache<Integer, String> termsById;
+
+    @Autowired
+    public VocabularyTermDictionary(JdbcTemplate jdbcTemplate, DatabasePlatform databasePlatform, MeterRegistry meterRegistry,
+                                    @Value("${documents.vocabulary.dictionary-cache-size:200000}") long cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+        this.idsByTerm = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+        this.termsById = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByTerm, "documents.vocabulary.terms");
+    }
+
+    /** The cached id of the user's {@code term}, or 0 if it is not cached. */
+    public int cachedId(Long userId, String term) {
+        Integer id = idsByTerm.getIfPresent(new Key(userId, term));
+        return id != null ? id : 0;
+    }
+
+    /**
+     * Ids of the user's {@code terms}, interning the new ones; must be called inside the writing
+     * transaction, after the user's row is locked.
+     */
+    public Map<String, Integer> intern(Long userId, Collection<String> terms) {
+        Map<String, Integer> ids = lookup(userId, terms);
+        if (ids.size() < terms.size()) {
+            List<String> missing = new ArrayList<>();
+            for (String term : terms) {
+                if (!ids.containsKey(term)) missing.add(term);
+            }
+            // In a fixed order, so concurrent saves adding the same words wait rather than deadlock
+            Collections.sort(missing);
+            String sql = databasePlatform.isPostgres()
+                    ? "INSERT INTO vocabulary_terms (user_id, term) VALUES (?, ?) ON CONFLICT (user_id, term) DO NOTHING"
+                    : "MERGE INTO vocabulary_terms (user_id, term) KEY (user_id, term) VALUES (?, ?)";
+            List<Object[]> rows = new ArrayList<>(missing.size());
+            for (String term : missing) {
+                rows.add(new Object[]{userId, term});
+            }
+            jdbcTemplate.batchUpdate(sql, rows);
+            Map<String, Integer> added = select(userId, "term", missing);
+            ids.putAll(added);
+            AfterCommit.run(() -> cache(userId, added));
+        }
+        return ids;
+    }
+
+    /** Ids of those of the user's {@code terms} that are already interned. */
+    public Map<String, Integer> lookup(Long userId, Collection<String> terms) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String term : terms) {
+            Integer id = idsByTerm.getIfPresent(new Key(userId, term));
+            if (id != null) {
+                ids.put(term, id);
+            } else {
+                uncached.add(term);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            Map<String, Integer> found = select(userId, "term", uncached);
+            ids.putAll(found);
+            // Rows seen here may have been added by this very transaction
+            AfterCommit.run(() -> cache(userId, found));
+        }
+        return ids;
+    }
+
+    /** Words of the user's {@code ids}; ids without a row of the user are left out. */
+    public Map<Integer, String> terms(Long userId, int[] ids) {
+        Map<Integer, String> terms = new HashMap<>();
+        List<Integer> uncached = new ArrayList<>();
+        for (int id : ids) {
+            String term = termsById.getIfPresent(id);
+            if (term != null) {
+                terms.put(id, term);
+            } else {
+                uncached.add(id);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            Map<String, Integer> found = select(userId, "id", uncached);
+            found.forEach((term, id) -> terms.put(id, term));
+            cache(userId, found);
+        }
+        return terms;
+    }
+
+    /**
+     * Deletes the user's terms for which {@code keep} is false and returns how many went; must be
+     * called inside a transaction, after the user's row is locked.
+     */
+    public int retainOnly(Long userId, IntPredicate keep) {
+        Map<String, Integer> unused = new HashMap<>();
+        jdbcTemplate.query("SELECT id, term FROM vocabulary_terms WHERE user_id = ?",
+                rs -> {
+                    int id = rs.getInt("id");
+                    if (!keep.test(id)) {
+                        unused.put(rs.getString("term"), id);
+                    }
+                },
+                userId);
+        if (unused.isEmpty()) {
+            return 0;
+        }
+        List<Integer> ids = new ArrayList<>(unused.values());
+        for (int from = 0; from < ids.size(); from += QUERY_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + QUERY_CHUNK));
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(userId);
+            args.addAll(chunk);
+            jdbcTemplate.update("DELETE FROM vocabulary_terms WHERE user_id = ? AND id IN (" +
+                    String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")", args.toArray());
+        }
+        // Again after commit, in case a read cached them back in the meantime
+        evict(userId, unused);
+        AfterCommit.run(() -> evict(userId, unused));
+        return unused.size();
+    }
+
+    private Map<String, Integer> select(Long userId, String column, List<?> keys) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int from = 0; from < keys.size(); from += QUERY_CHUNK) {
+            List<?> chunk = keys.subList(from, Math.min(keys.size(), from + QUERY_CHUNK));
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(userId);
+            args.addAll(chunk);
+            jdbcTemplate.query(
+                    "SELECT id, term FROM vocabulary_terms WHERE user_id = ? AND " + column + " IN (" +
+                            String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")",
+                    rs -> {
+                        ids.put(rs.getString("term"), rs.getInt("id"));
+                    },
+                    args.toArray());
+        }
+        return ids;
+    }
+
+    private void cache(Long userId, Map<String, Integer> ids) {
+        ids.forEach((term, id) -> {
+            idsByTerm.put(new Key(userId, term), id);
+            termsById.put(id, term);
+        });
+    }
+
+    private void evict(Long userId, Map<String, Integer> ids) {
+        ids.forEach((term, id) -> {
+            idsByTerm.invalidate(new Key(userId, term));
+            termsById.invalidate(id);
+        });
+    }
+
+    // Cache key of a user's word
+    private static final class Key {
+        private final long userId;
+        private final String term;
+
+        private Key(long userId, String term) {
+            this.userId = userId;
+            this.term = term;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return userId == key.userId && term.equals(key.term);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(userId) * 31 + term.hashCode();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.writegy.service;
+
+import com.writegy.model.converter.CompressedContentConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves legacy plain-text content into the compressed column once compression is enabled.
+ *
+ * Walks each table in id order in fixed-size batches. Every batch is its own transaction and
+ * locks its rows while they are rewritten, so a concurrent save can never be overwritten with
+ * stale content, and an interrupted run simply resumes where rows are still uncompressed.
+ */
+@Service
+public class ContentRecompressionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentRecompressionService.class);
+
+    // Uncounted legacy documents are skipped until the list endpoint has counted them
+    private static final String DOCUMENTS_FILTER = " AND word_count > 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    @Autowired
+    public ContentRecompressionService(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${documents.content-compression.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Scheduled(cron = "${documents.content-compression.recompress-cron:0 0 4 * * *}")
+    public void recompressIfEnabled() {
+        if (!CompressedContentConverter.isEnabled()) {
+            return;
+        }
+        long documents = recompress("documents", DOCUMENTS_FILTER);
+        long versions = recompress("document_versions", "");
+        if (documents + versions > 0) {
+            logger.info("Compressed content of {} documents and {} versions", documents, versions);
+        }
+    }
+
+    /** Compresses every remaining plain-text row of {@code table}; returns the number of rows moved. */
+    public long recompress(String table, String filter) {
+        long total = 0;
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            List<Object[]> batch = transactionTemplate.execute(status -> compressBatch(table, filter, afterId));
+            if (batch == null || batch.isEmpty()) {
+                return total;
+            }
+            total += batch.size();
+            lastId = (Long) batch.get(batch.size() - 1)[1];
+        }
+    }
+
+    private List<Object[]> compressBatch(String table, String filter, long afterId) {
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT id, content FROM " + table + " WHERE id > ? AND content_compressed IS NULL AND content <> ''" +
+                        filter + " ORDER BY id LIMIT ? FOR UPDATE",
+                rs -> {
+                    rows.add(new Object[]{CompressedContentConverter.encode(rs.getString("content")), rs.getLong("id")});
+                },
+                afterId, batchSize);
+
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE " + table + " SET content_compressed = ?, content = '' WHERE id = ?", rows);
+        }
+        return rows;
+    }
+}
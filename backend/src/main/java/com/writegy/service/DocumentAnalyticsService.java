@@ -0,0 +1,100 @@
+package com.writegy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.writegy.dto.DocumentAnalyticsDTO;
+import com.writegy.dto.DocumentDTO;
+import com.writegy.util.TextAnalyzer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Readability and style analytics of document content, computed locally by {@link TextAnalyzer}.
+ *
+ * Analyses are cached by the SHA-256 of the content rather than by document, so an edit simply
+ * misses the cache, and clones, restored versions and unchanged saves reuse the same entry.
+ */
+@Service
+public class DocumentAnalyticsService {
+
+    // Upper bounds of the sentence length ranges reported; longer sentences share a last range
+    private static final int[] SENTENCE_LENGTH_RANGES = {5, 10, 15, 20, 25, 30, 40};
+
+    private final DocumentService documentService;
+    private final Cache<String, TextAnalyzer.Stats> analyses;
+    private final int parallelThreshold;
+
+    @Autowired
+    public DocumentAnalyticsService(DocumentService documentService, MeterRegistry meterRegistry,
+                                    @Value("${documents.analytics.parallel-threshold:65536}") int parallelThreshold,
+                                    @Value("${documents.analytics.cache-max-entries:10000}") long cacheMaxEntries) {
+        this.documentService = documentService;
+        this.parallelThreshold = parallelThreshold;
+        this.analyses = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, analyses, "documents.analytics");
+    }
+
+    public DocumentAnalyticsDTO analyze(Long documentId) {
+        DocumentDTO document = documentService.getDocumentDTO(documentId);
+        String content = document.getContent() != null ? document.getContent() : "";
+        TextAnalyzer.Stats stats = analyses.get(DocumentVersionService.sha256(content),
+                key -> TextAnalyzer.analyze(content, parallelThreshold));
+
+        DocumentAnalyticsDTO dto = new DocumentAnalyticsDTO();
+        dto.setDocumentId(documentId);
+        dto.setWordCount(stats.getWords());
+        dto.setSentenceCount(stats.getSentences());
+        dto.setParagraphCount(stats.getParagraphs());
+        dto.setSyllableCount(stats.getSyllables());
+        dto.setAverageSentenceLength(round(stats.averageSentenceLength()));
+        dto.setMedianSentenceLength(stats.sentenceLengthPercentile(0.5));
+        dto.setP90SentenceLength(stats.sentenceLengthPercentile(0.9));
+        dto.setLongestSentenceLength(stats.getLongestSentence());
+        dto.setSentenceLengthDistribution(distribution(stats));
+        dto.setFleschReadingEase(round(stats.fleschReadingEase()));
+        dto.setFleschKincaidGrade(round(stats.fleschKincaidGrade()));
+        dto.setPassiveSentenceCount(stats.getPassiveSentences());
+        dto.setPassiveSentencePercent(percent(stats.getPassiveSentences(), stats.getSentences()));
+        dto.setAdverbCount(stats.getAdverbs());
+        dto.setAdverbPercent(percent(stats.getAdverbs(), stats.getWords()));
+        dto.setRepeatedWordCount(stats.getRepeatedWords());
+        dto.setRepeatedWords(stats.getRepeatedExamples());
+        return dto;
+    }
+
+    private static Map<String, Long> distribution(TextAnalyzer.Stats stats) {
+        Map<String, Long> ranges = new LinkedHashMap<>();
+        int from = 1;
+        for (int to : SENTENCE_LENGTH_RANGES) {
+            ranges.put(from + "-" + to, count(stats, from, to));
+            from = to + 1;
+        }
+        ranges.put(from + "+", count(stats, from, TextAnalyzer.MAX_TRACKED_SENTENCE));
+        return ranges;
+    }
+
+    private static long count(TextAnalyzer.Stats stats, int from, int to) {
+        long count = 0;
+        for (int length = from; length <= to; length++) {
+            count += stats.sentencesOfLength(length);
+        }
+        return count;
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : round(100.0 * part / whole);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
@@ -0,0 +1,155 @@
+package com.writegy.service;
+
+import com.writegy.model.converter.CompressedContentConverter;
+import com.writegy.util.FailureBackoff;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reads documents for data derived from their text (similarity fingerprints, vocabulary
+ * profiles), and runs the background passes that fill that data in where a write left it null.
+ *
+ * Rows are read with plain JDBC together with the caller's own columns, and the text is taken
+ * from wherever it is stored: chunks, an archived object, the compressed column or the plain one.
+ * A pass walks the pending live rows in id order. A row that keeps failing is retried with
+ * growing delays and skipped after a few attempts until it is saved again (see FailureBackoff).
+ */
+@Component
+public class DocumentBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentBackfill.class);
+
+    private static final String COLUMNS = "id, user_id, version, content, content_compressed, chunked, archive_key";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DocumentChunkService documentChunkService;
+    private final DocumentTieringService documentTieringService;
+
+    @Autowired
+    public DocumentBackfill(JdbcTemplate jdbcTemplate, DocumentChunkService documentChunkService,
+                            DocumentTieringService documentTieringService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.documentChunkService = documentChunkService;
+        this.documentTieringService = documentTieringService;
+    }
+
+    /** Documents matching {@code where}, each with the byte columns named in {@code columns}. */
+    public List<PendingDocument> find(List<String> columns, String where, Object... args) {
+        String extra = columns.isEmpty() ? "" : ", " + String.join(", ", columns);
+        return jdbcTemplate.query("SELECT " + COLUMNS + extra + " FROM documents " + where,
+                (rs, rowNum) -> {
+                    Map<String, byte[]> values = new HashMap<>();
+                    for (String column : columns) {
+                        values.put(column, rs.getBytes(column));
+                    }
+                    return new PendingDocument(rs.getLong("id"), rs.getLong("user_id"), rs.getLong("version"),
+                            rs.getString("content"), rs.getBytes("content_compressed"), rs.getBoolean("chunked"),
+                            rs.getString("archive_key"), values);
+                },
+                args);
+    }
+
+    /** The user's live document, failing as "Document not found" otherwise. */
+    public PendingDocument findOwned(List<String> columns, Long userId, Long documentId) {
+        List<PendingDocument> rows = find(columns, "WHERE id = ? AND user_id = ? AND deleted_at IS NULL", documentId, userId);
+        if (rows.isEmpty()) {
+            throw new RuntimeException("Document not found");
+        }
+        return rows.get(0);
+    }
+
+    public String contentOf(PendingDocument document) {
+        if (document.chunked) {
+            return documentChunkService.assemble(document.id);
+        }
+        if (document.archiveKey != null) {
+            return documentTieringService.load(document.archiveKey);
+        }
+        if (document.compressed != null) {
+            return CompressedContentConverter.decode(document.compressed);
+        }
+        return document.content != null ? document.content : "";
+    }
+
+    /**
+     * One pass of {@code store} over the live documents matching {@code pending}, in batches of
+     * {@code batchSize}. {@code task} names the work in log messages. Returns the number stored.
+     */
+    public long run(String task, List<String> columns, String pending, int batchSize, FailureBackoff failures,
+                    Consumer<PendingDocument> store) {
+        long total = 0;
+        long lastId = 0;
+        Set<Long> seen = new HashSet<>();
+        while (true) {
+            List<PendingDocument> batch = find(columns,
+                    "WHERE id > ? AND " + pending + " AND deleted_at IS NULL ORDER BY id LIMIT ?", lastId, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (PendingDocument document : batch) {
+                seen.add(document.id);
+                Instant now = Instant.now();
+                if (!failures.shouldTry(document.id, document.version, now)) {
+                    continue;
+                }
+                try {
+                    store.accept(document);
+                    failures.recordSuccess(document.id);
+                    total++;
+                } catch (RuntimeException e) {
+                    if (failures.recordFailure(document.id, document.version, now)) {
+                        logger.warn("{} document {} keeps failing; skipping it until it is saved again", task, document.id, e);
+                    } else {
+                        logger.debug("{} document {} failed, retrying later", task, document.id, e);
+                    }
+                }
+            }
+            lastId = batch.get(batch.size() - 1).id;
+        }
+        // Documents filled in by a save or deleted since they failed are no longer tracked
+        failures.retainOnly(seen);
+        return total;
+    }
+
+    /** A document row as read for a backfill: where its text lives, plus the caller's columns. */
+    public static final class PendingDocument {
+        private final long id;
+        private final long userId;
+        private final long version;
+        private final String content;
+        private final byte[] compressed;
+        private final boolean chunked;
+        private final String archiveKey;
+        private final Map<String, byte[]> columns;
+
+        private PendingDocument(long id, long userId, long version, String content, byte[] compressed,
+                                boolean chunked, String archiveKey, Map<String, byte[]> columns) {
+            this.id = id;
+            this.userId = userId;
+            this.version = version;
+            this.content = content;
+            this.compressed = compressed;
+            this.chunked = chunked;
+            this.archiveKey = archiveKey;
+            this.columns = columns;
+        }
+
+        public long getId() { return id; }
+        public long getUserId() { return userId; }
+        public long getVersion() { return version; }
+
+        /** One of the columns the document was read with; null when the column is NULL. */
+        public byte[] getColumn(String name) { return columns.get(name); }
+    }
+}
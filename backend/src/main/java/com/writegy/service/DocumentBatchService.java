@@ -0,0 +1,191 @@
+package com.writegy.service;
+
+import com.writegy.dto.BatchOperation;
+import com.writegy.dto.BatchResponse;
+import com.writegy.dto.BatchResult;
+import com.writegy.model.entity.Document;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.FlushModeType;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a list of document reads and writes in one transaction, so a client opening a workspace
+ * pays one round-trip instead of one per call.
+ *
+ * Updates do not flush on their own inside the batch, and the persistence context is set to flush
+ * at commit rather than before every query, so consecutive updates go by id alone and pile up.
+ * Every other operation reads the tree (sort keys, paths, plain JDBC lookups that never trigger a
+ * flush), so pending writes are flushed before it runs, before a second update of the same
+ * document, and once more after the last operation. Moves, deletes and restores are bulk
+ * statements that flush their own changes as they run. Updated documents are mapped to DTOs after
+ * the flush so their versions match the ETags a single update would return. The caller's user id
+ * is resolved once and then served from DocumentService's cache for every operation. The first
+ * failing operation rolls the whole batch back and the operations after it are not run.
+ */
+@Service
+public class DocumentBatchService {
+
+    private final DocumentService documentService;
+    private final DocumentTieringService documentTieringService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxOperations;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public DocumentBatchService(DocumentService documentService,
+                                DocumentTieringService documentTieringService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${documents.batch.max-operations:100}") int maxOperations) {
+        this.documentService = documentService;
+        this.documentTieringService = documentTieringService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxOperations = Math.max(1, maxOperations);
+    }
+
+    public BatchResponse execute(List<BatchOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("A batch needs at least one operation");
+        }
+        if (operations.size() > maxOperations) {
+            throw new IllegalArgumentException("A batch may hold at most " + maxOperations + " operations");
+        }
+        documentService.getCurrentUserId();
+        // Archived text of updated documents is downloaded before the transaction takes any lock
+        documentTieringService.prefetch(operations.stream()
+                .filter(operation -> "update".equals(operation.getOp()) && operation.getId() != null)
+                .map(BatchOperation::getId)
+                .toList());
+
+        List<BatchResult> results = new ArrayList<>(operations.size());
+        Boolean committed = transactionTemplate.execute(status -> {
+            FlushModeType previousFlushMode = entityManager.getFlushMode();
+            entityManager.setFlushMode(FlushModeType.COMMIT);
+            try {
+                List<BatchResult> unflushed = new ArrayList<>();
+                for (int i = 0; i < operations.size(); i++) {
+                    BatchOperation operation = operations.get(i);
+                    try {
+                        if (needsFlush(operation, unflushed)) {
+                            flush(unflushed);
+                        }
+                        BatchResult result = run(operation);
+                        if (isWrite(operation)) {
+                            unflushed.add(result);
+                        }
+                        // The last flush belongs to the last operation, so a failure in it is reported and rolled back
+                        if (i == operations.size() - 1 && !unflushed.isEmpty()) {
+                            flush(unflushed);
+                        }
+                        results.add(result);
+                    } catch (RuntimeException e) {
+                        results.add(failure(e));
+                        for (int skipped = i + 1; skipped < operations.size(); skipped++) {
+                            results.add(new BatchResult(HttpStatus.FAILED_DEPENDENCY.value(), null,
+                                    "Not run: operation " + i + " failed"));
+                        }
+                        status.setRollbackOnly();
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                entityManager.setFlushMode(previousFlushMode);
+            }
+        });
+        return new BatchResponse(Boolean.TRUE.equals(committed), results);
+    }
+
+    private BatchResult run(BatchOperation operation) {
+        String op = operation.getOp() != null ? operation.getOp() : "";
+        Long id = operation.getId();
+        if (id == null) {
+            throw new IllegalArgumentException("Operation '" + op + "' needs an id");
+        }
+        return switch (op) {
+            case "get" -> ok(documentService.getDocumentDTO(id));
+            case "children" -> ok(documentService.getDocumentChildren(id));
+            case "subtree" -> ok(documentService.getDocumentSubtree(id));
+            case "update" -> ok(documentService.updateDocument(id, operation.getTitle(), operation.getContent(), operation.getVersion()));
+            case "setParent" -> ok(operation.getParentId() != null
+                    ? documentService.setDocumentParent(id, operation.getParentId())
+                    : documentService.removeDocumentParent(id));
+            case "removeParent" -> ok(documentService.removeDocumentParent(id));
+            case "delete" -> {
+                documentService.deleteDocument(id, operation.isPermanent());
+                yield new BatchResult(HttpStatus.NO_CONTENT.value(), null, null);
+            }
+            case "restore" -> ok(documentService.restoreDocument(id));
+            default -> throw new IllegalArgumentException("Unknown batch operation: '" + op + "'");
+        };
+    }
+
+    private static boolean isWrite(BatchOperation operation) {
+        String op = operation.getOp();
+        return !"get".equals(op) && !"children".equals(op) && !"subtree".equals(op);
+    }
+
+    // Before any tree read, and before an update of a document whose last update is still pending, since
+    // its version capture looks up the latest version with a query that does not flush
+    private static boolean needsFlush(BatchOperation operation, List<BatchResult> unflushed) {
+        if (unflushed.isEmpty()) {
+            return false;
+        }
+        if (!"update".equals(operation.getOp())) {
+            return true;
+        }
+        for (BatchResult result : unflushed) {
+            if (result.getBody() instanceof Document document && document.getId().equals(operation.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Writes the pending entity changes, then maps the documents they returned
+    private void flush(List<BatchResult> unflushed) {
+        documentService.flushChanges();
+        for (BatchResult result : unflushed) {
+            if (result.getBody() instanceof Document document) {
+                result.setBody(documentService.toDTO(document));
+            }
+        }
+        unflushed.clear();
+    }
+
+    private static BatchResult ok(Object body) {
+        return new BatchResult(HttpStatus.OK.value(), body, null);
+    }
+
+    // Conflicts and bad input keep the statuses of the single-document endpoints; a missed lookup is a 404
+    private static BatchResult failure(RuntimeException e) {
+        if (e instanceof OptimisticLockingFailureException) {
+            return new BatchResult(HttpStatus.PRECONDITION_FAILED.value(), null,
+                    "The document was changed by another request. Reload it and try again.");
+        }
+        if (e instanceof ConcurrencyFailureException) {
+            return new BatchResult(HttpStatus.CONFLICT.value(), null,
+                    "The document is being saved by another request. Try again.");
+        }
+        if (e instanceof IllegalArgumentException) {
+            return new BatchResult(HttpStatus.BAD_REQUEST.value(), null, e.getMessage());
+        }
+        if (e.getMessage() != null && e.getMessage().endsWith("not found")) {
+            return new BatchResult(HttpStatus.NOT_FOUND.value(), null, e.getMessage());
+        }
+        return new BatchResult(HttpStatus.INTERNAL_SERVER_ERROR.value(), null,
+                "An unexpected error occurred. Please try again later.");
+    }
+}
@@ -0,0 +1,84 @@
+package com.writegy.service;
+
+import com.writegy.dto.DocumentChangeDTO;
+import com.writegy.dto.DocumentChangeFeed;
+import com.writegy.repository.DocumentChangeSequence;
+import com.writegy.repository.DocumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Incremental change feed for client sync.
+ *
+ * Every document write stamps the row with the next value of its owner's change sequence, so
+ * "what changed since" is a keyset scan over (change_seq, id) on an index, with trashed documents
+ * coming back as tombstones. Hard deletes leave no row; they advance the user's purged mark
+ * instead, and a cursor older than that mark gets a reset rather than a silently incomplete page.
+ */
+@Service
+public class DocumentChangeService {
+
+    private final DocumentRepository documentRepository;
+    private final DocumentChangeSequence changeSequence;
+    private final int maxLimit;
+
+    @Autowired
+    public DocumentChangeService(DocumentRepository documentRepository,
+                                 DocumentChangeSequence changeSequence,
+                                 @Value("${documents.changes.max-limit:500}") int maxLimit) {
+        this.documentRepository = documentRepository;
+        this.changeSequence = changeSequence;
+        this.maxLimit = Math.max(1, maxLimit);
+    }
+
+    /** Changes after the opaque {@code since} cursor, or from the beginning when it is null. */
+    @Transactional(readOnly = true)
+    public DocumentChangeFeed getChanges(Long userId, String since, int limit) {
+        long[] position = since != null && !since.isBlank() ? decode(since) : new long[]{-1, 0};
+        int size = Math.min(Math.max(1, limit), maxLimit);
+
+        List<DocumentChangeDTO> changes = documentRepository.findChangesAfter(
+                userId, position[0], position[1], PageRequest.of(0, size + 1));
+
+        // Read after the page: a purge that committed before any row on it is visible here too
+        long[] sequence = changeSequence.current(userId);
+        if (since != null && !since.isBlank() && position[0] < sequence[1]) {
+            return new DocumentChangeFeed(List.of(), encode(sequence[0], Long.MAX_VALUE), false, true);
+        }
+
+        boolean hasMore = changes.size() > size;
+        if (hasMore) {
+            changes = changes.subList(0, size);
+        }
+        String cursor = since;
+        if (!changes.isEmpty()) {
+            DocumentChangeDTO last = changes.get(changes.size() - 1);
+            cursor = encode(last.getChangeSeq(), last.getId());
+        } else if (cursor == null || cursor.isBlank()) {
+            cursor = encode(-1, 0);
+        }
+        return new DocumentChangeFeed(changes, cursor, hasMore, false);
+    }
+
+    static String encode(long changeSeq, long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((changeSeq + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long[] decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int colon = decoded.indexOf(':');
+            return new long[]{Long.parseLong(decoded.substring(0, colon)), Long.parseLong(decoded.substring(colon + 1))};
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid change cursor");
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.writegy.service;
+
+import com.writegy.dto.DocumentChunkDTO;
+import com.writegy.dto.DocumentChunkWindow;
+import com.writegy.dto.DocumentContentStats;
+import com.writegy.model.entity.Document;
+import com.writegy.repository.DocumentChangeSequence;
+import com.writegy.util.ContentChunker;
+import com.writegy.util.ContentRope;
+import com.writegy.util.FractionalIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chunked storage for very large documents.
+ *
+ * A chunked document's text is the concatenation of its document_chunks rows in chunk_key order;
+ * the documents row keeps an empty content column plus the totals. Boundaries come from
+ * ContentChunker, so a full save re-splits the text and rewrites only chunks whose hash changed,
+ * while a splice locates the chunks it touches through a ContentRope and loads just those.
+ * Rewritten chunks take over the keys of the chunks they replace, so keys only lengthen where a
+ * region gains chunks.
+ */
+@Service
+public class DocumentChunkService {
+
+    private static final String LAYOUT_COLUMNS = "chunk_key, char_length, word_count, character_count, content_hash";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DocumentChangeSequence changeSequence;
+    private final DocumentTreeCache documentTreeCache;
+    private final int threshold;
+    private final int maxWindow;
+
+    @Autowired
+    public DocumentChunkService(JdbcTemplate jdbcTemplate,
+                                DocumentChangeSequence changeSequence,
+                                DocumentTreeCache documentTreeCache,
+                                @Value("${documents.chunking.threshold:262144}") int threshold,
+                                @Value("${documents.chunking.max-window:50}") int maxWindow) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeSequence = changeSequence;
+        this.documentTreeCache = documentTreeCache;
+        this.threshold = threshold;
+        this.maxWindow = Math.max(1, maxWindow);
+    }
+
+    /** Whether text of this size belongs in chunks; a threshold of 0 disables chunking. */
+    public boolean shouldChunk(String content) {
+        return threshold > 0 && content != null && content.length() >= threshold;
+    }
+
+    /** The full text of a chunked document. */
+    public String assemble(Long documentId) {
+        StringBuilder text = new StringBuilder();
+        jdbcTemplate.query("SELECT content FROM document_chunks WHERE document_id = ? ORDER BY chunk_key",
+                rs -> { text.append(rs.getString(1)); }, documentId);
+        return text.toString();
+    }
+
+    /**
+     * Stores {@code content} as the document's chunks, writing only the chunks that differ from
+     * the stored ones. Returns whether anything was written.
+     */
+    @Transactional
+    public boolean replaceContent(Long documentId, String content) {
+        List<String> pieces = ContentChunker.split(content != null ? content : "");
+        return rewrite(documentId, loadLayout(documentId), pieces, null, null).changed;
+    }
+
+    /**
+     * Replaces {@code deleteCount} chars at {@code offset}, loading and rewriting only the chunks
+     * the range touches. The owner's change sequence and then the document row are locked (and its
+     * version bumped) first, so concurrent splices apply one after the other. Callers go through
+     * DocumentService, which also settles buffered autosaves and records the version.
+     */
+    @Transactional
+    public SpliceResult splice(Long documentId, Long userId, long offset, long deleteCount, String text, Long expectedVersion) {
+        String insert = text != null ? text : "";
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        long changeSeq = changeSequence.next(userId);
+        int updated = expectedVersion != null
+                ? jdbcTemplate.update("UPDATE documents SET version = version + 1, updated_at = ?, change_seq = ?, " +
+                        "minhash = NULL, term_vector = NULL, vocabulary = NULL " +
+                        "WHERE id = ? AND user_id = ? AND chunked = TRUE AND deleted_at IS NULL AND version = ?",
+                        now, changeSeq, documentId, userId, expectedVersion)
+                : jdbcTemplate.update("UPDATE documents SET version = version + 1, updated_at = ?, change_seq = ?, " +
+                        "minhash = NULL, term_vector = NULL, vocabulary = NULL " +
+                        "WHERE id = ? AND user_id = ? AND chunked = TRUE AND deleted_at IS NULL", now, changeSeq, documentId, userId);
+        if (updated == 0) {
+            throw rejection(documentId, userId);
+        }
+
+        List<ChunkRow> layout = loadLayout(documentId);
+        ContentRope rope = toRope(layout);
+        int[] range = rope.affectedRange(offset, deleteCount);
+        int first = range[0];
+        int last = range[1];
+
+        // Pull in the next chunk when the edit reaches the region's end (so no word is split across
+        // chunks) or when the region would shrink below a useful chunk size
+        long regionEnd = rope.offsetOf(last + 1);
+        long editedLength = regionEnd - rope.offsetOf(first) - deleteCount + insert.length();
+        if (last + 1 < rope.size() && (offset + deleteCount == regionEnd || editedLength < ContentChunker.MIN_CHUNK)) {
+            last++;
+        }
+
+        List<ChunkRow> region = first <= last
+                ? loadContents(documentId, rope.key(first), rope.key(last))
+                : new ArrayList<>();
+        StringBuilder regionText = new StringBuilder();
+        for (ChunkRow row : region) {
+            regionText.append(row.content);
+        }
+        int local = (int) (offset - rope.offsetOf(first));
+        String removed = regionText.substring(local, local + (int) deleteCount);
+        regionText.replace(local, local + (int) deleteCount, insert);
+
+        Delta delta = rewrite(documentId, region, ContentChunker.split(regionText.toString()),
+                rope.key(first - 1), rope.key(last + 1));
+        jdbcTemplate.update("UPDATE documents SET word_count = word_count + ?, character_count = character_count + ? WHERE id = ?",
+                delta.wordCount, delta.characterCount, documentId);
+        DocumentContentStats stats = stats(documentId, rope.length() + delta.length);
+        documentTreeCache.onCountsChanged(userId, documentId, stats.getWordCount(), stats.getCharacterCount());
+        return new SpliceResult(stats, removed);
+    }
+
+    /**
+     * A window of consecutive chunks, starting after {@code afterKey} or at the chunk containing
+     * char {@code offset} when given.
+     */
+    @Transactional(readOnly = true)
+    public DocumentChunkWindow readWindow(Long documentId, Long userId, String afterKey, Long offset, int limit) {
+        Long version = requireChunked(documentId, userId);
+        int size = Math.min(Math.max(limit, 1), maxWindow);
+
+        long totalLength;
+        long startOffset;
+        String cursor;
+        if (offset != null) {
+            ContentRope rope = toRope(loadLayout(documentId));
+            int index = rope.chunkAt(offset);
+            totalLength = rope.length();
+            startOffset = index >= 0 ? rope.offsetOf(index) : 0;
+            cursor = index > 0 ? rope.key(index - 1) : "";
+        } else {
+            cursor = afterKey != null ? afterKey : "";
+            long[] sums = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(char_length), 0), COALESCE(SUM(CASE WHEN chunk_key <= ? THEN char_length ELSE 0 END), 0) " +
+                            "FROM document_chunks WHERE document_id = ?",
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, cursor, documentId);
+            totalLength = sums[0];
+            startOffset = sums[1];
+        }
+
+        // One row past the window tells whether more follow
+        List<DocumentChunkDTO> chunks = jdbcTemplate.query(
+                "SELECT chunk_key, char_length, content FROM document_chunks WHERE document_id = ? AND chunk_key > ? " +
+                        "ORDER BY chunk_key LIMIT ?",
+                (rs, rowNum) -> new DocumentChunkDTO(rs.getString(1), 0, rs.getInt(2), rs.getString(3)),
+                documentId, cursor, size + 1);
+        boolean hasMore = chunks.size() > size;
+        if (hasMore) chunks.remove(size);
+
+        long position = startOffset;
+        for (DocumentChunkDTO chunk : chunks) {
+            chunk.setOffset(position);
+            position += chunk.getLength();
+        }
+        return new DocumentChunkWindow(documentId, totalLength, version, chunks, hasMore);
+    }
+
+    /** Drops all chunks; used when a document's text moves back into its row. */
+    @Transactional
+    public void deleteChunks(Long documentId) {
+        jdbcTemplate.update("DELETE FROM document_chunks WHERE document_id = ?", documentId);
+    }
+
+    // Replaces the consecutive stored chunks {@code old}, which sit between lowerKey and upperKey,
+    // with {@code pieces}; unchanged chunks at either end are left alone
+    private Delta rewrite(Long documentId, List<ChunkRow> old, List<String> pieces, String lowerKey, String upperKey) {
+        List<String> hashes = new ArrayList<>(pieces.size());
+        for (String piece : pieces) {
+            hashes.add(DocumentVersionService.sha256(piece));
+        }
+
+        int prefix = 0;
+        while (prefix < old.size() && prefix < pieces.size() && old.get(prefix).hash.equals(hashes.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < old.size() - prefix && suffix < pieces.size() - prefix
+                && old.get(old.size() - 1 - suffix).hash.equals(hashes.get(pieces.size() - 1 - suffix))) {
+            suffix++;
+        }
+        int oldEnd = old.size() - suffix;
+        int newEnd = pieces.size() - suffix;
+        int reused = Math.min(oldEnd - prefix, newEnd - prefix);
+
+        Delta delta = new Delta();
+        List<Object[]> updates = new ArrayList<>();
+        for (int i = prefix; i < prefix + reused; i++) {
+            ChunkRow row = old.get(i);
+            String piece = pieces.get(i);
+            int words = DocumentService.countWords(piece);
+            int characters = DocumentService.countCharacters(piece);
+            delta.remove(row);
+            delta.add(piece.length(), words, characters);
+            updates.add(new Object[]{piece, piece.length(), words, characters, hashes.get(i), documentId, row.key});
+        }
+
+        List<Object[]> deletes = new ArrayList<>();
+        for (int i = prefix + reused; i < oldEnd; i++) {
+            delta.remove(old.get(i));
+            deletes.add(new Object[]{documentId, old.get(i).key});
+        }
+
+        List<Object[]> inserts = new ArrayList<>();
+        int extra = newEnd - prefix - reused;
+        if (extra > 0) {
+            int before = prefix + reused - 1;
+            String lower = before >= 0 ? old.get(before).key : lowerKey;
+            String upper = oldEnd < old.size() ? old.get(oldEnd).key : upperKey;
+            List<String> keys = FractionalIndex.keysBetween(lower, upper, extra);
+            for (int i = 0; i < extra; i++) {
+                String piece = pieces.get(prefix + reused + i);
+                int words = DocumentService.countWords(piece);
+                int characters = DocumentService.countCharacters(piece);
+                delta.add(piece.length(), words, characters);
+                inserts.add(new Object[]{documentId, keys.get(i), piece, piece.length(), words, characters,
+                        hashes.get(prefix + reused + i)});
+            }
+        }
+
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM document_chunks WHERE document_id = ? AND chunk_key = ?", deletes);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE document_chunks SET content = ?, char_length = ?, word_count = ?, character_count = ?, " +
+                    "content_hash = ? WHERE document_id = ? AND chunk_key = ?", updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO document_chunks (document_id, chunk_key, content, char_length, word_count, " +
+                    "character_count, content_hash) VALUES (?, ?, ?, ?, ?, ?, ?)", inserts);
+        }
+        delta.changed = !updates.isEmpty() || !deletes.isEmpty() || !inserts.isEmpty();
+        return delta;
+    }
+
+    private List<ChunkRow> loadLayout(Long documentId) {
+        return jdbcTemplate.query("SELECT " + LAYOUT_COLUMNS + " FROM document_chunks WHERE document_id = ? ORDER BY chunk_key",
+                layoutMapper(false), documentId);
+    }
+
+    private List<ChunkRow> loadContents(Long documentId, String fromKey, String toKey) {
+        return jdbcTemplate.query("SELECT " + LAYOUT_COLUMNS + ", content FROM document_chunks " +
+                        "WHERE document_id = ? AND chunk_key >= ? AND chunk_key <= ? ORDER BY chunk_key",
+                layoutMapper(true), documentId, fromKey, toKey);
+    }
+
+    private static RowMapper<ChunkRow> layoutMapper(boolean withContent) {
+        return (rs, rowNum) -> {
+            ChunkRow row = new ChunkRow();
+            row.key = rs.getString(1);
+            row.length = rs.getInt(2);
+            row.wordCount = rs.getInt(3);
+            row.characterCount = rs.getInt(4);
+            row.hash = rs.getString(5);
+            if (withContent) row.content = rs.getString(6);
+            return row;
+        };
+    }
+
+    private static ContentRope toRope(List<ChunkRow> layout) {
+        List<String> keys = new ArrayList<>(layout.size());
+        List<Integer> lengths = new ArrayList<>(layout.size());
+        for (ChunkRow row : layout) {
+            keys.add(row.key);
+            lengths.add(row.length);
+        }
+        return new ContentRope(keys, lengths);
+    }
+
+    private DocumentContentStats stats(Long documentId, long length) {
+        return jdbcTemplate.queryForObject("SELECT word_count, character_count, version FROM documents WHERE id = ?",
+                (rs, rowNum) -> new DocumentContentStats(documentId, length, rs.getInt(1), rs.getInt(2), rs.getLong(3)),
+                documentId);
+    }
+
+    // Version of an owned, chunked document
+    private Long requireChunked(Long documentId, Long userId) {
+        List<Object[]> rows = jdbcTemplate.query("SELECT chunked, version FROM documents WHERE id = ? AND user_id = ? AND deleted_at IS NULL",
+                (rs, rowNum) -> new Object[]{rs.getBoolean(1), rs.getLong(2)}, documentId, userId);
+        if (rows.isEmpty()) {
+            throw new RuntimeException("Document not found");
+        }
+        if (!(Boolean) rows.get(0)[0]) {
+            throw new IllegalArgumentException("Document " + documentId + " is not stored in chunks");
+        }
+        return (Long) rows.get(0)[1];
+    }
+
+    // Why a guarded version bump matched no row
+    private RuntimeException rejection(Long documentId, Long userId) {
+        requireChunked(documentId, userId);
+        return new ObjectOptimisticLockingFailureException(Document.class, documentId);
+    }
+
+    /** The document's totals after a splice, and the text the splice removed. */
+    public static final class SpliceResult {
+        private final DocumentContentStats stats;
+        private final String removed;
+
+        private SpliceResult(DocumentContentStats stats, String removed) {
+            this.stats = stats;
+            this.removed = removed;
+        }
+
+        public DocumentContentStats getStats() {
+            return stats;
+        }
+
+        public String getRemoved() {
+            return removed;
+        }
+    }
+
+    private static final class ChunkRow {
+        private String key;
+        private int length;
+        private int wordCount;
+        private int characterCount;
+        private String hash;
+        private String content;
+    }
+
+    // Net change in the document's totals from one rewrite
+    private static final class Delta {
+        private long length;
+        private int wordCount;
+        private int characterCount;
+        private boolean changed;
+
+        private void add(int pieceLength, int words, int characters) {
+            length += pieceLength;
+            wordCount += words;
+            characterCount += characters;
+        }
+
+        private void remove(ChunkRow row) {
+            length -= row.length;
+            wordCount -= row.wordCount;
+            characterCount -= row.characterCount;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.writegy.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.writegy.model.entity.Document;
+import com.writegy.repository.DocumentRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams all of a user's documents to an output stream without holding them in memory.
+ *
+ * Rows come from a forward-only cursor in hierarchy order and each entity is detached once
+ * written, so heap use stays flat however many documents the user has. Runs on the response
+ * thread, hence its own read-only transaction instead of @Transactional.
+ */
+@Service
+public class DocumentExportService {
+
+    private final DocumentRepository documentRepository;
+    private final DocumentChunkService documentChunkService;
+    private final DocumentTieringService documentTieringService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public DocumentExportService(DocumentRepository documentRepository, DocumentChunkService documentChunkService,
+                                 DocumentTieringService documentTieringService, ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.documentChunkService = documentChunkService;
+        this.documentTieringService = documentTieringService;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /** One JSON object per line, parents before children. */
+    public void exportNdjson(Long userId, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            forEachDocument(userId, document -> {
+                try {
+                    writeJson(generator, document);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** A ZIP with one Markdown file per document; front matter keeps the hierarchy. */
+    public void exportZip(Long userId, OutputStream out) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8)) {
+            forEachDocument(userId, document -> {
+                try {
+                    zip.putNextEntry(new ZipEntry(fileName(document)));
+                    zip.write(toMarkdown(document, contentOf(document)).getBytes(StandardCharsets.UTF_8));
+                    zip.closeEntry();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void forEachDocument(Long userId, Consumer<Document> writer) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Document> documents = documentRepository.streamByUserId(userId)) {
+                documents.forEach(document -> {
+                    writer.accept(document);
+                    entityManager.detach(document);
+                });
+            }
+        });
+    }
+
+    private void writeJson(JsonGenerator generator, Document document) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", document.getId());
+        if (document.getParent() != null) {
+            generator.writeNumberField("parentId", document.getParent().getId());
+        } else {
+            generator.writeNullField("parentId");
+        }
+        generator.writeStringField("path", document.getPath());
+        generator.writeStringField("title", document.getTitle());
+        generator.writeStringField("status", document.getStatus() != null ? document.getStatus().name() : null);
+        generator.writeNumberField("wordCount", document.getWordCount() != null ? document.getWordCount() : 0);
+        generator.writeNumberField("characterCount", document.getCharacterCount() != null ? document.getCharacterCount() : 0);
+        generator.writeStringField("createdAt", format(document.getCreatedAt()));
+        generator.writeStringField("updatedAt", format(document.getUpdatedAt()));
+        generator.writeNumberField("version", document.getVersion() != null ? document.getVersion() : 0);
+        generator.writeStringField("content", contentOf(document));
+        generator.writeEndObject();
+    }
+
+    // Chunked and archived documents are loaded one at a time, so only the largest single document is held
+    private String contentOf(Document document) {
+        if (document.isChunked()) {
+            return documentChunkService.assemble(document.getId());
+        }
+        return document.isArchived() ? documentTieringService.load(document.getArchiveKey()) : document.getContent();
+    }
+
+    private static String toMarkdown(Document document, String content) {
+        StringBuilder markdown = new StringBuilder();
+        markdown.append("---\n");
+        markdown.append("id: ").append(document.getId()).append('\n');
+        markdown.append("title: \"").append(escapeYaml(document.getTitle())).append("\"\n");
+        if (document.getParent() != null) {
+            markdown.append("parentId: ").append(document.getParent().getId()).append('\n');
+        }
+        markdown.append("path: \"").append(document.getPath() != null ? document.getPath() : "").append("\"\n");
+        markdown.append("createdAt: ").append(format(document.getCreatedAt())).append('\n');
+        markdown.append("updatedAt: ").append(format(document.getUpdatedAt())).append('\n');
+        markdown.append("---\n\n");
+        markdown.append("# ").append(document.getTitle()).append("\n\n");
+        markdown.append(content != null ? content : "").append('\n');
+        return markdown.toString();
+    }
+
+    // Titles are not unique, so the id keeps entry names distinct
+    private static String fileName(Document document) {
+        String slug = document.getTitle() == null ? "" : document.getTitle().toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", "-")
+                .replaceAll("(^-+|-+$)", "");
+        if (slug.length() > 60) slug = slug.substring(0, 60);
+        return (slug.isEmpty() ? "untitled" : slug) + "-" + document.getId() + ".md";
+    }
+
+    private static String escapeYaml(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String format(LocalDateTime timestamp) {
+        return timestamp != null ? timestamp.toString() : null;
+    }
+}
@@ -0,0 +1,112 @@
+package com.writegy.service;
+
+import com.writegy.repository.DatabasePlatform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Detects and repairs drift between the parent_id adjacency list (the source of truth) and the
+ * derived path/depth columns, using set-based SQL only.
+ *
+ * PostgreSQL recomputes the whole hierarchy with one recursive CTE. H2 cannot drive an UPDATE from
+ * a recursive CTE, so it repairs level by level: each statement fixes every row whose parent is
+ * already correct, and the loop ends when a pass changes nothing.
+ */
+@Service
+public class DocumentHierarchyRepairService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentHierarchyRepairService.class);
+
+    // Guards the H2 loop against a corrupted parent_id cycle
+    private static final int MAX_LEVELS = 10_000;
+
+    private static final String POSTGRES_TREE = """
+            WITH RECURSIVE tree AS (
+                SELECT id, CAST('/' || id || '/' AS VARCHAR(2000)) AS path, 0 AS depth
+                FROM documents
+                WHERE parent_id IS NULL
+                UNION ALL
+                SELECT d.id, CAST(t.path || d.id || '/' AS VARCHAR(2000)), t.depth + 1
+                FROM documents d
+                JOIN tree t ON d.parent_id = t.id
+            )
+            """;
+
+    private static final String POSTGRES_COUNT = POSTGRES_TREE + """
+            SELECT COUNT(*) FROM documents d JOIN tree ON d.id = tree.id
+            WHERE d.path IS DISTINCT FROM tree.path OR d.depth IS DISTINCT FROM tree.depth
+            """;
+
+    private static final String POSTGRES_REPAIR = POSTGRES_TREE + """
+            UPDATE documents d SET path = tree.path, depth = tree.depth, version = d.version + 1
+            FROM tree
+            WHERE d.id = tree.id AND (d.path IS DISTINCT FROM tree.path OR d.depth IS DISTINCT FROM tree.depth)
+            """;
+
+    private static final String ROOT_DRIFT = """
+            parent_id IS NULL AND (path IS DISTINCT FROM '/' || CAST(id AS VARCHAR(20)) || '/' OR depth IS DISTINCT FROM 0)
+            """;
+
+    private static final String CHILD_DRIFT = """
+            c.parent_id IS NOT NULL AND (
+                c.path IS DISTINCT FROM (SELECT p.path FROM documents p WHERE p.id = c.parent_id) || CAST(c.id AS VARCHAR(20)) || '/'
+                OR c.depth IS DISTINCT FROM (SELECT p.depth FROM documents p WHERE p.id = c.parent_id) + 1)
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatabasePlatform databasePlatform;
+
+    /**
+     * Number of documents whose path or depth disagrees with the adjacency list. On H2 this counts
+     * rows that disagree with their direct parent, which is zero exactly when the tree is consistent.
+     */
+    public long countDrift() {
+        if (databasePlatform.isPostgres()) {
+            Long drift = jdbcTemplate.queryForObject(POSTGRES_COUNT, Long.class);
+            return drift != null ? drift : 0;
+        }
+        Long roots = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM documents WHERE " + ROOT_DRIFT, Long.class);
+        Long children = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM documents c WHERE " + CHILD_DRIFT, Long.class);
+        return (roots != null ? roots : 0) + (children != null ? children : 0);
+    }
+
+    /** Recomputes path and depth for every drifted document and returns the number of rows fixed. */
+    @Transactional
+    public int repair() {
+        if (databasePlatform.isPostgres()) {
+            return jdbcTemplate.update(POSTGRES_REPAIR);
+        }
+
+        int fixed = jdbcTemplate.update("UPDATE documents SET path = '/' || CAST(id AS VARCHAR(20)) || '/', depth = 0, version = version + 1 WHERE " + ROOT_DRIFT);
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            int updated = jdbcTemplate.update("""
+                    UPDATE documents c SET
+                        path = (SELECT p.path FROM documents p WHERE p.id = c.parent_id) || CAST(c.id AS VARCHAR(20)) || '/',
+                        depth = (SELECT p.depth FROM documents p WHERE p.id = c.parent_id) + 1,
+                        version = c.version + 1
+                    WHERE """ + CHILD_DRIFT);
+            if (updated == 0) break;
+            fixed += updated;
+        }
+        return fixed;
+    }
+
+    @Scheduled(cron = "${documents.hierarchy.repair-cron:0 30 3 * * *}")
+    public void verifyAndRepair() {
+        long drift = countDrift();
+        if (drift == 0) {
+            logger.debug("Document hierarchy verified, no drift found");
+            return;
+        }
+        int fixed = repair();
+        logger.warn("Document hierarchy drift detected in {} rows, repaired {}", drift, fixed);
+    }
+}
@@ -0,0 +1,142 @@
+package com.writegy.service;
+
+import com.writegy.dto.DocumentPlacement;
+import com.writegy.dto.MoveRequest;
+import com.writegy.util.FractionalIndex;
+import com.writegy.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Applies a batch of moves to an in-memory snapshot of one user's tree placements and collects
+ * the rows that actually changed, so the caller can write them back in a single JDBC batch.
+ *
+ * A reorder within the same parent changes exactly one row. A reparent also rewrites the path
+ * (and with it the depth) of the moved subtree.
+ */
+class DocumentMovePlanner {
+
+    // Keys past this length trigger an even re-spacing of the affected sibling group
+    private static final int MAX_SORT_KEY_LENGTH = 64;
+
+    private final List<DocumentPlacement> placements;
+    private final LongIntHashMap indexById;
+    private final Set<DocumentPlacement> changed = new LinkedHashSet<>();
+
+    DocumentMovePlanner(List<DocumentPlacement> placements) {
+        this.placements = placements;
+        this.indexById = new LongIntHashMap(placements.size());
+        for (int i = 0; i < placements.size(); i++) {
+            indexById.put(placements.get(i).getId(), i);
+        }
+    }
+
+    Set<DocumentPlacement> getChanged() {
+        return changed;
+    }
+
+    void apply(MoveRequest move) {
+        DocumentPlacement document = require(move.getDocumentId(), "Document");
+        DocumentPlacement parent = move.getParentId() != null ? require(move.getParentId(), "Parent document") : null;
+        // Paths are rewritten by prefix, so a legacy row without one would move without its subtree
+        for (DocumentPlacement placement : parent != null ? List.of(document, parent) : List.of(document)) {
+            if (placement.getPath() == null) {
+                throw new IllegalArgumentException("Document " + placement.getId()
+                        + " cannot be moved until its place in the hierarchy has been repaired");
+            }
+        }
+
+        if (parent != null && parent.getPath().startsWith(document.getPath())) {
+            throw new IllegalArgumentException("Cannot create circular reference for document " + document.getId());
+        }
+
+        List<DocumentPlacement> siblings = siblingsOf(move.getParentId(), document);
+        int position = insertionPosition(siblings, move);
+        String lower = position > 0 ? siblings.get(position - 1).getSortKey() : null;
+        String upper = position < siblings.size() ? siblings.get(position).getSortKey() : null;
+
+        if (!Objects.equals(document.getParentId(), move.getParentId())) {
+            reparent(document, parent);
+        }
+
+        String key = lower != null && upper != null && lower.compareTo(upper) >= 0 ? null : FractionalIndex.between(lower, upper);
+        if (key == null || key.length() > MAX_SORT_KEY_LENGTH) {
+            // Keys grew too long (or legacy rows collide): re-space the whole sibling group
+            siblings.add(position, document);
+            List<String> keys = FractionalIndex.keysBetween(null, null, siblings.size());
+            for (int i = 0; i < siblings.size(); i++) {
+                siblings.get(i).setSortKey(keys.get(i));
+                changed.add(siblings.get(i));
+            }
+        } else {
+            document.setSortKey(key);
+            changed.add(document);
+        }
+    }
+
+    private void reparent(DocumentPlacement document, DocumentPlacement parent) {
+        String oldPrefix = document.getPath();
+        String newPrefix = (parent != null ? parent.getPath() : "/") + document.getId() + "/";
+        document.setParentId(parent != null ? parent.getId() : null);
+
+        for (DocumentPlacement placement : placements) {
+            if (placement.getPath() != null && placement.getPath().startsWith(oldPrefix)) {
+                placement.setPath(newPrefix + placement.getPath().substring(oldPrefix.length()));
+                placement.setDepth(depthOf(placement.getPath()));
+                changed.add(placement);
+            }
+        }
+    }
+
+    private int insertionPosition(List<DocumentPlacement> siblings, MoveRequest move) {
+        if (move.getAfterId() != null) {
+            return indexOfSibling(siblings, move.getAfterId()) + 1;
+        }
+        if (move.getBeforeId() != null) {
+            return indexOfSibling(siblings, move.getBeforeId());
+        }
+        return siblings.size();
+    }
+
+    private int indexOfSibling(List<DocumentPlacement> siblings, Long id) {
+        for (int i = 0; i < siblings.size(); i++) {
+            if (siblings.get(i).getId().equals(id)) return i;
+        }
+        throw new IllegalArgumentException("Document " + id + " is not a sibling at the target position");
+    }
+
+    private List<DocumentPlacement> siblingsOf(Long parentId, DocumentPlacement excluded) {
+        List<DocumentPlacement> siblings = new ArrayList<>();
+        for (DocumentPlacement placement : placements) {
+            if (placement != excluded && Objects.equals(placement.getParentId(), parentId)) {
+                siblings.add(placement);
+            }
+        }
+        siblings.sort(Comparator.comparing(DocumentPlacement::getSortKey, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(DocumentPlacement::getId));
+        return siblings;
+    }
+
+    private DocumentPlacement require(Long id, String label) {
+        int index = id != null ? indexById.get(id, -1) : -1;
+        // Trashed documents stay in the snapshot so their paths follow moves, but cannot be targeted
+        if (index < 0 || placements.get(index).getDeletedAt() != null) {
+            throw new IllegalArgumentException(label + " not found: " + id);
+        }
+        return placements.get(index);
+    }
+
+    // "/3/17/42/" has four slashes and depth 2
+    static int depthOf(String path) {
+        int slashes = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/') slashes++;
+        }
+        return Math.max(slashes - 2, 0);
+    }
+}
@@ -0,0 +1,126 @@
+package com.writegy.service;
+
+import com.writegy.repository.DocumentChangeSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Hard-deletes documents that have been in the trash longer than the retention period.
+ *
+ * Each batch is one set-based DELETE of a bounded number of selected rows in its own transaction, taken
+ * deepest first: a trashed subtree is trashed as a whole, so by the time a parent is picked its
+ * expired descendants are already gone and the parent_id cascade has nothing left to walk.
+ * Versions and chunks go with their document through their own ON DELETE CASCADE; archived text
+ * lives outside the database, so its objects are deleted once the batch has committed. A purge
+ * leaves no row behind for the change feed, so every owner in a batch is marked purged first.
+ * Once a run is done, each owner's interned words that no remaining document uses are pruned, one
+ * owner per transaction.
+ */
+@Service
+public class DocumentPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentPurgeService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DocumentChangeSequence changeSequence;
+    private final DocumentTieringService documentTieringService;
+    private final DocumentSimilarityService documentSimilarityService;
+    private final DocumentVocabularyService documentVocabularyService;
+    private final int retentionDays;
+    private final int batchSize;
+
+    @Autowired
+    public DocumentPurgeService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                DocumentChangeSequence changeSequence,
+                                DocumentTieringService documentTieringService,
+                                DocumentSimilarityService documentSimilarityService,
+                                DocumentVocabularyService documentVocabularyService,
+                                @Value("${documents.trash.retention-days:30}") int retentionDays,
+                                @Value("${documents.trash.purge-batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.changeSequence = changeSequence;
+        this.documentTieringService = documentTieringService;
+        this.documentSimilarityService = documentSimilarityService;
+        this.documentVocabularyService = documentVocabularyService;
+        this.retentionDays = Math.max(0, retentionDays);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Scheduled(cron = "${documents.trash.purge-cron:0 15 4 * * *}")
+    public void purgeExpired() {
+        long purged = purgeTrashedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (purged > 0) {
+            logger.info("Purged {} documents from the trash", purged);
+        }
+    }
+
+    /** Deletes every document trashed before {@code cutoff}; returns the number of rows removed. */
+    public long purgeTrashedBefore(LocalDateTime cutoff) {
+        Timestamp before = Timestamp.valueOf(cutoff);
+        long total = 0;
+        Set<Long> owners = new TreeSet<>();
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> purgeBatch(before, owners));
+            if (deleted == null || deleted == 0) {
+                break;
+            }
+            total += deleted;
+        }
+        for (Long userId : owners) {
+            transactionTemplate.executeWithoutResult(status -> {
+                changeSequence.lock(userId);
+                documentVocabularyService.pruneTerms(userId);
+            });
+        }
+        return total;
+    }
+
+    private int purgeBatch(Timestamp before, Set<Long> owners) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, user_id FROM documents WHERE deleted_at < ? ORDER BY depth DESC, id LIMIT ?",
+                before, batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        // Owners in id order, ahead of the document rows, matching the lock order of every other writer
+        TreeMap<Long, List<Long>> idsByUser = new TreeMap<>();
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            long id = ((Number) row.get("id")).longValue();
+            idsByUser.computeIfAbsent(((Number) row.get("user_id")).longValue(), key -> new ArrayList<>()).add(id);
+            ids.add(id);
+        }
+        for (Long userId : idsByUser.keySet()) {
+            changeSequence.markPurged(userId);
+        }
+        List<String> archiveKeys = documentTieringService.findArchiveKeys(ids);
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        int deleted = jdbcTemplate.update("DELETE FROM documents WHERE id IN (" + placeholders + ")", ids.toArray());
+        documentTieringService.deleteUnreferencedAfterCommit(archiveKeys);
+        // Trashing already took them out of loaded indexes; this covers indexes built from stale reads
+        idsByUser.forEach(documentSimilarityService::onDocumentsRemoved);
+        owners.addAll(idsByUser.keySet());
+        return deleted;
+    }
+}
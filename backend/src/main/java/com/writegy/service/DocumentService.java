@@ -1,26 +1,83 @@
 package com.writegy.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.writegy.dto.DocumentContentStats;
+import com.writegy.dto.DocumentDTO;
+import com.writegy.dto.DocumentImportNode;
+import com.writegy.dto.DocumentImportRequest;
+import com.writegy.dto.DocumentImportResult;
+import com.writegy.dto.DocumentPlacement;
+import com.writegy.dto.DocumentSuggestionDTO;
+import com.writegy.dto.MoveRequest;
+import com.writegy.model.converter.CompressedContentConverter;
 import com.writegy.model.entity.Document;
 import com.writegy.model.entity.User;
+import com.writegy.model.enums.DocumentStatus;
 import com.writegy.model.enums.UserRole;
+import com.writegy.repository.DocumentChangeSequence;
+import com.writegy.repository.DocumentIdAllocator;
 import com.writegy.repository.DocumentRepository;
 import com.writegy.repository.UserRepository;
+import com.writegy.util.AfterCommit;
+import com.writegy.util.CompactDocumentTree;
+import com.writegy.util.ContentStatsReader;
+import com.writegy.util.FractionalIndex;
 import org.springframework.security.oauth2.jwt.Jwt;
 
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.Authentication;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.PayloadTooLargeException;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 @Service
 public class DocumentService {
 
+    private static final Logger logger = LoggerFactory.getLogger(DocumentService.class);
+
+    // Documents written per flush transaction, which bounds how long row locks are held
+    private static final int AUTOSAVE_FLUSH_CHUNK = 200;
+
+    private static final int MAX_IMPORT_DOCUMENTS = 10_000;
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    // Rows remapped per INSERT ... SELECT; four parameters each keeps a statement well under driver limits
+    private static final int CLONE_CHUNK = 1000;
+
     @Autowired
     private DocumentRepository documentRepository;
 
@@ -30,26 +87,117 @@ public class DocumentService {
     @Autowired
     private StorageService storageService; // Keep S3 upload learning
 
+    @Autowired
+    private TitleIndexService titleIndexService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DocumentVersionService documentVersionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DocumentIdAllocator documentIdAllocator;
+
+    @Autowired
+    private DocumentChunkService documentChunkService;
+
+    @Autowired
+    private DocumentChangeSequence changeSequence;
+
+    @Autowired
+    private DocumentTreeCache documentTreeCache;
+
+    @Autowired
+    private DocumentTieringService documentTieringService;
+
+    @Autowired
+    private DocumentSimilarityService documentSimilarityService;
+
+    @Autowired
+    private DocumentVocabularyService documentVocabularyService;
+
+    @Value("${documents.autosave.max-pending-chars:16000000}")
+    private long maxPendingChars;
+
+    @Value("${documents.ingest.max-characters:5000000}")
+    private long maxStreamedCharacters;
+
+    private static final String DEMO_EMAIL = "demo@example.com";
+
+    // Email -> user id, so hot paths like typeahead resolve the caller without a users query
+    private final Cache<String, Long> userIdsByEmail = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    // Latest autosaved title and content per document, written back by flushAutosaves()
+    private final Map<Long, PendingAutosave> pendingAutosaves = new ConcurrentHashMap<>();
+
+    // Chars of title and content held by pendingAutosaves, which is what bounds its heap use
+    private final AtomicLong pendingChars = new AtomicLong();
+
+    private static final class PendingAutosave {
+        private final Long userId;
+        private final String title;
+        private final String content;
+        private final LocalDateTime receivedAt;
+        // Row version the autosave was accepted against; its flush writes baseVersion + 1
+        private final Long baseVersion;
+        // Accepted under If-Match, so the flush writes it only if the row is still at baseVersion
+        private final boolean conditional;
+
+        private PendingAutosave(Long userId, String title, String content, LocalDateTime receivedAt, Long baseVersion,
+                                boolean conditional) {
+            this.userId = userId;
+            this.title = title;
+            this.content = content;
+            this.receivedAt = receivedAt;
+            this.baseVersion = baseVersion;
+            this.conditional = conditional;
+        }
+
+        private long chars() {
+            return (title != null ? title.length() : 0) + (content != null ? content.length() : 0);
+        }
+    }
+
     // Helper method to calculate word and character counts
     private void calculateAndSetCounts(Document document) {
-        String content = document.getContent();
-        if (content != null && !content.trim().isEmpty()) {
-            // Count words (split by whitespace and filter out empty strings)
-            String[] words = content.trim().split("\\s+");
-            int wordCount = words.length;
+        document.setWordCount(countWords(document.getContent()));
+        document.setCharacterCount(countCharacters(document.getContent()));
+    }
 
-            // Count characters (excluding whitespace for readability stats)
-            int charCount = content.replaceAll("\\s", "").length();
+    static int countWords(String content) {
+        if (content == null || content.trim().isEmpty()) return 0;
+        // Count words (split by whitespace and filter out empty strings)
+        return content.trim().split("\\s+").length;
+    }
 
-            document.setWordCount(wordCount);
-            document.setCharacterCount(charCount);
-        } else {
-            document.setWordCount(0);
-            document.setCharacterCount(0);
-        }
+    static int countCharacters(String content) {
+        if (content == null) return 0;
+        // Count characters (excluding whitespace for readability stats)
+        return content.replaceAll("\\s", "").length();
+    }
+
+    // Materialized path of a document under the given parent (null for a root document)
+    private String buildPath(Document parent, Long documentId) {
+        return (parent != null ? parent.getPath() : "/") + documentId + "/";
+    }
+
+    // Ordering key that places a document after the current last sibling
+    private String nextSortKey(Long userId, Document parent) {
+        String last = parent != null
+                ? documentRepository.findMaxChildSortKey(parent.getId())
+                : documentRepository.findMaxRootSortKey(userId);
+        return FractionalIndex.after(last);
     }
 
     // HYBRID APPROACH: Upload file to S3 + save pre-extracted content to DB
+    @Transactional
     public Document createDocument(MultipartFile file, String title, String content) throws IOException, ExecutionException, InterruptedException {
         User user = getCurrentUser();
 
@@ -64,37 +212,108 @@ public class DocumentService {
         document.setTitle(title);
         document.setContent(content);  // Content pre-extracted by frontend
         document.setUser(user);
+        document.setSortKey(nextSortKey(user.getId(), null));
+        document.setChangeSeq(changeSequence.next(user.getId()));
 
         // 3. Calculate and set word/character counts
         calculateAndSetCounts(document);
 
-        return documentRepository.save(document);
+        Document saved = documentRepository.save(document);
+
+        // 4. The path embeds the generated id, so it can only be set once an id has been assigned
+        saved.setPath(buildPath(null, saved.getId()));
+
+        // Very large text goes straight to document_chunks, whose rows need the document row first
+        if (documentChunkService.shouldChunk(content)) {
+            saved.setContent("");
+            saved.setChunked(true);
+            documentRepository.flush();
+            documentChunkService.replaceContent(saved.getId(), content);
+        }
+
+        // 5. The initial text is version 1, so the first edit can already be diffed and restored
+        if (content != null && !content.isEmpty()) {
+            documentVersionService.captureVersion(saved, content, null);
+        }
+
+        titleIndexService.onDocumentSaved(user.getId(), saved.getId(), saved.getTitle());
+        documentTreeCache.onDocumentSaved(user.getId(), saved);
+        return saved;
     }
 
-    public List<Document> getDocuments() {
-        User user = getCurrentUser();
-        List<Document> documents = documentRepository.findByUserId(user.getId());
+    /**
+     * Creates a document whose content is read from a character stream rather than a request
+     * parameter. See {@link #replaceContentStreaming(Long, Reader)}.
+     */
+    @Transactional
+    public DocumentContentStats createDocumentStreaming(String title, Reader body) throws IOException, ExecutionException, InterruptedException {
+        Document document = createDocument(null, title, "");
+        // The row must exist before plain JDBC can stream content into it
+        documentRepository.flush();
+        return writeContentStream(document.getUser().getId(), document.getId(), body, document.getChangeSeq());
+    }
 
-        System.out.println("DEBUG: Found " + documents.size() + " documents for user: " + user.getEmail());
+    /**
+     * Replaces a document's content straight from a character stream. This method never builds the
+     * text itself: counts are taken while the JDBC driver consumes the stream, and the configured
+     * maximum size aborts the write as soon as it is passed. The driver may still buffer the whole
+     * value before sending it (PgJDBC reads a length-less character stream into a String), so what
+     * bounds memory per request is documents.ingest.max-characters, not the streaming.
+     *
+     * Streamed content always lands in the plain column; the recompression job compresses it later
+     * when compression is enabled. No version is captured, so the next regular save snapshots.
+     */
+    @Transactional
+    public DocumentContentStats replaceContentStreaming(Long id, Reader body) {
+        Long userId = getCurrentUserId();
+        documentRepository.findPath(id, userId)
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+        retirePendingAutosave(id);
+        long changeSeq = changeSequence.next(userId);
+        // Streamed text always lands in the row, so a chunked document reverts to inline storage
+        documentChunkService.deleteChunks(id);
+        return writeContentStream(userId, id, body, changeSeq);
+    }
 
-        // Recalculate word counts for legacy documents (created before word count calculation was added)
-        for (Document document : documents) {
-            System.out.println("DEBUG: Document '" + document.getTitle() + "' has wordCount: " + document.getWordCount());
-
-            if (document.getWordCount() == null || document.getWordCount() == 0) {
-                // Only recalculate if content exists and is not empty
-                if (document.getContent() != null && !document.getContent().trim().isEmpty()) {
-                    System.out.println("DEBUG: Recalculating word count for document: " + document.getTitle());
-                    calculateAndSetCounts(document);
-                    documentRepository.save(document);
-                    System.out.println("DEBUG: Updated word count to: " + document.getWordCount());
-                } else {
-                    System.out.println("DEBUG: Skipping document '" + document.getTitle() + "' - no content or empty content");
-                }
+    private DocumentContentStats writeContentStream(Long userId, Long id, Reader body, long changeSeq) {
+        ContentStatsReader reader = new ContentStatsReader(body, maxStreamedCharacters);
+        try {
+            jdbcTemplate.update(
+                    "UPDATE documents SET content = ?, content_compressed = NULL, chunked = FALSE, archive_key = NULL, " +
+                            "minhash = NULL, term_vector = NULL, vocabulary = NULL, " +
+                            "updated_at = ?, version = version + 1, change_seq = ? WHERE id = ?",
+                    statement -> {
+                        statement.setCharacterStream(1, reader);
+                        statement.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                        statement.setLong(3, changeSeq);
+                        statement.setLong(4, id);
+                    });
+        } catch (DataAccessException e) {
+            if (reader.isLimitExceeded()) {
+                throw new PayloadTooLargeException(e);
             }
+            throw e;
+        }
+
+        jdbcTemplate.update("UPDATE documents SET word_count = ?, character_count = ? WHERE id = ?",
+                reader.getWordCount(), reader.getCharacterCount(), id);
+        documentTreeCache.onCountsChanged(userId, id, reader.getWordCount(), reader.getCharacterCount());
+        Long version = documentRepository.findVersionById(id).orElse(null);
+        return new DocumentContentStats(id, reader.getLength(), reader.getWordCount(), reader.getCharacterCount(), version);
+    }
+
+    @Transactional
+    public List<DocumentDTO> getDocuments() {
+        Long userId = getCurrentUserId();
+
+        // Recalculate word counts for legacy documents (created before word count calculation was added)
+        List<Document> uncounted = documentRepository.findUncountedByUserId(userId);
+        for (Document document : uncounted) {
+            calculateAndSetCounts(document);
         }
 
-        return documents;
+        // The DTO query auto-flushes any recalculated counts first
+        return withPendingAutosaves(documentRepository.findDTOsByUserId(userId));
     }
 
     private User getCurrentUser() {
@@ -120,10 +339,18 @@ public class DocumentService {
         }
     }
 
+    public Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = null;
+        if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
+            email = jwt.getClaimAsString("email");
+        }
+        return userIdsByEmail.get(email != null ? email : DEMO_EMAIL, key -> getCurrentUser().getId());
+    }
+
     private User getOrCreateDemoUser() {
-        String demoEmail = "demo@example.com";
-        return userRepository.findByEmail(demoEmail)
-                .orElseGet(() -> createUserFromEmail(demoEmail, null));
+        return userRepository.findByEmail(DEMO_EMAIL)
+                .orElseGet(() -> createUserFromEmail(DEMO_EMAIL, null));
     }
 
     private User createUserFromEmail(String email, Jwt jwt) {
@@ -159,72 +386,793 @@ public class DocumentService {
         return documentRepository.findById(id).orElseThrow(() -> new RuntimeException("Document not found"));
     }
 
+    public DocumentDTO getDocumentDTO(Long id) {
+        DocumentDTO dto = documentRepository.findDTOById(id).orElseThrow(() -> new RuntimeException("Document not found"));
+        if (withPendingAutosave(dto)) {
+            return dto;
+        }
+        if (dto.isChunked()) {
+            dto.setContent(documentChunkService.assemble(id));
+        } else if (dto.isArchived()) {
+            dto.setContent(documentTieringService.load(dto.getArchiveKey()));
+        }
+        dto.setContentOmitted(false);
+        return dto;
+    }
+
+    // Maps a loaded document; callers load the user with the document, and chunked or archived content is left out
+    public DocumentDTO toDTO(Document document) {
+        if (document == null) return null;
+
+        DocumentDTO dto = new DocumentDTO();
+        dto.setId(document.getId());
+        dto.setTitle(document.getTitle());
+        dto.setContent(document.getContent());
+        dto.setStatus(document.getStatus());
+        dto.setWordCount(document.getWordCount());
+        dto.setCharacterCount(document.getCharacterCount());
+        dto.setCreatedAt(document.getCreatedAt());
+        dto.setUpdatedAt(document.getUpdatedAt());
+        dto.setDeletedAt(document.getDeletedAt());
+
+        // Hierarchy fields
+        dto.setParentId(document.getParent() != null ? document.getParent().getId() : null);
+        dto.setDepth(document.getDepth());
+        dto.setTreeOrder(document.getTreeOrder());
+        dto.setSortKey(document.getSortKey());
+        dto.setVersion(document.getVersion());
+        dto.setChunked(document.isChunked());
+        dto.setArchiveKey(document.getArchiveKey());
+        dto.setContentOmitted(document.isChunked() || document.isArchived());
+
+        // Include user info without circular reference
+        dto.setUserId(document.getUser() != null ? document.getUser().getId() : null);
+        dto.setUserEmail(document.getUser() != null ? document.getUser().getEmail() : null);
+        dto.setUserName(document.getUser() != null ? document.getUser().getName() : null);
+
+        return dto;
+    }
+
+    public Long getDocumentVersion(Long id) {
+        Long version = documentRepository.findVersionById(id).orElseThrow(() -> new RuntimeException("Document not found"));
+        PendingAutosave pending = pendingAutosaves.get(id);
+        return pending != null && pending.baseVersion.equals(version) ? version + 1 : version;
+    }
+
+    /**
+     * Shows a buffered autosave on a read as if it had already been flushed, including the version
+     * the flush will write. Returns false, leaving the DTO alone, when nothing is buffered for it or
+     * the row has been written since the autosave was accepted.
+     */
+    private boolean withPendingAutosave(DocumentDTO dto) {
+        PendingAutosave pending = pendingAutosaves.get(dto.getId());
+        if (pending == null || !pending.baseVersion.equals(dto.getVersion())) {
+            return false;
+        }
+        dto.setTitle(pending.title);
+        dto.setContent(pending.content);
+        dto.setContentOmitted(false);
+        dto.setWordCount(countWords(pending.content));
+        dto.setCharacterCount(countCharacters(pending.content));
+        dto.setUpdatedAt(pending.receivedAt);
+        dto.setVersion(pending.baseVersion + 1);
+        return true;
+    }
+
+    private List<DocumentDTO> withPendingAutosaves(List<DocumentDTO> dtos) {
+        if (!pendingAutosaves.isEmpty()) {
+            for (DocumentDTO dto : dtos) {
+                withPendingAutosave(dto);
+            }
+        }
+        return dtos;
+    }
+
     public Document updateDocument(Long id, String title, String content) {
-        Document document = documentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Document not found"));
+        return updateDocument(id, title, content, null);
+    }
+
+    /**
+     * Updates a document, failing with an optimistic locking exception when {@code expectedVersion}
+     * is given and no longer current. A concurrent writer between load and flush is caught by @Version.
+     * Archived text is fetched before the transaction opens; inside a caller's transaction it joins that one.
+     */
+    public Document updateDocument(Long id, String title, String content, Long expectedVersion) {
+        documentTieringService.prefetch(List.of(id));
+        return transactionTemplate.execute(status -> {
+            // An explicit save supersedes any autosave still waiting in the buffer
+            retirePendingAutosave(id);
+
+            Document document = documentRepository.findWithUserById(id)
+                    .filter(found -> found.getDeletedAt() == null)
+                    .orElseThrow(() -> new RuntimeException("Document not found"));
+            if (expectedVersion != null && !expectedVersion.equals(document.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(Document.class, id);
+            }
+            Document saved = applyUpdate(document, title, content, () -> changeSequence.next(document.getUser().getId()));
+            // A caller's transaction (a batch) flushes when it needs to
+            if (status.isNewTransaction()) {
+                flushChanges();
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Writes pending entity changes now. A version number captured at the same time by another save
+     * of the document fails its unique key here, and is reported as a conflict (409) rather than as
+     * a failed commit.
+     */
+    public void flushChanges() {
+        try {
+            documentRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new ConcurrencyFailureException("The document was saved by another request at the same time", e);
+        }
+    }
+
+    // Writes nothing (and draws no change sequence value) when title and content are unchanged
+    private Document applyUpdate(Document document, String title, String content, LongSupplier changeSeq) {
+        String previousContent = contentOf(document);
+        if (Objects.equals(title, document.getTitle()) && Objects.equals(content, previousContent)) {
+            return document;
+        }
 
+        document.setChangeSeq(changeSeq.getAsLong());
         document.setTitle(title);
-        document.setContent(content);
+        // Any write brings archived text back into the row
+        document.setArchiveKey(null);
+        if (document.isChunked() && !documentChunkService.shouldChunk(content)) {
+            // Shrunk below the chunking threshold, so the text moves back into the row
+            documentChunkService.deleteChunks(document.getId());
+            document.setChunked(false);
+            document.setContent(content);
+        } else if (document.isChunked() || documentChunkService.shouldChunk(content)) {
+            // Very large documents keep their text in document_chunks; only changed chunks are written
+            if (!document.isChunked()) {
+                document.setContent("");
+                document.setChunked(true);
+            }
+            if (documentChunkService.replaceContent(document.getId(), content)) {
+                // The row may be otherwise unchanged; touching it still bumps the version for the ETag
+                document.setUpdatedAt(LocalDateTime.now());
+            }
+        } else {
+            document.setContent(content);
+        }
 
         // Calculate and set word/character counts
-        calculateAndSetCounts(document);
+        document.setWordCount(countWords(content));
+        document.setCharacterCount(countCharacters(content));
+        if (!Objects.equals(content, previousContent) || document.getMinhash() == null || document.getTermVector() == null) {
+            documentSimilarityService.onContentSaved(document, content);
+        }
+        if (!Objects.equals(content, previousContent) || document.getVocabulary() == null) {
+            documentVocabularyService.onContentSaved(document, previousContent, content);
+        }
 
-        return documentRepository.save(document);
+        // Written with the version row at the next flush; of two concurrent saves the later one fails
+        // either its @Version check (412) or the version number's unique key (409)
+        Document saved = documentRepository.save(document);
+        documentVersionService.captureVersion(saved, content, previousContent);
+        titleIndexService.onDocumentSaved(saved.getUser().getId(), saved.getId(), saved.getTitle());
+        documentTreeCache.onDocumentSaved(saved.getUser().getId(), saved);
+        return saved;
     }
 
-    public void deleteDocument(Long id) {
-        documentRepository.deleteById(id);
+    private String contentOf(Document document) {
+        if (document.isChunked()) {
+            return documentChunkService.assemble(document.getId());
+        }
+        return document.isArchived() ? documentTieringService.load(document.getArchiveKey()) : document.getContent();
+    }
+
+    /**
+     * Acknowledges an autosave without writing it: only the latest title and content per document
+     * are kept, and flushAutosaves() writes them back together. Reads show the buffered text in the
+     * meantime. Once the buffered text would pass documents.autosave.max-pending-chars, autosaves
+     * are written through immediately instead.
+     *
+     * Returns the version the document will have once the autosave is written, which is what the
+     * client's next If-Match has to name. {@code expectedVersion} is checked now against that
+     * same numbering, and again when the flush writes the autosave.
+     */
+    public Long autosaveDocument(Long id, String title, String content, Long expectedVersion) {
+        Long version = documentRepository.findVersionById(id).orElseThrow(() -> new RuntimeException("Document not found"));
+        PendingAutosave previous = pendingAutosaves.get(id);
+        boolean previousShown = previous != null && previous.baseVersion.equals(version);
+        if (expectedVersion != null && !expectedVersion.equals(previousShown ? version + 1 : version)) {
+            throw new ObjectOptimisticLockingFailureException(Document.class, id);
+        }
+        Long userId = previous != null ? previous.userId : documentRepository.findUserIdsByIds(List.of(id)).stream()
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+        PendingAutosave pending = new PendingAutosave(userId, title, content, LocalDateTime.now(), version,
+                expectedVersion != null);
+
+        long buffered = pendingChars.get() - (previous != null ? previous.chars() : 0);
+        if (buffered + pending.chars() > maxPendingChars) {
+            return updateDocument(id, title, content, expectedVersion).getVersion();
+        }
+        PendingAutosave replaced = pendingAutosaves.put(id, pending);
+        pendingChars.addAndGet(pending.chars() - (replaced != null ? replaced.chars() : 0));
+        return version + 1;
+    }
+
+    private PendingAutosave removePendingAutosave(Long id) {
+        PendingAutosave removed = pendingAutosaves.remove(id);
+        if (removed != null) {
+            pendingChars.addAndGet(-removed.chars());
+        }
+        return removed;
+    }
+
+    /**
+     * Drops a buffered autosave that an explicit write replaces. Reads and the autosave's ETag may
+     * already have presented it as the next version, so that version number is used up here: the
+     * write that follows gets the one after, and no ETag handed out for the autosave matches it.
+     * The autosave leaves the buffer only once the write commits, so a rolled-back batch keeps it.
+     */
+    private void retirePendingAutosave(Long id) {
+        PendingAutosave pending = pendingAutosaves.get(id);
+        if (pending != null) {
+            jdbcTemplate.update("UPDATE documents SET version = version + 1 WHERE id = ? AND version = ?",
+                    id, pending.baseVersion);
+            dropPendingAutosaveAfterCommit(id, pending);
+        }
+    }
+
+    // Removes this autosave, not one that replaced it meanwhile
+    private void dropPendingAutosaveAfterCommit(Long id, PendingAutosave pending) {
+        AfterCommit.run(() -> {
+            if (pendingAutosaves.remove(id, pending)) {
+                pendingChars.addAndGet(-pending.chars());
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${documents.autosave.flush-interval-ms:10000}")
+    public void flushAutosaves() {
+        if (pendingAutosaves.isEmpty()) return;
+        writeAutosaves(new ArrayList<>(pendingAutosaves.keySet()));
+    }
+
+    /**
+     * Writes back the user's buffered autosaves now, for reads that go straight to the rows (exports,
+     * the change feed, clones). Must be called outside any transaction that touches those rows.
+     */
+    public void flushAutosaves(Long userId) {
+        if (pendingAutosaves.isEmpty()) return;
+        List<Long> ids = new ArrayList<>();
+        pendingAutosaves.forEach((id, pending) -> {
+            if (pending.userId.equals(userId)) ids.add(id);
+        });
+        writeAutosaves(ids);
+    }
+
+    private void writeAutosaves(List<Long> candidates) {
+        // Drain what is buffered now; autosaves arriving meanwhile wait for the next flush
+        Map<Long, PendingAutosave> drained = new HashMap<>();
+        for (Long id : candidates) {
+            PendingAutosave pending = pendingAutosaves.remove(id);
+            if (pending != null) {
+                pendingChars.addAndGet(-pending.chars());
+                drained.put(id, pending);
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(drained.keySet());
+        for (int from = 0; from < ids.size(); from += AUTOSAVE_FLUSH_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + AUTOSAVE_FLUSH_CHUNK, ids.size()));
+            try {
+                documentTieringService.prefetch(chunk);
+                transactionTemplate.executeWithoutResult(status -> {
+                    // One change sequence value per owner, drawn before the document rows are locked
+                    Map<Long, Long> changeSeqs = new HashMap<>();
+                    for (Long userId : documentRepository.findUserIdsByIds(chunk)) {
+                        changeSeqs.put(userId, changeSequence.next(userId));
+                    }
+                    for (Document document : documentRepository.findAllForUpdate(chunk)) {
+                        long changeSeq = changeSeqs.get(document.getUser().getId());
+                        applyAutosave(document, drained.get(document.getId()), () -> changeSeq);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Re-queue unless a newer autosave has arrived in the meantime
+                for (Long id : chunk) {
+                    PendingAutosave pending = drained.get(id);
+                    if (pendingAutosaves.putIfAbsent(id, pending) == null) {
+                        pendingChars.addAndGet(pending.chars());
+                    }
+                }
+                logger.warn("Autosave flush of {} documents failed, retrying on next flush", chunk.size(), e);
+            }
+        }
+    }
+
+    // Writes one buffered autosave unless the row has since been written in a way that supersedes it
+    private void applyAutosave(Document document, PendingAutosave pending, LongSupplier changeSeq) {
+        if (document.getDeletedAt() != null) {
+            return;
+        }
+        // An explicit save that happened after this autosave wins
+        if (document.getUpdatedAt() != null && document.getUpdatedAt().isAfter(pending.receivedAt)) {
+            return;
+        }
+        // The If-Match it was accepted under no longer holds once the row has been written
+        if (pending.conditional && !document.getVersion().equals(pending.baseVersion)) {
+            logger.info("Dropped autosave of document {}: version {} changed to {} before it was written",
+                    document.getId(), pending.baseVersion, document.getVersion());
+            return;
+        }
+        Document saved = applyUpdate(document, pending.title, pending.content, changeSeq);
+        if (saved.getVersion().equals(pending.baseVersion)) {
+            // Nothing changed, but reads already showed this autosave as the next version
+            saved.setChangeSeq(changeSeq.getAsLong());
+            saved.setUpdatedAt(LocalDateTime.now());
+            documentRepository.saveAndFlush(saved);
+        }
+    }
+
+    /**
+     * Applies a splice to a chunked document (see DocumentChunkService#splice). A buffered autosave
+     * of the document is written first, since the client computed the offsets against text that
+     * includes it. The result is recorded as a version when one is due (see
+     * DocumentVersionService#isSpliceVersionDue), so a run of keystrokes does not read the whole
+     * document back each time; the text before the edit is rebuilt from the text after it and what
+     * the splice removed.
+     */
+    @Transactional
+    public DocumentContentStats spliceContent(Long id, long offset, long deleteCount, String text, Long expectedVersion) {
+        Long userId = getCurrentUserId();
+        PendingAutosave pending = pendingAutosaves.get(id);
+        if (pending != null) {
+            documentRepository.findWithUserById(id)
+                    .ifPresent(document -> applyAutosave(document, pending, () -> changeSequence.next(userId)));
+            // The splice checks and bumps the version in SQL, so the autosave's row goes first
+            flushChanges();
+            dropPendingAutosaveAfterCommit(id, pending);
+        }
+
+        DocumentChunkService.SpliceResult result = documentChunkService.splice(id, userId, offset, deleteCount, text, expectedVersion);
+        if (!documentVersionService.isSpliceVersionDue(id)) {
+            return result.getStats();
+        }
+        String insert = text != null ? text : "";
+        String content = documentChunkService.assemble(id);
+        String previousContent = content.substring(0, (int) offset) + result.getRemoved()
+                + content.substring((int) offset + insert.length());
+        Document document = documentRepository.findById(id).orElseThrow(() -> new RuntimeException("Document not found"));
+        documentVersionService.captureVersion(document, content, previousContent);
+        flushChanges();
+        return result.getStats();
+    }
+
+    @PreDestroy
+    public void flushAutosavesOnShutdown() {
+        flushAutosaves();
+    }
+
+    /**
+     * Moves a document and its subtree to the trash with one UPDATE. Trashed documents drop out of
+     * every listing and DocumentPurgeService hard-deletes them once the retention period has
+     * passed; {@code permanent} deletes the subtree (trashed or not) right away instead.
+     */
+    @Transactional
+    public void deleteDocument(Long id, boolean permanent) {
+        PendingAutosave pending = pendingAutosaves.get(id);
+        if (pending != null) {
+            dropPendingAutosaveAfterCommit(id, pending);
+        }
+        Document document = documentRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+        Long userId = document.getUser().getId();
+        // Only live rows have titles in the index; trashed ones already left it
+        List<Long> removed = jdbcTemplate.queryForList(
+                "SELECT id FROM documents WHERE user_id = ? AND path LIKE ? AND deleted_at IS NULL",
+                Long.class, userId, document.getPath() + "%");
+
+        // One statement for the whole subtree instead of loading and deleting children recursively
+        if (permanent) {
+            List<String> archiveKeys = documentTieringService.findArchiveKeysUnder(userId, document.getPath());
+            changeSequence.markPurged(userId);
+            documentRepository.deleteSubtree(userId, document.getPath());
+            documentTieringService.deleteUnreferencedAfterCommit(archiveKeys);
+            documentVocabularyService.pruneTerms(userId);
+        } else {
+            if (document.getDeletedAt() != null) {
+                throw new RuntimeException("Document not found");
+            }
+            documentRepository.trashSubtree(userId, document.getPath(), LocalDateTime.now(), changeSequence.next(userId));
+        }
+
+        for (Long removedId : removed) {
+            titleIndexService.onDocumentDeleted(userId, removedId);
+        }
+        documentSimilarityService.onDocumentsRemoved(userId, removed);
+        documentTreeCache.onSubtreeRemoved(userId, id);
+    }
+
+    public List<DocumentDTO> getTrash() {
+        return documentRepository.findTrashDTOs(getCurrentUserId());
+    }
+
+    /**
+     * Brings a trashed document back together with the descendants trashed along with it. A
+     * document whose parent is still in the trash cannot be restored on its own.
+     */
+    @Transactional
+    public DocumentDTO restoreDocument(Long id) {
+        Long userId = getCurrentUserId();
+        Document document = documentRepository.findWithUserById(id)
+                .filter(found -> found.getUser().getId().equals(userId))
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+        if (document.getDeletedAt() == null) {
+            throw new IllegalArgumentException("Document " + id + " is not in the trash");
+        }
+        if (document.getParent() != null && document.getParent().getDeletedAt() != null) {
+            throw new IllegalArgumentException("Restore the parent document first");
+        }
+
+        documentRepository.restoreSubtree(userId, document.getPath(), document.getDeletedAt(), changeSequence.next(userId));
+        titleIndexService.invalidate(userId);
+        documentSimilarityService.onDocumentsRestored(userId);
+        documentTreeCache.invalidate(userId);
+        return getDocumentDTO(id);
+    }
+
+    public List<DocumentSuggestionDTO> suggestTitles(String prefix, int limit) {
+        return titleIndexService.suggest(getCurrentUserId(), prefix, limit);
     }
 
     // Tree Hierarchy Methods
 
-    public List<Document> getDocumentTree() {
-        User user = getCurrentUser();
-        return documentRepository.findAllByUserIdOrderByHierarchy(user.getId());
+    public CompactDocumentTree getDocumentTree() {
+        return documentTreeCache.get(getCurrentUserId());
     }
 
+    @Transactional
     public Document setDocumentParent(Long documentId, Long parentId) {
-        Document document = documentRepository.findById(documentId)
+        Document document = documentRepository.findWithUserById(documentId)
+                .filter(found -> found.getDeletedAt() == null)
                 .orElseThrow(() -> new RuntimeException("Document not found"));
 
         Document parent = documentRepository.findById(parentId)
+                .filter(found -> found.getDeletedAt() == null)
                 .orElseThrow(() -> new RuntimeException("Parent document not found"));
 
-        // Prevent circular references
-        if (isCircularReference(documentId, parentId)) {
+        requirePath(document);
+        requirePath(parent);
+        // Prevent circular references: the parent is a descendant (or the document itself) exactly
+        // when its path extends the document's path
+        if (parent.getPath().startsWith(document.getPath())) {
             throw new RuntimeException("Cannot create circular reference");
         }
 
+        document.setSortKey(nextSortKey(document.getUser().getId(), parent));
         document.setParent(parent);
         document.setDepth(parent.getDepth() + 1);
 
-        return documentRepository.save(document);
+        return moveSubtree(document, buildPath(parent, documentId));
     }
 
+    @Transactional
     public Document removeDocumentParent(Long documentId) {
-        Document document = documentRepository.findById(documentId)
+        Document document = documentRepository.findWithUserById(documentId)
+                .filter(found -> found.getDeletedAt() == null)
                 .orElseThrow(() -> new RuntimeException("Document not found"));
+        requirePath(document);
 
+        document.setSortKey(nextSortKey(document.getUser().getId(), null));
         document.setParent(null);
         document.setDepth(0);
 
-        return documentRepository.save(document);
+        return moveSubtree(document, buildPath(null, documentId));
+    }
+
+    /**
+     * Applies a batch of moves/reorders in one transaction. Moves are planned against an in-memory
+     * snapshot of the user's placements and only the rows that changed are written, as one JDBC batch.
+     */
+    @Transactional
+    public List<DocumentPlacement> moveDocuments(List<MoveRequest> moves) {
+        Long userId = getCurrentUserId();
+        DocumentMovePlanner planner = new DocumentMovePlanner(documentRepository.findPlacementsByUserId(userId));
+        for (MoveRequest move : moves) {
+            planner.apply(move);
+        }
+
+        List<DocumentPlacement> changed = new ArrayList<>(planner.getChanged());
+        if (changed.isEmpty()) {
+            return changed;
+        }
+        long changeSeq = changeSequence.next(userId);
+        jdbcTemplate.batchUpdate(
+                "UPDATE documents SET parent_id = ?, path = ?, depth = ?, sort_key = ?, version = version + 1, change_seq = ? " +
+                        "WHERE id = ? AND user_id = ?",
+                changed,
+                changed.size(),
+                (statement, placement) -> {
+                    if (placement.getParentId() != null) {
+                        statement.setLong(1, placement.getParentId());
+                    } else {
+                        statement.setNull(1, Types.BIGINT);
+                    }
+                    statement.setString(2, placement.getPath());
+                    statement.setInt(3, placement.getDepth());
+                    statement.setString(4, placement.getSortKey());
+                    statement.setLong(5, changeSeq);
+                    statement.setLong(6, placement.getId());
+                    statement.setLong(7, userId);
+                });
+        documentTreeCache.onDocumentsMoved(userId, changed);
+        return changed;
+    }
+
+    /**
+     * Imports a forest of documents in one transaction. Ids come from the pooled document sequence
+     * up front, so every path is known before anything is written and all rows go out as JDBC
+     * insert batches, with no per-row round trip and no follow-up UPDATE for the path.
+     */
+    @Transactional
+    public DocumentImportResult importDocuments(DocumentImportRequest request) {
+        Long userId = getCurrentUserId();
+        List<DocumentImportNode> roots = request.getDocuments() != null ? request.getDocuments() : List.of();
+        int total = validateImport(roots);
+        if (total == 0) {
+            return new DocumentImportResult(0, List.of());
+        }
+
+        Long parentId = request.getParentId();
+        String parentPath = "/";
+        int parentDepth = -1;
+        String lastKey;
+        if (parentId != null) {
+            parentPath = documentRepository.findPath(parentId, userId)
+                    .orElseThrow(() -> new RuntimeException("Parent document not found"));
+            parentDepth = DocumentMovePlanner.depthOf(parentPath);
+            lastKey = documentRepository.findMaxChildSortKey(parentId);
+        } else {
+            lastKey = documentRepository.findMaxRootSortKey(userId);
+        }
+
+        long[] ids = documentIdAllocator.allocate(total);
+        List<ImportRow> rows = new ArrayList<>(total);
+        List<Long> rootIds = new ArrayList<>(roots.size());
+
+        // Depth-first so each parent's id and path exist before its children are laid out
+        Deque<ImportRow> stack = new ArrayDeque<>();
+        pushImportChildren(stack, roots, parentId, parentPath, parentDepth, lastKey);
+        while (!stack.isEmpty()) {
+            ImportRow row = stack.pop();
+            row.id = ids[rows.size()];
+            row.path = row.parentPath + row.id + "/";
+            rows.add(row);
+            if (row.parentId == null || row.parentId.equals(parentId)) {
+                rootIds.add(row.id);
+            }
+            if (row.node.getChildren() != null) {
+                pushImportChildren(stack, row.node.getChildren(), row.id, row.path, row.depth, null);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long changeSeq = changeSequence.next(userId);
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO documents (id, user_id, parent_id, title, content, content_compressed, status, word_count, " +
+                        "character_count, created_at, updated_at, tree_order, sort_key, depth, path, version, chunked, change_seq) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, ?, ?, ?, 0, FALSE, ?)",
+                rows,
+                IMPORT_BATCH_SIZE,
+                (statement, row) -> {
+                    String content = row.node.getContent() != null ? row.node.getContent() : "";
+                    boolean compress = CompressedContentConverter.isEnabled() && !content.isEmpty();
+                    statement.setLong(1, row.id);
+                    statement.setLong(2, userId);
+                    if (row.parentId != null) {
+                        statement.setLong(3, row.parentId);
+                    } else {
+                        statement.setNull(3, Types.BIGINT);
+                    }
+                    statement.setString(4, row.node.getTitle());
+                    statement.setString(5, compress ? "" : content);
+                    if (compress) {
+                        statement.setBytes(6, CompressedContentConverter.encode(content));
+                    } else {
+                        statement.setNull(6, Types.VARBINARY);
+                    }
+                    // Untyped, so PostgreSQL casts it to the document_status enum as it would a literal
+                    statement.setObject(7, DocumentStatus.DRAFT.name(), Types.OTHER);
+                    statement.setInt(8, countWords(content));
+                    statement.setInt(9, countCharacters(content));
+                    statement.setTimestamp(10, Timestamp.valueOf(now));
+                    statement.setTimestamp(11, Timestamp.valueOf(now));
+                    statement.setString(12, row.sortKey);
+                    statement.setInt(13, row.depth);
+                    statement.setString(14, row.path);
+                    statement.setLong(15, changeSeq);
+                });
+
+        titleIndexService.invalidate(userId);
+        documentTreeCache.invalidate(userId);
+        return new DocumentImportResult(rows.size(), rootIds);
+    }
+
+    // Pushes siblings in reverse so they pop in order, each with its own fresh ordering key
+    private void pushImportChildren(Deque<ImportRow> stack, List<DocumentImportNode> nodes, Long parentId,
+                                    String parentPath, int parentDepth, String lastKey) {
+        List<String> keys = FractionalIndex.keysBetween(lastKey, null, nodes.size());
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            ImportRow row = new ImportRow();
+            row.node = nodes.get(i);
+            row.parentId = parentId;
+            row.parentPath = parentPath;
+            row.depth = parentDepth + 1;
+            row.sortKey = keys.get(i);
+            stack.push(row);
+        }
+    }
+
+    // Counts the nodes of an import and rejects it before any id is allocated
+    private int validateImport(List<DocumentImportNode> roots) {
+        int count = 0;
+        Deque<DocumentImportNode> pending = new ArrayDeque<>(roots);
+        while (!pending.isEmpty()) {
+            DocumentImportNode node = pending.pop();
+            if (node == null || node.getTitle() == null || node.getTitle().isBlank()) {
+                throw new IllegalArgumentException("Every imported document needs a title");
+            }
+            if (node.getTitle().length() > 500) {
+                throw new IllegalArgumentException("Document title exceeds 500 characters: " + node.getTitle().substring(0, 50) + "...");
+            }
+            if (++count > MAX_IMPORT_DOCUMENTS) {
+                throw new IllegalArgumentException("An import may contain at most " + MAX_IMPORT_DOCUMENTS + " documents");
+            }
+            if (node.getChildren() != null) {
+                pending.addAll(node.getChildren());
+            }
+        }
+        return count;
     }
 
-    public List<Document> getDocumentChildren(Long parentId) {
-        return documentRepository.findByParentIdOrderByTreeOrderAsc(parentId);
+    private static final class ImportRow {
+        private DocumentImportNode node;
+        private Long id;
+        private Long parentId;
+        private String parentPath;
+        private String path;
+        private int depth;
+        private String sortKey;
     }
 
-    private boolean isCircularReference(Long documentId, Long parentId) {
-        // Check if the parent is a descendant of the document
-        Long currentId = parentId;
-        while (currentId != null) {
-            if (currentId.equals(documentId)) {
-                return true;
+    /**
+     * Copies a document and its live descendants, content and chunks included, as the last sibling
+     * of the original. New ids come from the pooled sequence up front so every path is computed
+     * here from the subtree's placements; the rows themselves are copied by INSERT ... SELECT
+     * joined to a VALUES list mapping old ids to new ones, so content never leaves the database.
+     * Each level of the subtree is its own INSERT, since the parent_id foreign key is checked row
+     * by row and an INSERT ... SELECT does not promise to write rows in any order. Archived copies share the original's object. Version history is not copied.
+     */
+    @Transactional
+    public DocumentDTO cloneDocument(Long id) {
+        Long userId = getCurrentUserId();
+        String rootPath = documentRepository.findPath(id, userId)
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+        List<DocumentPlacement> subtree = documentRepository.findSubtreePlacements(userId, rootPath);
+        if (subtree.size() > MAX_IMPORT_DOCUMENTS) {
+            throw new IllegalArgumentException("A clone may copy at most " + MAX_IMPORT_DOCUMENTS + " documents");
+        }
+        DocumentPlacement root = subtree.get(0);
+        String rootSortKey = FractionalIndex.after(root.getParentId() != null
+                ? documentRepository.findMaxChildSortKey(root.getParentId())
+                : documentRepository.findMaxRootSortKey(userId));
+
+        // Rows arrive parents first, so each parent's new path is known before its children
+        long[] ids = documentIdAllocator.allocate(subtree.size());
+        Map<Long, Long> newIds = new HashMap<>(subtree.size() * 2);
+        Map<Long, String> newPaths = new HashMap<>(subtree.size() * 2);
+        Map<Long, Integer> levels = new HashMap<>(subtree.size() * 2);
+        // One list per level below the root, inserted in turn so every parent row exists before its children
+        List<List<Object[]>> mappingByLevel = new ArrayList<>();
+        String parentPath = rootPath.substring(0, rootPath.length() - 1 - String.valueOf(id).length());
+        for (int i = 0; i < subtree.size(); i++) {
+            DocumentPlacement placement = subtree.get(i);
+            boolean isRoot = i == 0;
+            if (!isRoot && !newIds.containsKey(placement.getParentId())) {
+                continue; // under a trashed document, so it stays behind with it
+            }
+            Long newParentId = isRoot ? placement.getParentId() : newIds.get(placement.getParentId());
+            String path = (isRoot ? parentPath : newPaths.get(placement.getParentId())) + ids[i] + "/";
+            newIds.put(placement.getId(), ids[i]);
+            newPaths.put(placement.getId(), path);
+            int level = isRoot ? 0 : levels.get(placement.getParentId()) + 1;
+            levels.put(placement.getId(), level);
+            if (level == mappingByLevel.size()) {
+                mappingByLevel.add(new ArrayList<>());
+            }
+            mappingByLevel.get(level).add(new Object[]{placement.getId(), ids[i], newParentId, path});
+        }
+
+        long changeSeq = changeSequence.next(userId);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (List<Object[]> mapping : mappingByLevel) {
+            for (int from = 0; from < mapping.size(); from += CLONE_CHUNK) {
+                List<Object[]> chunk = mapping.subList(from, Math.min(from + CLONE_CHUNK, mapping.size()));
+                List<Object> args = new ArrayList<>();
+                args.add(id);
+                args.add(now);
+                args.add(now);
+                args.add(id);
+                args.add(rootSortKey);
+                args.add(changeSeq);
+                for (Object[] row : chunk) {
+                    args.addAll(Arrays.asList(row));
+                }
+                jdbcTemplate.update(
+                        "INSERT INTO documents (id, user_id, parent_id, title, content, content_compressed, status, word_count, " +
+                                "character_count, created_at, updated_at, tree_order, sort_key, depth, path, version, chunked, archive_key, change_seq) " +
+                                "SELECT m.new_id, d.user_id, m.parent_id, " +
+                                "CASE WHEN d.id = ? THEN LEFT(d.title, 493) || ' (copy)' ELSE d.title END, d.content, d.content_compressed, " +
+                                "d.status, d.word_count, d.character_count, ?, ?, d.tree_order, " +
+                                "CASE WHEN d.id = ? THEN CAST(? AS VARCHAR(255)) ELSE d.sort_key END, d.depth, m.path, 0, d.chunked, d.archive_key, ? " +
+                                "FROM documents d JOIN " + cloneMapping(chunk.size()) + " ON d.id = m.old_id",
+                        args.toArray());
+                jdbcTemplate.update(
+                        "INSERT INTO document_chunks (document_id, chunk_key, content, char_length, word_count, character_count, content_hash) " +
+                                "SELECT m.new_id, c.chunk_key, c.content, c.char_length, c.word_count, c.character_count, c.content_hash " +
+                                "FROM document_chunks c JOIN " + cloneMapping(chunk.size()) + " ON c.document_id = m.old_id",
+                        args.subList(6, args.size()).toArray());
             }
-            Document current = documentRepository.findById(currentId).orElse(null);
-            currentId = current != null ? current.getParent() != null ? current.getParent().getId() : null : null;
         }
-        return false;
+
+        titleIndexService.invalidate(userId);
+        documentTreeCache.invalidate(userId);
+        return getDocumentDTO(ids[0]);
+    }
+
+    // Old id, new id, new parent id and new path for each row; casts give the parameters a type on PostgreSQL
+    private static String cloneMapping(int rows) {
+        String row = "(CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS VARCHAR(2000)))";
+        return "(VALUES " + String.join(", ", Collections.nCopies(rows, row)) + ") AS m(old_id, new_id, parent_id, path)";
+    }
+
+    public List<DocumentDTO> getDocumentChildren(Long parentId) {
+        return withPendingAutosaves(documentRepository.findChildDTOs(parentId));
+    }
+
+    public List<DocumentDTO> getDocumentSubtree(Long documentId) {
+        Long userId = getCurrentUserId();
+        String path = documentRepository.findPath(documentId, userId)
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+        return withPendingAutosaves(documentRepository.findSubtreeDTOs(userId, path));
+    }
+
+    // Rewrites path and depth of the document and all of its descendants in a single UPDATE
+    private Document moveSubtree(Document document, String newPath) {
+        String oldPath = document.getPath();
+        Long userId = document.getUser().getId();
+        long changeSeq = changeSequence.next(userId);
+        document.setChangeSeq(changeSeq);
+        documentRepository.save(document);
+
+        if (!newPath.equals(oldPath)) {
+            int depthDelta = DocumentMovePlanner.depthOf(newPath) - DocumentMovePlanner.depthOf(oldPath);
+            documentRepository.moveSubtree(userId, oldPath, newPath, depthDelta, changeSeq);
+        }
+
+        // The bulk update cleared the persistence context, so hand back a fresh copy
+        Document moved = documentRepository.findWithUserById(document.getId())
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+        documentTreeCache.onDocumentSaved(userId, moved);
+        return moved;
+    }
+
+    // Legacy rows have no path until DocumentHierarchyRepairService fills it in; moves rewrite paths by
+    // prefix, so one of these would move without its subtree
+    private static void requirePath(Document document) {
+        if (document.getPath() == null) {
+            throw new IllegalArgumentException("Document " + document.getId()
+                    + " cannot be moved until its place in the hierarchy has been repaired");
+        }
     }
 }
@@ -0,0 +1,319 @@
+package com.writegy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.writegy.dto.NearDuplicateDTO;
+import com.writegy.dto.RelatedDocumentDTO;
+import com.writegy.model.entity.Document;
+import com.writegy.service.DocumentBackfill.PendingDocument;
+import com.writegy.util.AfterCommit;
+import com.writegy.util.FailureBackoff;
+import com.writegy.util.MinHash;
+import com.writegy.util.TermVector;
+import com.writegy.util.TermVectorIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content similarity between a user's documents: near-duplicates and related documents.
+ *
+ * Each document carries two fingerprints of its text, always computed together: a MinHash
+ * signature of its word shingles and a term vector of its most frequent terms.
+ *
+ * Near-duplicates: the signature's LSH band buckets are filed in document_minhash_buckets, and a
+ * lookup reads only the documents sharing a bucket with the one asked about, on the (user_id,
+ * bucket) index, ranked by the similarity their signatures estimate. Its cost follows the number
+ * of close matches rather than the size of the account. Bucket rows are just a candidate filter:
+ * every candidate is checked against the signature on its document row, so a stale bucket costs
+ * a comparison, never a wrong answer.
+ *
+ * Related documents: term vectors of each active user's documents are kept in an in-memory
+ * TF-IDF index (see TermVectorIndex), built on first use and patched after each committed save,
+ * trash and purge, so removed documents stop counting towards term frequencies. An index larger
+ * than the per-user budget is not cached: such a user's lookups read the stored term vectors
+ * each time instead of crowding every other user out of the shared budget.
+ *
+ * Regular saves compute both fingerprints in the saving transaction. Writes that never hold the
+ * text as a string (streamed and spliced content), and rows created by SQL (new documents,
+ * imports, clones) leave them null, and a background pass fills those in. A document that keeps
+ * failing there is retried with growing delays and skipped after a few attempts until it is
+ * saved again.
+ */
+@Service
+public class DocumentSimilarityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentSimilarityService.class);
+
+    private static final List<String> FINGERPRINT_COLUMNS = List.of("minhash", "term_vector");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DocumentBackfill documentBackfill;
+    private final Cache<Long, TermVectorIndex> termIndexes;
+    private final long indexMaxBytesPerUser;
+    private final FailureBackoff backfillFailures;
+    private final double minSimilarity;
+    private final int maxCandidates;
+    private final int batchSize;
+    private final int maxQueryTerms;
+    private final double maxDocumentFrequency;
+
+    @Autowired
+    public DocumentSimilarityService(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     DocumentBackfill documentBackfill,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${documents.similarity.min-similarity:0.7}") double minSimilarity,
+                                     @Value("${documents.similarity.max-candidates:1000}") int maxCandidates,
+                                     @Value("${documents.similarity.backfill-batch-size:200}") int batchSize,
+                                     @Value("${documents.similarity.backfill-max-attempts:5}") int backfillMaxAttempts,
+                                     @Value("${documents.similarity.related-query-terms:16}") int maxQueryTerms,
+                                     @Value("${documents.similarity.related-max-df:0.5}") double maxDocumentFrequency,
+                                     @Value("${documents.similarity.index-max-bytes:67108864}") long indexMaxBytes,
+                                     @Value("${documents.similarity.index-max-bytes-per-user:8388608}") long indexMaxBytesPerUser,
+                                     @Value("${documents.similarity.index-idle-expiry-minutes:30}") long indexIdleExpiryMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.documentBackfill = documentBackfill;
+        this.minSimilarity = minSimilarity;
+        this.maxCandidates = Math.max(1, maxCandidates);
+        this.batchSize = Math.max(1, batchSize);
+        this.backfillFailures = new FailureBackoff(backfillMaxAttempts, Duration.ofMinutes(1), Duration.ofHours(6));
+        this.maxQueryTerms = Math.max(1, maxQueryTerms);
+        this.maxDocumentFrequency = maxDocumentFrequency;
+        this.indexMaxBytesPerUser = Math.min(indexMaxBytesPerUser, indexMaxBytes);
+        this.termIndexes = Caffeine.newBuilder()
+                .maximumWeight(indexMaxBytes)
+                .weigher((Long userId, TermVectorIndex index) -> (int) Math.min(Integer.MAX_VALUE, index.estimatedBytes()))
+                .expireAfterAccess(Duration.ofMinutes(indexIdleExpiryMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, termIndexes, "documents.related");
+    }
+
+    /**
+     * Stores the fingerprints of {@code content} on the document and refiles its buckets. Runs
+     * inside the saving transaction, so the buckets commit or roll back with the save.
+     */
+    public void onContentSaved(Document document, String content) {
+        String text = content != null ? content : "";
+        int[] signature = MinHash.signature(text);
+        TermVector vector = TermVector.of(text);
+        document.setMinhash(MinHash.toBytes(signature));
+        document.setTermVector(vector.toBytes());
+        Long userId = document.getUser().getId();
+        Long documentId = document.getId();
+        replaceBuckets(documentId, userId, signature);
+        AfterCommit.run(() -> indexVector(userId, documentId, vector));
+    }
+
+    /** Live documents of the user most similar to {@code documentId}, best match first. */
+    public List<NearDuplicateDTO> findNearDuplicates(Long userId, Long documentId, int limit) {
+        PendingDocument self = documentBackfill.findOwned(FINGERPRINT_COLUMNS, userId, documentId);
+        byte[] minhash = self.getColumn("minhash");
+        int[] signature = minhash != null ? MinHash.fromBytes(minhash) : store(self).signature;
+        long[] buckets = MinHash.bandBuckets(signature);
+        if (buckets.length == 0) {
+            return List.of();
+        }
+
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+        for (long bucket : buckets) {
+            args.add(bucket);
+        }
+        args.add(documentId);
+        args.add(maxCandidates);
+
+        List<NearDuplicateDTO> matches = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT d.id, d.title, d.minhash FROM documents d WHERE d.id IN (" +
+                        "SELECT b.document_id FROM document_minhash_buckets b WHERE b.user_id = ? AND b.bucket IN (" +
+                        placeholders(buckets.length) + ")) " +
+                        "AND d.id <> ? AND d.deleted_at IS NULL AND d.minhash IS NOT NULL LIMIT ?",
+                rs -> {
+                    double similarity = MinHash.similarity(signature, MinHash.fromBytes(rs.getBytes("minhash")));
+                    if (similarity >= minSimilarity) {
+                        matches.add(new NearDuplicateDTO(rs.getLong("id"), rs.getString("title"), similarity));
+                    }
+                },
+                args.toArray());
+
+        matches.sort(Comparator.comparingDouble(NearDuplicateDTO::getSimilarity).reversed()
+                .thenComparing(NearDuplicateDTO::getId));
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+
+    /** Live documents of the user closest to {@code documentId} by TF-IDF cosine similarity, best first. */
+    public List<RelatedDocumentDTO> findRelated(Long userId, Long documentId, int limit) {
+        PendingDocument self = documentBackfill.findOwned(FINGERPRINT_COLUMNS, userId, documentId);
+        byte[] termVector = self.getColumn("term_vector");
+        TermVector vector = termVector != null ? TermVector.fromBytes(termVector) : store(self).vector;
+
+        TermVectorIndex index = indexFor(userId);
+        List<TermVectorIndex.Match> matches;
+        // Over-fetch, since documents trashed since the index was built are dropped below
+        synchronized (index) {
+            matches = index.query(vector, documentId, limit * 2, maxQueryTerms, maxDocumentFrequency);
+        }
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+        for (TermVectorIndex.Match match : matches) {
+            args.add(match.getDocumentId());
+        }
+        Map<Long, String> titles = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, title FROM documents WHERE user_id = ? AND deleted_at IS NULL AND id IN (" +
+                        placeholders(matches.size()) + ")",
+                rs -> {
+                    titles.put(rs.getLong("id"), rs.getString("title"));
+                },
+                args.toArray());
+
+        List<RelatedDocumentDTO> related = new ArrayList<>(limit);
+        for (TermVectorIndex.Match match : matches) {
+            String title = titles.get(match.getDocumentId());
+            if (title != null && related.size() < limit) {
+                related.add(new RelatedDocumentDTO(match.getDocumentId(), title, match.getScore()));
+            }
+        }
+        return related;
+    }
+
+    /** Drops trashed or purged documents from the user's index once the removal commits. */
+    public void onDocumentsRemoved(Long userId, Collection<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(documentIds);
+        AfterCommit.run(() -> termIndexes.asMap().computeIfPresent(userId, (key, index) -> {
+            synchronized (index) {
+                for (Long id : ids) {
+                    index.remove(id);
+                }
+            }
+            return index;
+        }));
+    }
+
+    /** Restored documents count again; the user's index is rebuilt on its next lookup. */
+    public void onDocumentsRestored(Long userId) {
+        AfterCommit.run(() -> termIndexes.invalidate(userId));
+    }
+
+    @Scheduled(fixedDelayString = "${documents.similarity.backfill-interval-ms:60000}")
+    public void backfill() {
+        long total = documentBackfill.run("Fingerprinting", FINGERPRINT_COLUMNS, "(minhash IS NULL OR term_vector IS NULL)",
+                batchSize, backfillFailures, this::store);
+        if (total > 0) {
+            logger.debug("Fingerprinted {} documents", total);
+        }
+    }
+
+    // Reads the text outside any transaction, then stores the fingerprints unless the document changed meanwhile
+    private Fingerprint store(PendingDocument document) {
+        String text = documentBackfill.contentOf(document);
+        Fingerprint fingerprint = new Fingerprint(MinHash.signature(text), TermVector.of(text));
+        Boolean stored = transactionTemplate.execute(status -> {
+            // Buckets before the document row, the order a save takes them in
+            replaceBuckets(document.getId(), document.getUserId(), fingerprint.signature);
+            int updated = jdbcTemplate.update(
+                    "UPDATE documents SET minhash = ?, term_vector = ? WHERE id = ? AND version = ? " +
+                            "AND (minhash IS NULL OR term_vector IS NULL)",
+                    MinHash.toBytes(fingerprint.signature), fingerprint.vector.toBytes(), document.getId(), document.getVersion());
+            if (updated == 0) {
+                status.setRollbackOnly();
+            }
+            return updated == 1;
+        });
+        if (Boolean.TRUE.equals(stored)) {
+            indexVector(document.getUserId(), document.getId(), fingerprint.vector);
+        }
+        return fingerprint;
+    }
+
+    private void replaceBuckets(Long documentId, Long userId, int[] signature) {
+        jdbcTemplate.update("DELETE FROM document_minhash_buckets WHERE document_id = ?", documentId);
+        long[] buckets = MinHash.bandBuckets(signature);
+        if (buckets.length == 0) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(buckets.length);
+        for (long bucket : buckets) {
+            rows.add(new Object[]{documentId, bucket, userId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO document_minhash_buckets (document_id, bucket, user_id) VALUES (?, ?, ?)", rows);
+    }
+
+    // Only indexes that are already loaded are patched; cold users are built fresh on next lookup
+    private void indexVector(Long userId, Long documentId, TermVector vector) {
+        termIndexes.asMap().computeIfPresent(userId, (key, index) -> {
+            synchronized (index) {
+                index.put(documentId, vector);
+            }
+            // Returning the index re-weighs it
+            return index;
+        });
+    }
+
+    // The cached index, or one built for this lookup only when it is over the per-user budget
+    private TermVectorIndex indexFor(Long userId) {
+        TermVectorIndex[] uncached = new TermVectorIndex[1];
+        TermVectorIndex index = termIndexes.asMap().computeIfAbsent(userId, key -> {
+            TermVectorIndex built = buildIndex(key);
+            if (built.estimatedBytes() > indexMaxBytesPerUser) {
+                uncached[0] = built;
+                return null;
+            }
+            return built;
+        });
+        return index != null ? index : uncached[0];
+    }
+
+    private TermVectorIndex buildIndex(Long userId) {
+        TermVectorIndex index = new TermVectorIndex();
+        jdbcTemplate.query(
+                "SELECT id, term_vector FROM documents WHERE user_id = ? AND deleted_at IS NULL AND term_vector IS NOT NULL",
+                rs -> {
+                    index.put(rs.getLong("id"), TermVector.fromBytes(rs.getBytes("term_vector")));
+                },
+                userId);
+        return index;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static final class Fingerprint {
+        private final int[] signature;
+        private final TermVector vector;
+
+        private Fingerprint(int[] signature, TermVector vector) {
+            this.signature = signature;
+            this.vector = vector;
+        }
+    }
+}
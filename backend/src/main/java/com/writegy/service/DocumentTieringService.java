@@ -0,0 +1,265 @@
+package com.writegy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.writegy.model.converter.CompressedContentConverter;
+import com.writegy.util.AfterCommit;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Moves the text of cold documents out of the documents table into compressed objects in R2.
+ *
+ * A document is cold when it is ARCHIVED or has not been written for {@code idle-days}. Its row
+ * stays in place with title, counts, hierarchy and version untouched; only content is emptied and
+ * archive_key names the object holding it. Objects are the documents' framed bytes (see
+ * {@link CompressedContentConverter}) keyed by their SHA-256, so a retried run or a clone shares
+ * the same object and a key always names the same text.
+ *
+ * Uploads happen outside any transaction. The row is switched to its stub only if its version is
+ * still the one that was read, so a save racing the job wins and the document simply stays hot.
+ * Reads are served through a local cache bounded by heap size; any write puts the new text back
+ * in the row and clears the key. Writers call {@link #prefetch} before their transaction opens, so
+ * a download never runs while row locks are held. Chunked documents are never tiered.
+ *
+ * Deleting rows deletes their objects after commit, unless a remaining row still names the same
+ * key. An archive run uploading identical text at that moment could lose its object; a document
+ * archived twice with the same text is rare enough that this is not guarded against.
+ */
+@Service
+public class DocumentTieringService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentTieringService.class);
+
+    private static final String KEY_PREFIX = "documents/archive/";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageService storageService;
+    private final Cache<String, String> archivedContent;
+    private final boolean enabled;
+    private final int idleDays;
+    private final int batchSize;
+
+    @Autowired
+    public DocumentTieringService(JdbcTemplate jdbcTemplate, StorageService storageService, MeterRegistry meterRegistry,
+                                  @Value("${documents.tiering.enabled:false}") boolean enabled,
+                                  @Value("${documents.tiering.idle-days:180}") int idleDays,
+                                  @Value("${documents.tiering.batch-size:100}") int batchSize,
+                                  @Value("${documents.tiering.cache-max-bytes:33554432}") long cacheMaxBytes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storageService = storageService;
+        this.enabled = enabled;
+        this.idleDays = Math.max(0, idleDays);
+        this.batchSize = Math.max(1, batchSize);
+        // Objects are immutable under their key, so cached text never goes stale
+        this.archivedContent = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .weigher((String key, String content) -> (int) Math.min(Integer.MAX_VALUE, 64L + 2L * content.length()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, archivedContent, "documents.archive");
+    }
+
+    @Scheduled(cron = "${documents.tiering.cron:0 45 4 * * *}")
+    public void archiveIfEnabled() {
+        if (!enabled) {
+            return;
+        }
+        long archived = archiveColdDocuments(LocalDateTime.now().minusDays(idleDays));
+        if (archived > 0) {
+            logger.info("Moved content of {} cold documents to object storage", archived);
+        }
+    }
+
+    /** Archives every cold document not written since {@code idleBefore}; returns the number of rows stubbed. */
+    public long archiveColdDocuments(LocalDateTime idleBefore) {
+        long total = 0;
+        long lastId = 0;
+        while (true) {
+            List<ColdDocument> batch = findCandidates(lastId, idleBefore);
+            if (batch.isEmpty()) {
+                return total;
+            }
+            total += archiveBatch(batch);
+            lastId = batch.get(batch.size() - 1).id;
+        }
+    }
+
+    /** The text of an archived document, fetched from object storage on a cache miss. */
+    public String load(String archiveKey) {
+        return archivedContent.get(archiveKey, key -> {
+            try {
+                return CompressedContentConverter.decode(storageService.getObject(key).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while loading archived content", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Archived content could not be loaded: " + key, e.getCause());
+            }
+        });
+    }
+
+    /**
+     * Loads the archived text of the given documents into the cache. Failures are left for the
+     * transactional read to report.
+     */
+    public void prefetch(Collection<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        Map<String, CompletableFuture<byte[]>> downloads = new HashMap<>();
+        for (String key : findArchiveKeys(documentIds)) {
+            if (archivedContent.getIfPresent(key) == null) {
+                downloads.put(key, storageService.getObject(key));
+            }
+        }
+        downloads.forEach((key, download) -> {
+            try {
+                archivedContent.put(key, CompressedContentConverter.decode(download.join()));
+            } catch (RuntimeException e) {
+                logger.debug("Prefetching archived content {} failed", key, e);
+            }
+        });
+    }
+
+    /** Distinct archive keys of the given documents. */
+    public List<String> findArchiveKeys(Collection<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT archive_key FROM documents WHERE id IN (" + placeholders(documentIds.size()) + ") " +
+                        "AND archive_key IS NOT NULL", String.class, documentIds.toArray());
+    }
+
+    /** Distinct archive keys of a user's documents under {@code pathPrefix}, trashed or not. */
+    public List<String> findArchiveKeysUnder(Long userId, String pathPrefix) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT archive_key FROM documents WHERE user_id = ? AND path LIKE ? AND archive_key IS NOT NULL",
+                String.class, userId, pathPrefix + "%");
+    }
+
+    /**
+     * Deletes the objects behind {@code archiveKeys} once the current transaction has committed.
+     * Keys still named by another row (a clone shares its source's object) are kept.
+     */
+    public void deleteUnreferencedAfterCommit(Collection<String> archiveKeys) {
+        if (archiveKeys.isEmpty()) {
+            return;
+        }
+        List<String> keys = List.copyOf(archiveKeys);
+        AfterCommit.run(() -> {
+            Set<String> unreferenced = new HashSet<>(keys);
+            unreferenced.removeAll(jdbcTemplate.queryForList(
+                    "SELECT DISTINCT archive_key FROM documents WHERE archive_key IN (" + placeholders(keys.size()) + ")",
+                    String.class, keys.toArray()));
+            for (String key : unreferenced) {
+                archivedContent.invalidate(key);
+                storageService.deleteObject(key).whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        logger.warn("Deleting archived content {} failed; the object is orphaned", key, e);
+                    }
+                });
+            }
+        });
+    }
+
+    private List<ColdDocument> findCandidates(long afterId, LocalDateTime idleBefore) {
+        List<ColdDocument> rows = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT id, version, content, content_compressed FROM documents " +
+                        "WHERE id > ? AND archive_key IS NULL AND deleted_at IS NULL AND chunked = FALSE " +
+                        "AND (status = 'ARCHIVED' OR (? > 0 AND updated_at < ?)) " +
+                        "AND (content_compressed IS NOT NULL OR content <> '') ORDER BY id LIMIT ?",
+                rs -> {
+                    byte[] framed = rs.getBytes("content_compressed");
+                    if (framed == null) {
+                        framed = CompressedContentConverter.encode(rs.getString("content"));
+                    }
+                    rows.add(new ColdDocument(rs.getLong("id"), rs.getLong("version"), framed));
+                },
+                afterId, idleDays, Timestamp.valueOf(idleBefore), batchSize);
+        return rows;
+    }
+
+    // Uploads the batch concurrently, then stubs the rows whose upload succeeded
+    private int archiveBatch(List<ColdDocument> batch) {
+        List<CompletableFuture<Object[]>> uploads = new ArrayList<>(batch.size());
+        for (ColdDocument document : batch) {
+            String key = KEY_PREFIX + sha256(document.framed);
+            uploads.add(storageService.putObject(key, document.framed, "application/octet-stream")
+                    .<Object[]>thenApply(ignored -> new Object[]{key, document.id, document.version})
+                    .exceptionally(e -> {
+                        logger.warn("Archiving document {} failed, leaving it in place", document.id, e);
+                        return null;
+                    }));
+        }
+
+        List<Object[]> stubs = new ArrayList<>(batch.size());
+        for (CompletableFuture<Object[]> upload : uploads) {
+            Object[] stub = upload.join();
+            if (stub != null) {
+                stubs.add(stub);
+            }
+        }
+        if (stubs.isEmpty()) {
+            return 0;
+        }
+
+        // No version or change_seq bump: the document's text is unchanged, so are its ETag and feed position
+        int archived = 0;
+        for (int updated : jdbcTemplate.batchUpdate(
+                "UPDATE documents SET content = '', content_compressed = NULL, archive_key = ? " +
+                        "WHERE id = ? AND version = ? AND archive_key IS NULL", stubs)) {
+            archived += Math.max(0, updated);
+        }
+        return archived;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class ColdDocument {
+        private final long id;
+        private final long version;
+        private final byte[] framed;
+
+        private ColdDocument(long id, long version, byte[] framed) {
+            this.id = id;
+            this.version = version;
+            this.framed = framed;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.writegy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.writegy.dto.DocumentPlacement;
+import com.writegy.dto.DocumentTreeRow;
+import com.writegy.model.entity.Document;
+import com.writegy.repository.DocumentRepository;
+import com.writegy.util.AfterCommit;
+import com.writegy.util.CompactDocumentTree;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keeps each active user's sidebar tree in memory so a refresh does not re-query the hierarchy.
+ *
+ * Trees are built on first read and then patched in place as documents are created, renamed,
+ * moved and deleted; bulk changes (import, clone, restore) drop the tree instead. Patches run
+ * after the writing transaction commits, so a rolled-back write never reaches the cache, and go
+ * through computeIfPresent, which waits for a load of the same user in progress. A load that
+ * read the database before the commit is then patched; one that read after it already has the
+ * change, which is why every patch is idempotent.
+ *
+ * The cache is bounded by the estimated heap size of its trees and reports hits, misses and
+ * evictions as the "documents.tree" cache metrics.
+ */
+@Service
+public class DocumentTreeCache {
+
+    private final DocumentRepository documentRepository;
+    private final Cache<Long, CompactDocumentTree> trees;
+
+    @Autowired
+    public DocumentTreeCache(DocumentRepository documentRepository, MeterRegistry meterRegistry,
+                             @Value("${documents.tree-cache.max-bytes:67108864}") long maxBytes,
+                             @Value("${documents.tree-cache.idle-expiry-minutes:30}") long idleExpiryMinutes) {
+        this.documentRepository = documentRepository;
+        this.trees = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long userId, CompactDocumentTree tree) -> (int) Math.min(Integer.MAX_VALUE, tree.estimatedBytes()))
+                .expireAfterAccess(Duration.ofMinutes(idleExpiryMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, trees, "documents.tree");
+    }
+
+    /** The user's tree, loaded on a miss; the copy returned is safe to stream while patches continue. */
+    public CompactDocumentTree get(Long userId) {
+        CompactDocumentTree tree = trees.get(userId,
+                key -> new CompactDocumentTree(documentRepository.findTreeRowsByUserId(key)));
+        synchronized (tree) {
+            return tree.snapshot();
+        }
+    }
+
+    // Created, renamed, recounted or moved
+    public void onDocumentSaved(Long userId, Document document) {
+        DocumentTreeRow row = new DocumentTreeRow(document.getId(),
+                document.getParent() != null ? document.getParent().getId() : null, document.getTitle(),
+                document.getSortKey(), document.getDepth(), document.getWordCount(), document.getCharacterCount());
+        afterCommit(userId, tree -> tree.upsert(row));
+    }
+
+    // One patch for the whole batch, so readers never see it half applied
+    public void onDocumentsMoved(Long userId, List<DocumentPlacement> placements) {
+        List<DocumentPlacement> moved = List.copyOf(placements);
+        afterCommit(userId, tree -> {
+            for (DocumentPlacement placement : moved) {
+                tree.move(placement.getId(), placement.getParentId(), placement.getSortKey());
+            }
+        });
+    }
+
+    public void onCountsChanged(Long userId, Long documentId, int wordCount, int characterCount) {
+        afterCommit(userId, tree -> tree.updateCounts(documentId, wordCount, characterCount));
+    }
+
+    // Trashed or deleted, together with its subtree
+    public void onSubtreeRemoved(Long userId, Long documentId) {
+        afterCommit(userId, tree -> tree.remove(documentId));
+    }
+
+    public void invalidate(Long userId) {
+        AfterCommit.run(() -> trees.invalidate(userId));
+    }
+
+    private void afterCommit(Long userId, Consumer<CompactDocumentTree> patch) {
+        AfterCommit.run(() -> trees.asMap().computeIfPresent(userId, (key, tree) -> {
+            synchronized (tree) {
+                patch.accept(tree);
+            }
+            // Returning the tree re-weighs it
+            return tree;
+        }));
+    }
+}
@@ -0,0 +1,215 @@
+package com.writegy.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.writegy.dto.DocumentVersionDTO;
+import com.writegy.model.entity.Document;
+import com.writegy.model.entity.DocumentVersion;
+import com.writegy.model.enums.VersionStorageType;
+import com.writegy.repository.DocumentVersionRepository;
+import com.writegy.util.DeltaCodec;
+import com.writegy.util.TextDiff;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Captures document versions as deltas against the previous version, with a full snapshot every
+ * {@code documents.versions.snapshot-interval} versions so rebuilding any version applies a
+ * bounded number of deltas.
+ *
+ * Two versions are compared with {@link TextDiff}; {@code documents.versions.diff-max-cost} bounds
+ * the search, so a diff of two unrelated multi-megabyte versions ends quickly with a coarser script.
+ *
+ * Splices of chunked documents are versioned at most once per
+ * {@code documents.versions.splice-interval-seconds}, since each capture reads and hashes the whole text.
+ */
+@Service
+public class DocumentVersionService {
+
+    private final DocumentVersionRepository documentVersionRepository;
+    private final int snapshotInterval;
+    private final long diffMaxCost;
+    private final Duration spliceInterval;
+
+    @Autowired
+    public DocumentVersionService(DocumentVersionRepository documentVersionRepository,
+                                  @Value("${documents.versions.snapshot-interval:20}") int snapshotInterval,
+                                  @Value("${documents.versions.diff-max-cost:50000000}") long diffMaxCost,
+                                  @Value("${documents.versions.splice-interval-seconds:60}") long spliceIntervalSeconds) {
+        this.documentVersionRepository = documentVersionRepository;
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+        this.diffMaxCost = Math.max(1, diffMaxCost);
+        this.spliceInterval = Duration.ofSeconds(Math.max(0, spliceIntervalSeconds));
+    }
+
+    /**
+     * Whether a splice should be recorded as a version: only once the latest version is older than
+     * the splice interval. Splices in between are folded into the next version captured.
+     */
+    public boolean isSpliceVersionDue(Long documentId) {
+        return documentVersionRepository.findLatestDTO(documentId)
+                .map(latest -> !latest.getCreatedAt().isAfter(LocalDateTime.now().minus(spliceInterval)))
+                .orElse(true);
+    }
+
+    /**
+     * Records the document's current title and content as a new version. {@code previousContent}
+     * is the content before this update; it is used as the delta base only when it matches the
+     * latest stored version, otherwise a snapshot is written.
+     */
+    @Transactional
+    public void captureVersion(Document document, String previousContent) {
+        captureVersion(document, document.getContent(), previousContent);
+    }
+
+    /** As above, for documents whose text is not held on the entity (chunked documents). */
+    @Transactional
+    public void captureVersion(Document document, String currentContent, String previousContent) {
+        String content = currentContent != null ? currentContent : "";
+        String contentHash = sha256(content);
+        Optional<DocumentVersionDTO> latest = documentVersionRepository.findLatestDTO(document.getId());
+
+        if (latest.isPresent() && latest.get().getContentHash().equals(contentHash)
+                && latest.get().getTitle().equals(document.getTitle())) {
+            return;
+        }
+
+        int versionNumber = latest.map(v -> v.getVersionNumber() + 1).orElse(1);
+        String stored = content;
+        VersionStorageType storageType = VersionStorageType.SNAPSHOT;
+
+        boolean baseMatches = latest.isPresent() && previousContent != null
+                && latest.get().getContentHash().equals(sha256(previousContent));
+        if (baseMatches && (versionNumber - 1) % snapshotInterval != 0) {
+            String delta = DeltaCodec.encode(previousContent, content);
+            // A rewrite can produce a delta larger than the text itself
+            if (delta.length() < content.length()) {
+                stored = delta;
+                storageType = VersionStorageType.DELTA;
+            }
+        }
+
+        DocumentVersion version = DocumentVersion.builder()
+                .document(document)
+                .title(document.getTitle())
+                .versionNumber(versionNumber)
+                .storageType(storageType)
+                .contentHash(contentHash)
+                .contentLength(content.length())
+                .createdAt(LocalDateTime.now())
+                .build();
+        // Through the setter so the body lands in the compressed column when enabled
+        version.setContent(stored);
+        // Written at the caller's next flush, where a concurrent capture of the same number fails on the
+        // unique key (see DocumentService#flushChanges)
+        documentVersionRepository.save(version);
+    }
+
+    public List<DocumentVersionDTO> getVersions(Long documentId) {
+        return documentVersionRepository.findDTOsByDocumentId(documentId);
+    }
+
+    @Transactional(readOnly = true)
+    public DocumentVersionDTO materializeVersion(Long documentId, Integer versionNumber) {
+        List<DocumentVersion> chain = documentVersionRepository.findReconstructionChain(documentId, versionNumber);
+        if (chain.isEmpty() || !chain.get(chain.size() - 1).getVersionNumber().equals(versionNumber)) {
+            throw new RuntimeException("Version not found");
+        }
+
+        String content = chain.get(0).getContent();
+        for (int i = 1; i < chain.size(); i++) {
+            content = DeltaCodec.decode(content, chain.get(i).getContent());
+        }
+
+        DocumentVersion version = chain.get(chain.size() - 1);
+        if (!sha256(content).equals(version.getContentHash())) {
+            throw new IllegalStateException("Version " + versionNumber + " of document " + documentId + " failed its integrity check");
+        }
+
+        DocumentVersionDTO dto = new DocumentVersionDTO(documentId, version.getVersionNumber(), version.getTitle(),
+                version.getStorageType(), version.getContentHash(), version.getContentLength(), version.getCreatedAt());
+        dto.setContent(content);
+        return dto;
+    }
+
+    /**
+     * Writes the edit script that turns version {@code from} into version {@code to}, as ops are
+     * found: {@code ["=", n]} keeps and {@code ["-", n]} drops the next n chars of {@code from},
+     * {@code ["+", text]} inserts text. {@code complete} comes last and is false when the search
+     * budget ran out and part of the script is a plain replacement.
+     */
+    public void writeDiff(DocumentVersionDTO from, DocumentVersionDTO to, TextDiff.Granularity granularity,
+                          JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("documentId", from.getDocumentId());
+        generator.writeNumberField("from", from.getVersionNumber());
+        generator.writeNumberField("to", to.getVersionNumber());
+        generator.writeStringField("granularity", granularity.name().toLowerCase());
+        generator.writeNumberField("fromLength", from.getContent().length());
+        generator.writeNumberField("toLength", to.getContent().length());
+        generator.writeArrayFieldStart("ops");
+        boolean complete;
+        try {
+            complete = TextDiff.run(from.getContent(), to.getContent(), granularity, diffMaxCost, new TextDiff.Sink() {
+                @Override
+                public void equal(int length) {
+                    write("=", length);
+                }
+
+                @Override
+                public void delete(int length) {
+                    write("-", length);
+                }
+
+                @Override
+                public void insert(CharSequence text) {
+                    try {
+                        generator.writeStartArray();
+                        generator.writeString("+");
+                        generator.writeString(text.toString());
+                        generator.writeEndArray();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                private void write(String op, int length) {
+                    try {
+                        generator.writeStartArray();
+                        generator.writeString(op);
+                        generator.writeNumber(length);
+                        generator.writeEndArray();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        generator.writeBooleanField("complete", complete);
+        generator.writeEndObject();
+    }
+
+    static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.writegy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.writegy.dto.VocabularyProfileDTO;
+import com.writegy.dto.WordCountDTO;
+import com.writegy.model.entity.Document;
+import com.writegy.repository.DocumentChangeSequence;
+import com.writegy.repository.VocabularyTermDictionary;
+import com.writegy.service.DocumentBackfill.PendingDocument;
+import com.writegy.util.AfterCommit;
+import com.writegy.util.FailureBackoff;
+import com.writegy.util.IntIntHashMap;
+import com.writegy.util.LongIntHashMap;
+import com.writegy.util.VocabularyProfile;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Word frequency profiles of documents and of each user's whole collection.
+ *
+ * A document's profile is stored on its row as word counts by term id, with words interned per
+ * user (see VocabularyProfile and VocabularyTermDictionary). A regular save does not recount the document:
+ * it uncounts the words of the old text between the common head and tail of old and new, and
+ * counts the words of the new text there. Streamed and spliced writes and rows created by SQL
+ * leave the profile null, and a background pass fills those in (see DocumentBackfill).
+ *
+ * A user's profile is the sum of their live documents' profiles, built on first use and cached
+ * with the version each document was counted at. Committed saves patch it with their deltas when
+ * it is still at the version the save started from, and drop it otherwise so it is rebuilt.
+ * Trashing and restoring are not patched, so a user profile can be that much out of date until
+ * it expires.
+ */
+@Service
+public class DocumentVocabularyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentVocabularyService.class);
+
+    // Left out of top words; they still count towards totals and diversity
+    private static final List<String> STOP_WORDS = List.of(
+            "a", "an", "the", "and", "or", "but", "if", "of", "to", "in", "on", "at", "by", "for", "with", "from",
+            "as", "into", "than", "then", "so", "not", "no", "is", "are", "was", "were", "be", "been", "being",
+            "am", "do", "does", "did", "has", "have", "had", "it", "its", "it's", "this", "that", "these", "those",
+            "i", "you", "he", "she", "we", "they", "me", "him", "her", "us", "them", "my", "your", "his", "our",
+            "their", "what", "which", "who", "when", "where", "how", "all", "any", "can", "will", "would",
+            "could", "should", "there", "also", "just", "about", "s", "nbsp");
+
+    private static final List<String> VOCABULARY_COLUMNS = List.of("vocabulary");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VocabularyTermDictionary dictionary;
+    private final DocumentBackfill documentBackfill;
+    private final DocumentChangeSequence changeSequence;
+    private final Cache<Long, UserVocabulary> userProfiles;
+    private final FailureBackoff backfillFailures;
+    private final int batchSize;
+
+    @Autowired
+    public DocumentVocabularyService(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     VocabularyTermDictionary dictionary,
+                                     DocumentBackfill documentBackfill,
+                                     DocumentChangeSequence changeSequence,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${documents.vocabulary.backfill-batch-size:200}") int batchSize,
+                                     @Value("${documents.vocabulary.backfill-max-attempts:5}") int backfillMaxAttempts,
+                                     @Value("${documents.vocabulary.user-cache-max-bytes:33554432}") long userProfileMaxBytes,
+                                     @Value("${documents.vocabulary.user-cache-ttl-minutes:10}") long userProfileTtlMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dictionary = dictionary;
+        this.documentBackfill = documentBackfill;
+        this.changeSequence = changeSequence;
+        this.batchSize = Math.max(1, batchSize);
+        this.backfillFailures = new FailureBackoff(backfillMaxAttempts, Duration.ofMinutes(1), Duration.ofHours(6));
+        this.userProfiles = Caffeine.newBuilder()
+                .maximumWeight(userProfileMaxBytes)
+                .weigher((Long userId, UserVocabulary user) -> (int) Math.min(Integer.MAX_VALUE, user.estimatedBytes()))
+                .expireAfterWrite(Duration.ofMinutes(userProfileTtlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, userProfiles, "documents.vocabulary.users");
+    }
+
+    /**
+     * Brings the document's stored profile from {@code previousContent} to {@code content}. Runs
+     * inside the saving transaction, before the row is written.
+     */
+    public void onContentSaved(Document document, String previousContent, String content) {
+        String text = content != null ? content : "";
+        Long userId = document.getUser().getId();
+        Long documentId = document.getId();
+        Long baseVersion = document.getVersion();
+        byte[] stored = document.getVocabulary();
+
+        if (stored == null || previousContent == null) {
+            IntIntHashMap counts = countWords(userId, text, 0, text.length(), 1, new IntIntHashMap());
+            VocabularyProfile profile = new VocabularyProfile();
+            profile.apply(counts);
+            document.setVocabulary(profile.toBytes());
+            // Not counted in a cached user profile, unless it went stale since
+            AfterCommit.run(() -> patchUser(userId, documentId, null, document.getVersion(), counts));
+            return;
+        }
+
+        int[] region = VocabularyProfile.changedRegion(previousContent, text);
+        IntIntHashMap delta = new IntIntHashMap();
+        countWords(userId, previousContent, region[0], region[1], -1, delta);
+        countWords(userId, text, region[0], region[2], 1, delta);
+        if (delta.size() > 0) {
+            VocabularyProfile profile = VocabularyProfile.fromBytes(stored);
+            profile.apply(delta);
+            document.setVocabulary(profile.toBytes());
+        }
+        AfterCommit.run(() -> patchUser(userId, documentId, baseVersion, document.getVersion(), delta));
+    }
+
+    public VocabularyProfileDTO getDocumentProfile(Long userId, Long documentId, int limit) {
+        PendingDocument document = documentBackfill.findOwned(VOCABULARY_COLUMNS, userId, documentId);
+        byte[] vocabulary = document.getColumn("vocabulary");
+        VocabularyProfile profile = vocabulary != null ? VocabularyProfile.fromBytes(vocabulary) : store(document);
+        return toDTO(userId, documentId, profile, limit);
+    }
+
+    public VocabularyProfileDTO getUserProfile(Long userId, int limit) {
+        UserVocabulary user = userProfiles.get(userId, this::buildUser);
+        synchronized (user) {
+            return toDTO(userId, null, user.profile, limit);
+        }
+    }
+
+    /**
+     * Deletes the user's interned words that none of their documents, live or trashed, counts any
+     * more. Runs inside a transaction that has locked the user's row, after documents were purged.
+     */
+    public int pruneTerms(Long userId) {
+        IntIntHashMap referenced = new IntIntHashMap();
+        jdbcTemplate.query("SELECT vocabulary FROM documents WHERE user_id = ? AND vocabulary IS NOT NULL",
+                rs -> {
+                    VocabularyProfile.fromBytes(rs.getBytes("vocabulary")).forEachTerm(term -> referenced.put(term, 1));
+                },
+                userId);
+        return dictionary.retainOnly(userId, referenced::containsKey);
+    }
+
+    @Scheduled(fixedDelayString = "${documents.vocabulary.backfill-interval-ms:60000}")
+    public void backfill() {
+        long total = documentBackfill.run("Profiling vocabulary of", VOCABULARY_COLUMNS, "vocabulary IS NULL",
+                batchSize, backfillFailures, this::store);
+        if (total > 0) {
+            logger.debug("Profiled vocabulary of {} documents", total);
+        }
+    }
+
+    // Reads the text outside any transaction, then stores the profile unless the document changed meanwhile
+    private VocabularyProfile store(PendingDocument document) {
+        String text = documentBackfill.contentOf(document);
+        VocabularyProfile profile = new VocabularyProfile();
+        transactionTemplate.executeWithoutResult(status -> {
+            // Interns words, so ordered against the user's saves and term pruning like they are
+            changeSequence.lock(document.getUserId());
+            IntIntHashMap counts = countWords(document.getUserId(), text, 0, text.length(), 1, new IntIntHashMap());
+            profile.apply(counts);
+            int updated = jdbcTemplate.update(
+                    "UPDATE documents SET vocabulary = ? WHERE id = ? AND version = ? AND vocabulary IS NULL",
+                    profile.toBytes(), document.getId(), document.getVersion());
+            if (updated == 0) {
+                status.setRollbackOnly();
+                return;
+            }
+            AfterCommit.run(() -> patchUser(document.getUserId(), document.getId(), null, document.getVersion(), counts));
+        });
+        return profile;
+    }
+
+    // Signed counts of the words of text[start, end) by term id, interning new words in the current transaction
+    private IntIntHashMap countWords(Long userId, String text, int start, int end, int sign, IntIntHashMap counts) {
+        Map<String, Integer> uncached = new HashMap<>();
+        VocabularyProfile.forEachWord(text, start, end, word -> {
+            int id = dictionary.cachedId(userId, word);
+            if (id != 0) {
+                counts.addTo(id, sign);
+            } else {
+                uncached.merge(word, 1, Integer::sum);
+            }
+        });
+        if (!uncached.isEmpty()) {
+            Map<String, Integer> ids = dictionary.intern(userId, uncached.keySet());
+            uncached.forEach((word, count) -> counts.addTo(ids.get(word), sign * count));
+        }
+        return counts;
+    }
+
+    /**
+     * Applies a document's committed delta to its user's cached profile, if one is loaded. A null
+     * {@code baseVersion} means the delta is the document's whole profile, which the cached one
+     * must not have counted yet.
+     */
+    private void patchUser(Long userId, Long documentId, Long baseVersion, Long newVersion, IntIntHashMap delta) {
+        userProfiles.asMap().computeIfPresent(userId, (key, user) -> {
+            synchronized (user) {
+                int counted = user.versions.get(documentId, -1);
+                if (counted == (int) newVersion.longValue()) {
+                    return user;
+                }
+                if (counted != (baseVersion == null ? -1 : (int) baseVersion.longValue())) {
+                    // Out of step with this document; rebuilt on next use
+                    return null;
+                }
+                user.profile.apply(delta);
+                user.versions.put(documentId, (int) newVersion.longValue());
+                return user;
+            }
+        });
+    }
+
+    private UserVocabulary buildUser(Long userId) {
+        UserVocabulary user = new UserVocabulary();
+        jdbcTemplate.query(
+                "SELECT id, version, vocabulary FROM documents WHERE user_id = ? AND deleted_at IS NULL AND vocabulary IS NOT NULL",
+                rs -> {
+                    user.profile.add(VocabularyProfile.fromBytes(rs.getBytes("vocabulary")), 1);
+                    user.versions.put(rs.getLong("id"), (int) rs.getLong("version"));
+                },
+                userId);
+        return user;
+    }
+
+    private VocabularyProfileDTO toDTO(Long userId, Long documentId, VocabularyProfile profile, int limit) {
+        IntIntHashMap stopWords = new IntIntHashMap();
+        dictionary.lookup(userId, STOP_WORDS).values().forEach(id -> stopWords.put(id, 1));
+        int[] top = profile.top(limit, stopWords::containsKey);
+        Map<Integer, String> words = dictionary.terms(userId, top);
+        List<WordCountDTO> topWords = new ArrayList<>(top.length);
+        for (int term : top) {
+            String word = words.get(term);
+            if (word != null) {
+                topWords.add(new WordCountDTO(word, profile.count(term)));
+            }
+        }
+        double diversity = Math.round(profile.lexicalDiversity() * 1000) / 1000.0;
+        return new VocabularyProfileDTO(documentId, profile.totalWords(), profile.uniqueWords(), diversity, topWords);
+    }
+
+    private static final class UserVocabulary {
+        private final VocabularyProfile profile = new VocabularyProfile();
+        // Document id to the version its words were counted at
+        private final LongIntHashMap versions = new LongIntHashMap();
+
+        private long estimatedBytes() {
+            return profile.estimatedBytes() + versions.estimatedBytes();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.writegy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.writegy.dto.DocumentSuggestionDTO;
+import com.writegy.repository.DocumentRepository;
+import com.writegy.util.TitlePrefixIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps one in-memory title prefix index per active user so typeahead never touches the database.
+ * Indexes are built on first lookup and dropped after the user has been idle for a while.
+ */
+@Service
+public class TitleIndexService {
+
+    private final DocumentRepository documentRepository;
+    private final Cache<Long, TitlePrefixIndex> indexes;
+
+    @Autowired
+    public TitleIndexService(DocumentRepository documentRepository,
+                             @Value("${documents.title-index.idle-expiry-minutes:30}") long idleExpiryMinutes,
+                             @Value("${documents.title-index.max-users:500}") long maxUsers) {
+        this.documentRepository = documentRepository;
+        this.indexes = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(idleExpiryMinutes))
+                .maximumSize(maxUsers)
+                .build();
+    }
+
+    public List<DocumentSuggestionDTO> suggest(Long userId, String prefix, int limit) {
+        TitlePrefixIndex index = indexes.get(userId, this::buildIndex);
+        List<DocumentSuggestionDTO> suggestions = new ArrayList<>();
+        for (Map.Entry<Long, String> match : index.search(prefix, limit).entrySet()) {
+            suggestions.add(new DocumentSuggestionDTO(match.getKey(), match.getValue()));
+        }
+        return suggestions;
+    }
+
+    // Mutations only touch indexes that are already loaded; cold users are built fresh on next lookup
+
+    public void onDocumentSaved(Long userId, Long documentId, String title) {
+        TitlePrefixIndex index = indexes.getIfPresent(userId);
+        if (index != null) {
+            index.put(documentId, title);
+        }
+    }
+
+    public void onDocumentDeleted(Long userId, Long documentId) {
+        TitlePrefixIndex index = indexes.getIfPresent(userId);
+        if (index != null) {
+            index.remove(documentId);
+        }
+    }
+
+    public void invalidate(Long userId) {
+        indexes.invalidate(userId);
+    }
+
+    private TitlePrefixIndex buildIndex(Long userId) {
+        Map<Long, String> titles = new LinkedHashMap<>();
+        for (DocumentSuggestionDTO row : documentRepository.findTitlesByUserId(userId)) {
+            titles.put(row.getId(), row.getTitle());
+        }
+        return TitlePrefixIndex.build(titles);
+    }
+}
@@ -0,0 +1,388 @@
+package com.writegy.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.writegy.dto.DocumentTreeRow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Column-oriented document tree assembled in one pass over content-free rows.
+ *
+ * Nodes live in parallel primitive arrays and are linked through first-child / next-sibling
+ * indices, so building and walking the tree allocates no per-node objects. Sibling order is the
+ * order of the input rows, which is (sortKey, id).
+ *
+ * The tree can also be kept up to date in place: {@link #upsert} and {@link #remove} relink only
+ * the affected sibling lists, appending new nodes and leaving removed slots empty until they make
+ * up half the arrays. Both are idempotent. Mutating methods are not thread-safe; callers serialize
+ * them and hand readers a {@link #snapshot()}.
+ */
+public class CompactDocumentTree {
+
+    private static final int NONE = -1;
+
+    // Removed slots keep id 0, which no document has
+    private static final long REMOVED = 0L;
+
+    private int size;
+    private int live;
+    private long[] ids;
+    private long[] parentIds;
+    private String[] titles;
+    private String[] sortKeys;
+    private int[] wordCounts;
+    private int[] characterCounts;
+
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] nextSibling;
+    private int[] childCounts;
+    private int firstRoot = NONE;
+    private int lastRoot = NONE;
+
+    // Null on snapshots, which are read-only and answer lookups by scanning
+    private LongIntHashMap indexById;
+
+    public CompactDocumentTree(List<DocumentTreeRow> rows) {
+        size = rows.size();
+        live = size;
+        allocate(size);
+
+        indexById = new LongIntHashMap(size);
+        for (int i = 0; i < size; i++) {
+            DocumentTreeRow row = rows.get(i);
+            ids[i] = row.getId();
+            parentIds[i] = row.getParentId() != null ? row.getParentId() : 0L;
+            titles[i] = row.getTitle();
+            sortKeys[i] = row.getSortKey();
+            wordCounts[i] = row.getWordCount() != null ? row.getWordCount() : 0;
+            characterCounts[i] = row.getCharacterCount() != null ? row.getCharacterCount() : 0;
+            indexById.put(ids[i], i);
+        }
+
+        // Link every node under its parent; nodes whose parent is not in the set become roots
+        for (int i = 0; i < size; i++) {
+            int parent = parentIds[i] != 0L ? indexById.get(parentIds[i], NONE) : NONE;
+            if (parent == NONE) {
+                if (lastRoot == NONE) firstRoot = i; else nextSibling[lastRoot] = i;
+                lastRoot = i;
+            } else {
+                if (lastChild[parent] == NONE) firstChild[parent] = i; else nextSibling[lastChild[parent]] = i;
+                lastChild[parent] = i;
+                childCounts[parent]++;
+            }
+        }
+    }
+
+    private CompactDocumentTree() {}
+
+    /** Number of documents in the tree. */
+    public int size() {
+        return live;
+    }
+
+    public boolean contains(long id) {
+        if (indexById != null) {
+            return indexById.containsKey(id);
+        }
+        if (id == REMOVED) return false;
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Inserts the document, or updates it in place: a changed parent or sort key moves the node,
+     * together with its subtree, to its ordered position among the new siblings.
+     */
+    public void upsert(DocumentTreeRow row) {
+        requireMutable();
+        long id = row.getId();
+        long parentId = row.getParentId() != null ? row.getParentId() : 0L;
+        int node = indexById.get(id, NONE);
+        if (node == NONE) {
+            node = append(id);
+        } else if (parentIds[node] != parentId || !Objects.equals(sortKeys[node], row.getSortKey())) {
+            unlink(node);
+        } else {
+            setValues(node, row);
+            return;
+        }
+        parentIds[node] = parentId;
+        sortKeys[node] = row.getSortKey();
+        setValues(node, row);
+        link(node);
+    }
+
+    /** Moves a document already in the tree; unknown ids are ignored. */
+    public void move(long id, Long parentId, String sortKey) {
+        requireMutable();
+        int node = indexById.get(id, NONE);
+        if (node == NONE) return;
+        upsert(new DocumentTreeRow(id, parentId, titles[node], sortKey, null, wordCounts[node], characterCounts[node]));
+    }
+
+    /** Updates the counts of a document already in the tree; unknown ids are ignored. */
+    public void updateCounts(long id, int wordCount, int characterCount) {
+        requireMutable();
+        int node = indexById.get(id, NONE);
+        if (node == NONE) return;
+        wordCounts[node] = wordCount;
+        characterCounts[node] = characterCount;
+    }
+
+    /** Removes the document and its whole subtree; unknown ids are ignored. */
+    public void remove(long id) {
+        requireMutable();
+        int node = indexById.get(id, NONE);
+        if (node == NONE) return;
+        unlink(node);
+
+        // Clear the subtree with an explicit stack; its links are dropped along with it
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = node;
+        while (top > 0) {
+            int current = stack[--top];
+            for (int child = firstChild[current]; child != NONE; child = nextSibling[child]) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, top << 1);
+                stack[top++] = child;
+            }
+            indexById.remove(ids[current]);
+            ids[current] = REMOVED;
+            titles[current] = null;
+            sortKeys[current] = null;
+            live--;
+        }
+        if (size - live > live && size > 64) {
+            compact();
+        }
+    }
+
+    /** A read-only copy for streaming while the original keeps changing. */
+    public CompactDocumentTree snapshot() {
+        CompactDocumentTree copy = new CompactDocumentTree();
+        copy.size = size;
+        copy.live = live;
+        copy.ids = Arrays.copyOf(ids, size);
+        copy.parentIds = Arrays.copyOf(parentIds, size);
+        copy.titles = Arrays.copyOf(titles, size);
+        copy.sortKeys = Arrays.copyOf(sortKeys, size);
+        copy.wordCounts = Arrays.copyOf(wordCounts, size);
+        copy.characterCounts = Arrays.copyOf(characterCounts, size);
+        copy.firstChild = Arrays.copyOf(firstChild, size);
+        copy.lastChild = Arrays.copyOf(lastChild, size);
+        copy.nextSibling = Arrays.copyOf(nextSibling, size);
+        copy.childCounts = Arrays.copyOf(childCounts, size);
+        copy.firstRoot = firstRoot;
+        copy.lastRoot = lastRoot;
+        return copy;
+    }
+
+    /** Approximate heap footprint, used to bound how many trees are cached. */
+    public long estimatedBytes() {
+        long bytes = 128L + ids.length * (8L + 8L + 4L * 6 + 4L * 2);
+        for (int i = 0; i < size; i++) {
+            if (titles[i] != null) bytes += 40L + titles[i].length();
+            if (sortKeys[i] != null) bytes += 40L + sortKeys[i].length();
+        }
+        return bytes + (indexById != null ? indexById.estimatedBytes() : 0);
+    }
+
+    /**
+     * Writes the tree as a nested JSON array. Depth is taken from the actual nesting rather than
+     * the stored column, and the walk uses an explicit stack so deep trees cannot overflow.
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        int[] stack = new int[16];
+        int top = 0;
+        int next = firstRoot;
+
+        generator.writeStartArray();
+        while (true) {
+            if (next != NONE) {
+                writeNodeStart(generator, next, top);
+                if (top == stack.length) stack = Arrays.copyOf(stack, top << 1);
+                stack[top++] = next;
+                next = firstChild[next];
+            } else {
+                if (top == 0) break;
+                int node = stack[--top];
+                generator.writeEndArray();
+                generator.writeEndObject();
+                next = nextSibling[node];
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeNodeStart(JsonGenerator generator, int node, int depth) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", ids[node]);
+        if (parentIds[node] != 0L) {
+            generator.writeNumberField("parentId", parentIds[node]);
+        } else {
+            generator.writeNullField("parentId");
+        }
+        generator.writeStringField("title", titles[node]);
+        generator.writeStringField("sortKey", sortKeys[node]);
+        generator.writeNumberField("depth", depth);
+        generator.writeNumberField("wordCount", wordCounts[node]);
+        generator.writeNumberField("characterCount", characterCounts[node]);
+        generator.writeNumberField("childCount", childCounts[node]);
+        generator.writeArrayFieldStart("children");
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        parentIds = new long[capacity];
+        titles = new String[capacity];
+        sortKeys = new String[capacity];
+        wordCounts = new int[capacity];
+        characterCounts = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        childCounts = new int[capacity];
+        Arrays.fill(firstChild, NONE);
+        Arrays.fill(lastChild, NONE);
+        Arrays.fill(nextSibling, NONE);
+    }
+
+    private void requireMutable() {
+        if (indexById == null) {
+            throw new IllegalStateException("Tree snapshots are read-only");
+        }
+    }
+
+    private int append(long id) {
+        if (size == ids.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            parentIds = Arrays.copyOf(parentIds, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            sortKeys = Arrays.copyOf(sortKeys, capacity);
+            wordCounts = Arrays.copyOf(wordCounts, capacity);
+            characterCounts = Arrays.copyOf(characterCounts, capacity);
+            firstChild = grow(firstChild, capacity);
+            lastChild = grow(lastChild, capacity);
+            nextSibling = grow(nextSibling, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+        }
+        int node = size++;
+        ids[node] = id;
+        indexById.put(id, node);
+        live++;
+        return node;
+    }
+
+    private static int[] grow(int[] links, int capacity) {
+        int previous = links.length;
+        int[] grown = Arrays.copyOf(links, capacity);
+        Arrays.fill(grown, previous, capacity, NONE);
+        return grown;
+    }
+
+    private void setValues(int node, DocumentTreeRow row) {
+        titles[node] = row.getTitle();
+        wordCounts[node] = row.getWordCount() != null ? row.getWordCount() : 0;
+        characterCounts[node] = row.getCharacterCount() != null ? row.getCharacterCount() : 0;
+    }
+
+    // Inserts the node at its (sortKey, id) position among its parent's children, or among the
+    // roots when the parent is not in the tree
+    private void link(int node) {
+        int parent = parentIds[node] != 0L ? indexById.get(parentIds[node], NONE) : NONE;
+        int previous = NONE;
+        int current = parent == NONE ? firstRoot : firstChild[parent];
+        while (current != NONE && precedes(current, node)) {
+            previous = current;
+            current = nextSibling[current];
+        }
+
+        nextSibling[node] = current;
+        if (previous == NONE) {
+            if (parent == NONE) firstRoot = node; else firstChild[parent] = node;
+        } else {
+            nextSibling[previous] = node;
+        }
+        if (current == NONE) {
+            if (parent == NONE) lastRoot = node; else lastChild[parent] = node;
+        }
+        if (parent != NONE) childCounts[parent]++;
+    }
+
+    private void unlink(int node) {
+        int parent = parentIds[node] != 0L ? indexById.get(parentIds[node], NONE) : NONE;
+        int previous = NONE;
+        int current = parent == NONE ? firstRoot : firstChild[parent];
+        while (current != NONE && current != node) {
+            previous = current;
+            current = nextSibling[current];
+        }
+        if (current == NONE) return;
+
+        if (previous == NONE) {
+            if (parent == NONE) firstRoot = nextSibling[node]; else firstChild[parent] = nextSibling[node];
+        } else {
+            nextSibling[previous] = nextSibling[node];
+        }
+        if (nextSibling[node] == NONE) {
+            if (parent == NONE) lastRoot = previous; else lastChild[parent] = previous;
+        }
+        if (parent != NONE) childCounts[parent]--;
+        nextSibling[node] = NONE;
+    }
+
+    private boolean precedes(int a, int b) {
+        int cmp = compareKeys(sortKeys[a], sortKeys[b]);
+        return cmp != 0 ? cmp < 0 : ids[a] < ids[b];
+    }
+
+    // Null keys sort first, as legacy rows without a key did before ordering keys were backfilled
+    private static int compareKeys(String a, String b) {
+        if (a == null || b == null) return a == null ? (b == null ? 0 : -1) : 1;
+        return a.compareTo(b);
+    }
+
+    // Rebuilds the arrays from the live nodes, keeping sibling order
+    private void compact() {
+        List<DocumentTreeRow> rows = new ArrayList<>(live);
+        int[] stack = new int[16];
+        int top = 0;
+        int next = firstRoot;
+        while (true) {
+            if (next != NONE) {
+                rows.add(new DocumentTreeRow(ids[next], parentIds[next] != 0L ? parentIds[next] : null, titles[next],
+                        sortKeys[next], top, wordCounts[next], characterCounts[next]));
+                if (top == stack.length) stack = Arrays.copyOf(stack, top << 1);
+                stack[top++] = next;
+                next = firstChild[next];
+            } else {
+                if (top == 0) break;
+                next = nextSibling[stack[--top]];
+            }
+        }
+        CompactDocumentTree rebuilt = new CompactDocumentTree(rows);
+        size = rebuilt.size;
+        live = rebuilt.live;
+        ids = rebuilt.ids;
+        parentIds = rebuilt.parentIds;
+        titles = rebuilt.titles;
+        sortKeys = rebuilt.sortKeys;
+        wordCounts = rebuilt.wordCounts;
+        characterCounts = rebuilt.characterCounts;
+        firstChild = rebuilt.firstChild;
+        lastChild = rebuilt.lastChild;
+        nextSibling = rebuilt.nextSibling;
+        childCounts = rebuilt.childCounts;
+        firstRoot = rebuilt.firstRoot;
+        lastRoot = rebuilt.lastRoot;
+        indexById = rebuilt.indexById;
+    }
+}
@@ -0,0 +1,75 @@
+package com.writegy.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits document text into content-defined chunks.
+ *
+ * Chunks only ever end just after a whitespace char, so no word straddles two chunks and
+ * per-chunk word counts add up. Once a chunk holds {@link #MIN_CHUNK} chars it ends at a
+ * candidate whose preceding few chars hash to a cut; line ends qualify far more often than other
+ * whitespace, so plain text splits between paragraphs while single-line HTML still splits between
+ * words. Because the decision looks only at nearby text, an edit changes the chunks around it and
+ * re-splitting reproduces every boundary further away. A chunk that would pass
+ * {@link #MAX_CHUNK} chars ends at its last whitespace instead; only a run of text without any
+ * whitespace can exceed it.
+ */
+public final class ContentChunker {
+
+    public static final int MIN_CHUNK = 2048;
+    public static final int MAX_CHUNK = 16384;
+
+    // Chars before a candidate that decide whether to cut there
+    private static final int WINDOW = 16;
+
+    // A line end cuts with probability 1/4, any other whitespace with 1/512 (a few KB of prose)
+    private static final int LINE_MASK = 3;
+    private static final int WORD_MASK = 511;
+
+    private ContentChunker() {}
+
+    public static List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        int n = text.length();
+        int start = 0;
+        int previous = 0;
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) continue;
+
+            int cut = i + 1;
+            if (cut - start > MAX_CHUNK) {
+                int forced = previous > start ? previous : cut;
+                chunks.add(text.substring(start, forced));
+                start = forced;
+            }
+            previous = cut;
+
+            int length = cut - start;
+            if (length < MIN_CHUNK) continue;
+            int mask = c == '\n' ? LINE_MASK : WORD_MASK;
+            if ((windowHash(text, cut) & mask) == 0) {
+                chunks.add(text.substring(start, cut));
+                start = cut;
+            }
+        }
+        if (start < n) {
+            chunks.add(text.substring(start));
+        }
+        return chunks;
+    }
+
+    // Hash of the chars just before {@code end}; same recurrence as String.hashCode plus a final
+    // mix, so boundaries are identical on every JVM
+    private static int windowHash(String text, int end) {
+        int h = 0;
+        for (int i = Math.max(0, end - WINDOW); i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        h ^= (h >>> 16);
+        h *= 0x45d9f3b;
+        h ^= (h >>> 16);
+        return h;
+    }
+}
@@ -0,0 +1,67 @@
+package com.writegy.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chunk-level rope over a chunked document: ordered chunk keys with their lengths and prefix
+ * offsets, but no text. Locates the chunks an edit touches so only those are loaded and rewritten.
+ */
+public class ContentRope {
+
+    private final String[] keys;
+    // offsets[i] is where chunk i starts; offsets[size] is the total length
+    private final long[] offsets;
+
+    public ContentRope(List<String> keys, List<Integer> lengths) {
+        int size = keys.size();
+        this.keys = keys.toArray(new String[0]);
+        this.offsets = new long[size + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] = offsets[i] + lengths.get(i);
+        }
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public long length() {
+        return offsets[keys.length];
+    }
+
+    public String key(int index) {
+        return index >= 0 && index < keys.length ? keys[index] : null;
+    }
+
+    public long offsetOf(int index) {
+        return offsets[index];
+    }
+
+    /** Index of the chunk containing {@code offset}; the end of the text maps to the last chunk. */
+    public int chunkAt(long offset) {
+        if (offset < 0 || offset > length()) {
+            throw new IllegalArgumentException("Offset " + offset + " outside document of length " + length());
+        }
+        if (keys.length == 0) return -1;
+        int index = Arrays.binarySearch(offsets, 0, keys.length, offset);
+        // An exact hit is the start of that chunk; otherwise it falls inside the preceding one
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Inclusive range of chunks to rewrite for replacing {@code [offset, offset + deleteCount)}.
+     * An insertion exactly at a boundary joins the preceding chunk, so appends do not create a
+     * new chunk each time.
+     */
+    public int[] affectedRange(long offset, long deleteCount) {
+        if (deleteCount < 0 || offset + deleteCount > length()) {
+            throw new IllegalArgumentException("Edit range exceeds document of length " + length());
+        }
+        if (keys.length == 0) return new int[]{0, -1};
+        int first = chunkAt(offset);
+        if (first > 0 && offsets[first] == offset) first--;
+        int last = deleteCount == 0 ? first : chunkAt(offset + deleteCount - 1);
+        return new int[]{first, Math.max(first, last)};
+    }
+}
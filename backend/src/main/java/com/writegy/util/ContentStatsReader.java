@@ -0,0 +1,82 @@
+package com.writegy.util;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pass-through reader that counts words and non-whitespace characters as text streams by and
+ * fails once more than {@code maxCharacters} have been read.
+ *
+ * Counts match DocumentService's String-based counting: whitespace is the regex {@code \s} set,
+ * a word is a maximal run of anything else.
+ */
+public class ContentStatsReader extends FilterReader {
+
+    private final long maxCharacters;
+    private long length;
+    private int wordCount;
+    private int characterCount;
+    private boolean inWord;
+    private boolean limitExceeded;
+
+    public ContentStatsReader(Reader in, long maxCharacters) {
+        super(in);
+        this.maxCharacters = maxCharacters;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+        if (c >= 0) {
+            count((char) c);
+            checkLimit();
+        }
+        return c;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        int n = super.read(buffer, offset, length);
+        for (int i = 0; i < n; i++) {
+            count(buffer[offset + i]);
+        }
+        if (n > 0) checkLimit();
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("skip is not supported while collecting content statistics");
+    }
+
+    public long getLength() { return length; }
+    public int getWordCount() { return wordCount; }
+    public int getCharacterCount() { return characterCount; }
+    public boolean isLimitExceeded() { return limitExceeded; }
+
+    private void count(char c) {
+        length++;
+        if (isWhitespace(c)) {
+            inWord = false;
+        } else {
+            characterCount++;
+            if (!inWord) {
+                wordCount++;
+                inWord = true;
+            }
+        }
+    }
+
+    private void checkLimit() throws IOException {
+        if (length > maxCharacters) {
+            limitExceeded = true;
+            throw new IOException("Content exceeds the maximum of " + maxCharacters + " characters");
+        }
+    }
+
+    // Same set as the regex \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,259 @@
+package com.writegy.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Text delta encoding used for version history.
+ *
+ * A delta is a list of operations that rebuild the target from the base: copy a character range
+ * of the base, or insert literal text. The common prefix and suffix are copied directly; the
+ * changed middle is matched line by line through a hash of the base's lines, so moved or
+ * unchanged paragraphs are copied rather than stored again. Copies are then grown character by
+ * character into the neighbouring inserts, which keeps edits inside one long line small.
+ *
+ * Encoded form: {@code "D1\n"} followed by {@code "C<offset>,<length>\n"} and
+ * {@code "I<length>\n<text>"} operations, with lengths counted in chars.
+ */
+public final class DeltaCodec {
+
+    private static final String HEADER = "D1\n";
+
+    // Copies shorter than this cost more in op overhead than inserting the text again
+    private static final int MIN_COPY_LENGTH = 16;
+
+    // Bounds the candidates tried per line so repeated lines (blank lines, separators) stay cheap
+    private static final int MAX_CANDIDATES = 8;
+
+    private DeltaCodec() {}
+
+    public static String encode(String base, String target) {
+        Ops ops = new Ops(base, target);
+
+        // Skip the unchanged head and tail, cut back to line starts so line matching stays aligned
+        int prefix = commonPrefix(base, target);
+        prefix = target.lastIndexOf('\n', prefix - 1) + 1;
+        int suffix = commonSuffix(base, target, prefix);
+        while (suffix > 0 && target.length() - suffix > prefix && target.charAt(target.length() - suffix - 1) != '\n') suffix--;
+
+        ops.copy(0, prefix);
+        matchLines(base, prefix, base.length() - suffix, target, prefix, target.length() - suffix, ops);
+        ops.copy(base.length() - suffix, suffix);
+
+        return ops.encoded();
+    }
+
+    public static String decode(String base, String delta) {
+        if (!delta.startsWith(HEADER)) {
+            throw new IllegalArgumentException("Unsupported delta format");
+        }
+        StringBuilder out = new StringBuilder(base.length());
+        int pos = HEADER.length();
+        while (pos < delta.length()) {
+            char op = delta.charAt(pos);
+            int lineEnd = delta.indexOf('\n', pos);
+            if (lineEnd < 0) {
+                throw new IllegalArgumentException("Truncated delta at " + pos);
+            }
+            if (op == 'C') {
+                int comma = delta.indexOf(',', pos);
+                if (comma < 0 || comma > lineEnd) {
+                    throw new IllegalArgumentException("Malformed copy at " + pos);
+                }
+                int offset = Integer.parseInt(delta, pos + 1, comma, 10);
+                int length = Integer.parseInt(delta, comma + 1, lineEnd, 10);
+                if (offset < 0 || length < 0 || offset + length > base.length()) {
+                    throw new IllegalArgumentException("Copy outside base at " + pos);
+                }
+                out.append(base, offset, offset + length);
+                pos = lineEnd + 1;
+            } else if (op == 'I') {
+                int length = Integer.parseInt(delta, pos + 1, lineEnd, 10);
+                int start = lineEnd + 1;
+                if (length < 0 || start + length > delta.length()) {
+                    throw new IllegalArgumentException("Insert past end of delta at " + pos);
+                }
+                out.append(delta, start, start + length);
+                pos = start + length;
+            } else {
+                throw new IllegalArgumentException("Unknown delta op '" + op + "' at " + pos);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void matchLines(String base, int baseStart, int baseEnd,
+                                   String target, int targetStart, int targetEnd, Ops ops) {
+        if (targetStart >= targetEnd) return;
+        if (baseStart >= baseEnd) {
+            insertThenCopy(base, target, targetStart, targetEnd, baseEnd, 0, ops);
+            return;
+        }
+
+        // Line starts of the base region, and where each distinct line occurs
+        List<Integer> baseLines = lineStarts(base, baseStart, baseEnd);
+        Map<String, List<Integer>> occurrences = new HashMap<>();
+        for (int i = 0; i < baseLines.size() - 1; i++) {
+            String line = base.substring(baseLines.get(i), baseLines.get(i + 1));
+            occurrences.computeIfAbsent(line, k -> new ArrayList<>(2)).add(i);
+        }
+
+        int pos = targetStart;
+        int pendingInsert = targetStart;
+        int expectedLine = -1;
+        while (pos < targetEnd) {
+            int lineEnd = lineEnd(target, pos, targetEnd);
+            List<Integer> candidates = occurrences.get(target.substring(pos, lineEnd));
+
+            int bestLine = -1;
+            int bestLength = 0;
+            if (candidates != null) {
+                // Prefer continuing the previous copy, then the first few other occurrences
+                if (expectedLine >= 0 && candidates.contains(expectedLine)) {
+                    bestLine = expectedLine;
+                    bestLength = extend(base, baseLines, expectedLine, target, pos, targetEnd);
+                }
+                for (int c = 0; c < candidates.size() && c < MAX_CANDIDATES; c++) {
+                    int line = candidates.get(c);
+                    if (line == bestLine) continue;
+                    int length = extend(base, baseLines, line, target, pos, targetEnd);
+                    if (length > bestLength) {
+                        bestLine = line;
+                        bestLength = length;
+                    }
+                }
+            }
+
+            if (bestLength >= MIN_COPY_LENGTH) {
+                int offset = baseLines.get(bestLine);
+                insertThenCopy(base, target, pendingInsert, pos, offset, bestLength, ops);
+                pos += bestLength;
+                pendingInsert = pos;
+                expectedLine = lineIndexAt(baseLines, offset + bestLength);
+            } else {
+                pos = lineEnd;
+                expectedLine = -1;
+            }
+        }
+        // Whatever is left joins up with the suffix copy that follows
+        insertThenCopy(base, target, pendingInsert, targetEnd, baseEnd, 0, ops);
+    }
+
+    // Emits target[from, to) followed by a copy of base[offset, offset + length), first growing the
+    // copy backwards over any tail of the insert that the base already has
+    private static void insertThenCopy(String base, String target, int from, int to, int offset, int length, Ops ops) {
+        while (to > from && offset > 0 && base.charAt(offset - 1) == target.charAt(to - 1)) {
+            to--;
+            offset--;
+            length++;
+        }
+        ops.insert(from, to);
+        ops.copy(offset, length);
+    }
+
+    // Length of the run of whole lines matching from base line {@code line} and target offset {@code pos}
+    private static int extend(String base, List<Integer> baseLines, int line, String target, int pos, int targetEnd) {
+        int length = 0;
+        for (int i = line; i < baseLines.size() - 1; i++) {
+            int start = baseLines.get(i);
+            int lineLength = baseLines.get(i + 1) - start;
+            int at = pos + length;
+            if (at + lineLength > targetEnd || !target.regionMatches(at, base, start, lineLength)) break;
+            length += lineLength;
+        }
+        return length;
+    }
+
+    private static int lineIndexAt(List<Integer> baseLines, int offset) {
+        int index = Collections.binarySearch(baseLines, offset);
+        return index >= 0 && index < baseLines.size() - 1 ? index : -1;
+    }
+
+    // Offsets where each line begins, plus a final entry for the region end
+    private static List<Integer> lineStarts(String text, int start, int end) {
+        List<Integer> starts = new ArrayList<>();
+        int pos = start;
+        while (pos < end) {
+            starts.add(pos);
+            pos = lineEnd(text, pos, end);
+        }
+        starts.add(end);
+        return starts;
+    }
+
+    private static int lineEnd(String text, int pos, int end) {
+        int newline = text.indexOf('\n', pos);
+        return newline < 0 || newline >= end ? end : newline + 1;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+
+    private static int commonSuffix(String a, String b, int prefix) {
+        int max = Math.min(a.length(), b.length()) - prefix;
+        int i = 0;
+        while (i < max && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) i++;
+        return i;
+    }
+
+    // Accumulates operations, merging adjacent copies of contiguous base ranges
+    private static final class Ops {
+        private final String base;
+        private final String target;
+        private final StringBuilder out = new StringBuilder(HEADER);
+
+        // Pending copy; starts as an empty copy at offset 0 so a leading insert can grow it
+        private int copyOffset = 0;
+        private int copyLength = 0;
+
+        Ops(String base, String target) {
+            this.base = base;
+            this.target = target;
+        }
+
+        void copy(int offset, int length) {
+            if (length == 0) return;
+            if (copyOffset >= 0 && copyOffset + copyLength == offset) {
+                copyLength += length;
+                return;
+            }
+            flushCopy();
+            copyOffset = offset;
+            copyLength = length;
+        }
+
+        void insert(int from, int to) {
+            // Grow the pending copy forwards over any head of the insert that continues it
+            if (copyOffset >= 0) {
+                while (from < to && copyOffset + copyLength < base.length()
+                        && base.charAt(copyOffset + copyLength) == target.charAt(from)) {
+                    copyLength++;
+                    from++;
+                }
+            }
+            if (from >= to) return;
+            flushCopy();
+            out.append('I').append(to - from).append('\n').append(target, from, to);
+        }
+
+        String encoded() {
+            flushCopy();
+            return out.toString();
+        }
+
+        private void flushCopy() {
+            if (copyOffset >= 0 && copyLength > 0) {
+                out.append('C').append(copyOffset).append(',').append(copyLength).append('\n');
+            }
+            copyOffset = -1;
+            copyLength = 0;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.writegy.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks background work that keeps failing on particular rows, so a scheduled pass does not
+ * retry them every time. A failed row waits {@code initialDelay}, doubling after each further
+ * failure up to {@code maxDelay}, and is skipped for good after {@code maxAttempts}. The record is
+ * tied to the row's version: once the row is written again it is tried as if it never failed.
+ */
+public class FailureBackoff {
+
+    private final int maxAttempts;
+    private final Duration initialDelay;
+    private final Duration maxDelay;
+    private final Map<Long, Failure> failures = new ConcurrentHashMap<>();
+
+    public FailureBackoff(int maxAttempts, Duration initialDelay, Duration maxDelay) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /** Whether the row may be tried at {@code now}. */
+    public boolean shouldTry(long id, long version, Instant now) {
+        Failure failure = failures.get(id);
+        if (failure == null || failure.version != version) {
+            return true;
+        }
+        return failure.attempts < maxAttempts && !now.isBefore(failure.retryAt);
+    }
+
+    /** Records a failed attempt; returns true when the row has now used up its attempts. */
+    public boolean recordFailure(long id, long version, Instant now) {
+        Failure previous = failures.get(id);
+        int attempts = previous != null && previous.version == version ? previous.attempts + 1 : 1;
+        Duration delay = initialDelay.multipliedBy(1L << Math.min(attempts - 1, 30));
+        if (delay.compareTo(maxDelay) > 0) {
+            delay = maxDelay;
+        }
+        failures.put(id, new Failure(version, attempts, now.plus(delay)));
+        return attempts >= maxAttempts;
+    }
+
+    public void recordSuccess(long id) {
+        failures.remove(id);
+    }
+
+    /** Forgets rows a full pass no longer saw, such as deleted ones. */
+    public void retainOnly(Collection<Long> ids) {
+        failures.keySet().retainAll(ids);
+    }
+
+    public int size() {
+        return failures.size();
+    }
+
+    private static final class Failure {
+        private final long version;
+        private final int attempts;
+        private final Instant retryAt;
+
+        private Failure(long version, int attempts, Instant retryAt) {
+            this.version = version;
+            this.attempts = attempts;
+            this.retryAt = retryAt;
+        }
+    }
+}
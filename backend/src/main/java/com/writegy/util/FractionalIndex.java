@@ -0,0 +1,90 @@
+package com.writegy.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lexicographic fractional ordering keys for siblings.
+ *
+ * A key is a base-62 fraction written as its digits after the point ("V" is 0.5, "0V" is 0.008...),
+ * so byte-wise string order equals numeric order and a key between any two others always exists.
+ * Keys never end in the zero digit, which keeps every value's representation unique.
+ * Columns holding these keys must compare byte-wise (COLLATE "C" on PostgreSQL).
+ */
+public final class FractionalIndex {
+
+    private static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int BASE = DIGITS.length();
+
+    private FractionalIndex() {}
+
+    /** Key after {@code a} (or the first key when {@code a} is null), preferring short keys. */
+    public static String after(String a) {
+        if (a == null || a.isEmpty()) return String.valueOf(DIGITS.charAt(BASE / 2));
+        // Bump the first digit that has room instead of bisecting, so repeated appends stay short
+        for (int i = 0; i < a.length(); i++) {
+            int digit = digit(a.charAt(i));
+            if (digit < BASE - 1) {
+                return a.substring(0, i) + DIGITS.charAt(digit + 1);
+            }
+        }
+        return a + DIGITS.charAt(BASE / 2);
+    }
+
+    /** Key strictly between {@code a} and {@code b}; either bound may be null for open-ended. */
+    public static String between(String a, String b) {
+        String lower = a != null ? a : "";
+        if (b != null && lower.compareTo(b) >= 0) {
+            throw new IllegalArgumentException("Ordering keys out of order: " + a + " >= " + b);
+        }
+        if (b == null && !lower.isEmpty()) return after(lower);
+        return midpoint(lower, b);
+    }
+
+    /** {@code count} evenly spread keys strictly between {@code a} and {@code b}, in ascending order. */
+    public static List<String> keysBetween(String a, String b, int count) {
+        List<String> keys = new ArrayList<>(count);
+        fill(a, b, count, keys);
+        return keys;
+    }
+
+    private static void fill(String a, String b, int count, List<String> out) {
+        if (count <= 0) return;
+        String mid = between(a, b);
+        int left = (count - 1) / 2;
+        fill(a, mid, left, out);
+        out.add(mid);
+        fill(mid, b, count - 1 - left, out);
+    }
+
+    // Classic midpoint over digit strings: a is "" for zero, b is null for one
+    private static String midpoint(String a, String b) {
+        if (b != null) {
+            int n = 0;
+            while (n < b.length() && (n < a.length() ? a.charAt(n) : DIGITS.charAt(0)) == b.charAt(n)) {
+                n++;
+            }
+            if (n > 0) {
+                return b.substring(0, n) + midpoint(a.length() > n ? a.substring(n) : "", b.substring(n));
+            }
+        }
+
+        int digitA = a.isEmpty() ? 0 : digit(a.charAt(0));
+        int digitB = b != null ? digit(b.charAt(0)) : BASE;
+        if (digitB - digitA > 1) {
+            return String.valueOf(DIGITS.charAt((digitA + digitB + 1) / 2));
+        }
+        if (b != null && b.length() > 1) {
+            return b.substring(0, 1);
+        }
+        return DIGITS.charAt(digitA) + midpoint(a.length() > 1 ? a.substring(1) : "", null);
+    }
+
+    private static int digit(char c) {
+        int digit = DIGITS.indexOf(c);
+        if (digit < 0) {
+            throw new IllegalArgumentException("Invalid ordering key character: " + c);
+        }
+        return digit;
+    }
+}
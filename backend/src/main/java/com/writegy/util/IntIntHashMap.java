@@ -0,0 +1,181 @@
+package com.writegy.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code int} keys to {@code int} values, the int-keyed
+ * sibling of {@link LongIntHashMap}, with counting and iteration on top.
+ *
+ * Two flat arrays with linear probing; removal uses backward-shift deletion, so no tombstones
+ * accumulate. {@link #addTo} drops an entry whose value reaches zero, which keeps maps of counts
+ * or count deltas free of empty entries.
+ */
+public class IntIntHashMap {
+
+    private static final int EMPTY = 0;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    // Key 0 doubles as the empty-slot marker, so it is stored out of band
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public interface Visitor {
+        void visit(int key, int value);
+    }
+
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    public IntIntHashMap(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(4, (int) Math.ceil(expectedSize / 0.75)));
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int get(int key, int defaultValue) {
+        if (key == EMPTY) return hasZeroKey ? zeroValue : defaultValue;
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == EMPTY) return hasZeroKey;
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public void put(int key, int value) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) size++;
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > (keys.length * 3) / 4) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /** Adds {@code delta} to the key's value, counting a missing key as 0; returns the new value. */
+    public int addTo(int key, int delta) {
+        int value = get(key, 0) + delta;
+        if (value == 0) {
+            remove(key);
+        } else {
+            put(key, value);
+        }
+        return value;
+    }
+
+    public void remove(int key) {
+        if (key == EMPTY) {
+            if (hasZeroKey) size--;
+            hasZeroKey = false;
+            return;
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                shiftBack(slot);
+                size--;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** Visits every entry in table order; the map must not be modified meanwhile. */
+    public void forEach(Visitor visitor) {
+        if (hasZeroKey) {
+            visitor.visit(EMPTY, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                visitor.visit(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /** Approximate heap footprint, used by callers that budget memory. */
+    public long estimatedBytes() {
+        return 32L + keys.length * (4L + 4L);
+    }
+
+    // Moves later entries of the probe chain into the freed slot so lookups never stop early
+    private void shiftBack(int freed) {
+        int slot = freed;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int key = keys[slot];
+            if (key == EMPTY) break;
+            int home = slot(key);
+            boolean movable = freed <= slot ? (home <= freed || home > slot) : (home <= freed && home > slot);
+            if (movable) {
+                keys[freed] = key;
+                values[freed] = values[slot];
+                freed = slot;
+            }
+        }
+        keys[freed] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int tableSizeFor(int n) {
+        int capacity = Integer.highestOneBit(n - 1) << 1;
+        return Math.max(capacity, 4);
+    }
+}
@@ -0,0 +1,154 @@
+package com.writegy.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The most frequent terms of a text with their counts, as two parallel sorted arrays.
+ *
+ * Terms are lower-cased runs of letters and digits of at least {@link #MIN_TERM_LENGTH} chars,
+ * skipping HTML tags, numbers and common English function words, identified by a 32-bit hash
+ * of the term rather than a dictionary. Only the {@link #MAX_TERMS} most frequent are kept, so a
+ * vector stays small however long the document is. The byte form is the term count followed by
+ * the terms and then the counts (capped at 65535) as unsigned shorts.
+ */
+public final class TermVector {
+
+    public static final int MAX_TERMS = 64;
+    public static final int MIN_TERM_LENGTH = 3;
+
+    private static final TermVector EMPTY = new TermVector(new int[0], new int[0]);
+
+    private static final int[] STOP_WORDS = hashes(
+            "the", "and", "for", "are", "but", "not", "you", "all", "any", "can", "had", "her", "was", "one",
+            "our", "out", "has", "have", "his", "how", "its", "may", "who", "did", "get", "him", "she", "too",
+            "use", "that", "with", "this", "from", "they", "will", "would", "there", "their", "what", "about",
+            "which", "when", "were", "been", "into", "than", "then", "them", "these", "some", "could", "other",
+            "more", "also", "your", "only", "over", "such", "just", "very", "each", "most", "where", "while",
+            "being", "those", "because", "should", "through", "does", "here", "both", "after", "before",
+            "nbsp", "amp", "quot");
+
+    private final int[] terms;
+    private final int[] counts;
+
+    private TermVector(int[] terms, int[] counts) {
+        this.terms = terms;
+        this.counts = counts;
+    }
+
+    public static TermVector of(String text) {
+        int[] hashes = new int[64];
+        int n = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                int close = text.indexOf('>', i);
+                i = close >= 0 ? close + 1 : length;
+                continue;
+            }
+            if (!Character.isLetterOrDigit(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean letters = false;
+            int hash = 0x811c9dc5;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                char ch = text.charAt(i);
+                letters |= Character.isLetter(ch);
+                hash = (hash ^ Character.toLowerCase(ch)) * 0x01000193;
+                i++;
+            }
+            if (!letters || i - start < MIN_TERM_LENGTH || Arrays.binarySearch(STOP_WORDS, hash) >= 0) {
+                continue;
+            }
+            if (n == hashes.length) {
+                hashes = Arrays.copyOf(hashes, n * 2);
+            }
+            hashes[n++] = hash;
+        }
+        if (n == 0) {
+            return EMPTY;
+        }
+
+        // Run-length count the sorted hashes, then keep the most frequent terms
+        Arrays.sort(hashes, 0, n);
+        long[] ranked = new long[n];
+        int unique = 0;
+        for (int start = 0; start < n; ) {
+            int end = start + 1;
+            while (end < n && hashes[end] == hashes[start]) end++;
+            ranked[unique++] = ((long) (end - start) << 32) | (hashes[start] & 0xffffffffL);
+            start = end;
+        }
+        Arrays.sort(ranked, 0, unique);
+        int kept = Math.min(unique, MAX_TERMS);
+        long[] top = new long[kept];
+        for (int k = 0; k < kept; k++) {
+            long entry = ranked[unique - 1 - k];
+            top[k] = ((long) (int) entry << 32) | (entry >>> 32);
+        }
+        // Stored in term order: the signed term in the high half sorts like the int itself
+        Arrays.sort(top);
+        int[] terms = new int[kept];
+        int[] counts = new int[kept];
+        for (int k = 0; k < kept; k++) {
+            terms[k] = (int) (top[k] >> 32);
+            counts[k] = (int) top[k];
+        }
+        return new TermVector(terms, counts);
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    public int term(int index) {
+        return terms[index];
+    }
+
+    public int count(int index) {
+        return counts[index];
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(2 + terms.length * 6);
+        buffer.putShort((short) terms.length);
+        for (int term : terms) {
+            buffer.putInt(term);
+        }
+        for (int count : counts) {
+            buffer.putShort((short) Math.min(count, 0xffff));
+        }
+        return buffer.array();
+    }
+
+    public static TermVector fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int size = buffer.getShort() & 0xffff;
+        int[] terms = new int[size];
+        int[] counts = new int[size];
+        for (int k = 0; k < size; k++) {
+            terms[k] = buffer.getInt();
+        }
+        for (int k = 0; k < size; k++) {
+            counts[k] = buffer.getShort() & 0xffff;
+        }
+        return new TermVector(terms, counts);
+    }
+
+    private static int[] hashes(String... words) {
+        int[] hashes = new int[words.length];
+        for (int w = 0; w < words.length; w++) {
+            int hash = 0x811c9dc5;
+            for (int i = 0; i < words[w].length(); i++) {
+                hash = (hash ^ words[w].charAt(i)) * 0x01000193;
+            }
+            hashes[w] = hash;
+        }
+        Arrays.sort(hashes);
+        return hashes;
+    }
+}
@@ -0,0 +1,271 @@
+package com.writegy.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Inverted index over one user's document term vectors, answering "which documents are most
+ * similar to this one" by TF-IDF cosine similarity.
+ *
+ * Each term has a posting list of document slots with the document's sublinear term weight
+ * (1 + ln tf), all in primitive arrays. IDF is ln(1 + N / df) over the live documents at query
+ * time, so it never goes stale as documents are added. A query scores only the postings of its
+ * {@code maxQueryTerms} highest-weighted terms and skips terms in more than
+ * {@code maxDocumentFrequency} of the documents, whose lists are the longest and add the least;
+ * the resulting dot products are exact for those terms and divided by full vector norms.
+ *
+ * Replaced and removed documents leave dead slots that queries skip; once they outnumber the
+ * live ones the index is rebuilt. Not thread-safe; callers serialize access.
+ */
+public class TermVectorIndex {
+
+    private int slots;
+    private int live;
+    private long[] documentIds;
+    // Null for dead slots
+    private int[][] documentTerms;
+    private float[][] documentWeights;
+    private final LongIntHashMap slotByDocument;
+
+    private final LongIntHashMap postingByTerm;
+    private int postingCount;
+    private int[][] postingSlots;
+    private float[][] postingWeights;
+    private int[] postingSizes;
+    private int[] documentFrequencies;
+    private long postingEntries;
+
+    public TermVectorIndex() {
+        this(16);
+    }
+
+    public TermVectorIndex(int expectedDocuments) {
+        int capacity = Math.max(4, expectedDocuments);
+        documentIds = new long[capacity];
+        documentTerms = new int[capacity][];
+        documentWeights = new float[capacity][];
+        slotByDocument = new LongIntHashMap(capacity);
+        postingByTerm = new LongIntHashMap(capacity * 4);
+        postingSlots = new int[capacity * 4][];
+        postingWeights = new float[capacity * 4][];
+        postingSizes = new int[capacity * 4];
+        documentFrequencies = new int[capacity * 4];
+    }
+
+    public int size() {
+        return live;
+    }
+
+    public boolean contains(long documentId) {
+        return slotByDocument.containsKey(documentId);
+    }
+
+    /** Adds or replaces a document's vector; an empty vector just removes it. */
+    public void put(long documentId, TermVector vector) {
+        remove(documentId);
+        if (vector.size() == 0) {
+            return;
+        }
+        if (slots == documentIds.length) {
+            int capacity = slots * 2;
+            documentIds = Arrays.copyOf(documentIds, capacity);
+            documentTerms = Arrays.copyOf(documentTerms, capacity);
+            documentWeights = Arrays.copyOf(documentWeights, capacity);
+        }
+        int slot = slots++;
+        int[] terms = new int[vector.size()];
+        float[] weights = new float[vector.size()];
+        for (int k = 0; k < terms.length; k++) {
+            terms[k] = vector.term(k);
+            weights[k] = (float) (1 + Math.log(vector.count(k)));
+            addPosting(terms[k], slot, weights[k]);
+        }
+        documentIds[slot] = documentId;
+        documentTerms[slot] = terms;
+        documentWeights[slot] = weights;
+        slotByDocument.put(documentId, slot);
+        live++;
+    }
+
+    public void remove(long documentId) {
+        int slot = slotByDocument.get(documentId, -1);
+        if (slot < 0) {
+            return;
+        }
+        for (int term : documentTerms[slot]) {
+            documentFrequencies[postingByTerm.get(term, -1)]--;
+        }
+        documentTerms[slot] = null;
+        documentWeights[slot] = null;
+        slotByDocument.remove(documentId);
+        live--;
+        if (slots > 64 && slots - live > live) {
+            compact();
+        }
+    }
+
+    /**
+     * Documents most similar to {@code query}, best first, leaving out {@code excludedDocumentId}.
+     * Documents sharing none of the scored terms are never returned.
+     */
+    public List<Match> query(TermVector query, long excludedDocumentId, int limit,
+                             int maxQueryTerms, double maxDocumentFrequency) {
+        if (query.size() == 0 || live == 0 || limit <= 0) {
+            return List.of();
+        }
+
+        // Query weights, and the terms worth walking the postings of
+        int n = query.size();
+        float[] weights = new float[n];
+        double queryNorm = 0;
+        long[] ranked = new long[n];
+        int candidates = 0;
+        for (int k = 0; k < n; k++) {
+            int posting = postingByTerm.get(query.term(k), -1);
+            int df = posting >= 0 ? documentFrequencies[posting] : 0;
+            weights[k] = (float) ((1 + Math.log(query.count(k))) * idf(df));
+            queryNorm += (double) weights[k] * weights[k];
+            boolean common = live >= 20 && df > maxDocumentFrequency * live;
+            if (df > 0 && !common) {
+                ranked[candidates++] = ((long) Float.floatToIntBits(weights[k]) << 32) | k;
+            }
+        }
+        if (candidates == 0 || queryNorm == 0) {
+            return List.of();
+        }
+        // Positive floats order like their bits
+        Arrays.sort(ranked, 0, candidates);
+
+        float[] dots = new float[slots];
+        int[] touched = new int[Math.min(slots, 1024)];
+        int touchedCount = 0;
+        for (int r = candidates - 1; r >= Math.max(0, candidates - maxQueryTerms); r--) {
+            int k = (int) ranked[r];
+            int posting = postingByTerm.get(query.term(k), -1);
+            double idf = idf(documentFrequencies[posting]);
+            int[] postingSlotList = postingSlots[posting];
+            float[] postingWeightList = postingWeights[posting];
+            for (int p = 0; p < postingSizes[posting]; p++) {
+                int slot = postingSlotList[p];
+                if (documentTerms[slot] == null || documentIds[slot] == excludedDocumentId) continue;
+                if (dots[slot] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = slot;
+                }
+                dots[slot] += (float) (weights[k] * postingWeightList[p] * idf);
+            }
+        }
+
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Match::getScore));
+        double queryLength = Math.sqrt(queryNorm);
+        for (int t = 0; t < touchedCount; t++) {
+            int slot = touched[t];
+            double score = dots[slot] / (queryLength * norm(slot));
+            if (best.size() < limit) {
+                best.add(new Match(documentIds[slot], score));
+            } else if (score > best.peek().getScore()) {
+                best.poll();
+                best.add(new Match(documentIds[slot], score));
+            }
+        }
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(Comparator.comparingDouble(Match::getScore).reversed().thenComparingLong(Match::getDocumentId));
+        return matches;
+    }
+
+    /** Approximate heap footprint, used by callers that budget memory. */
+    public long estimatedBytes() {
+        // Every posting entry is also held once in its document's term and weight arrays
+        return 64L + documentIds.length * 24L + postingSlots.length * 48L + postingEntries * 16L
+                + slotByDocument.estimatedBytes() + postingByTerm.estimatedBytes();
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (double) live / Math.max(1, documentFrequency));
+    }
+
+    private double norm(int slot) {
+        int[] terms = documentTerms[slot];
+        float[] weights = documentWeights[slot];
+        double sum = 0;
+        for (int k = 0; k < terms.length; k++) {
+            double weight = weights[k] * idf(documentFrequencies[postingByTerm.get(terms[k], -1)]);
+            sum += weight * weight;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private void addPosting(int term, int slot, float weight) {
+        int posting = postingByTerm.get(term, -1);
+        if (posting < 0) {
+            if (postingCount == postingSlots.length) {
+                int capacity = postingCount * 2;
+                postingSlots = Arrays.copyOf(postingSlots, capacity);
+                postingWeights = Arrays.copyOf(postingWeights, capacity);
+                postingSizes = Arrays.copyOf(postingSizes, capacity);
+                documentFrequencies = Arrays.copyOf(documentFrequencies, capacity);
+            }
+            posting = postingCount++;
+            postingSlots[posting] = new int[4];
+            postingWeights[posting] = new float[4];
+            postingByTerm.put(term, posting);
+        }
+        int size = postingSizes[posting];
+        if (size == postingSlots[posting].length) {
+            postingSlots[posting] = Arrays.copyOf(postingSlots[posting], size * 2);
+            postingWeights[posting] = Arrays.copyOf(postingWeights[posting], size * 2);
+        }
+        postingSlots[posting][size] = slot;
+        postingWeights[posting][size] = weight;
+        postingSizes[posting] = size + 1;
+        documentFrequencies[posting]++;
+        postingEntries++;
+    }
+
+    // Drops dead slots and their postings by re-adding the live documents to empty lists
+    private void compact() {
+        long[] ids = documentIds;
+        int[][] terms = documentTerms;
+        float[][] weights = documentWeights;
+        int oldSlots = slots;
+
+        slots = 0;
+        for (int p = 0; p < postingCount; p++) {
+            postingSizes[p] = 0;
+            documentFrequencies[p] = 0;
+        }
+        postingEntries = 0;
+        documentIds = new long[Math.max(4, live * 2)];
+        documentTerms = new int[documentIds.length][];
+        documentWeights = new float[documentIds.length][];
+        for (int slot = 0; slot < oldSlots; slot++) {
+            if (terms[slot] == null) continue;
+            int newSlot = slots++;
+            documentIds[newSlot] = ids[slot];
+            documentTerms[newSlot] = terms[slot];
+            documentWeights[newSlot] = weights[slot];
+            for (int k = 0; k < terms[slot].length; k++) {
+                addPosting(terms[slot][k], newSlot, weights[slot][k]);
+            }
+            slotByDocument.put(ids[slot], newSlot);
+        }
+    }
+
+    public static class Match {
+        private final long documentId;
+        private final double score;
+
+        public Match(long documentId, double score) {
+            this.documentId = documentId;
+            this.score = score;
+        }
+
+        public long getDocumentId() { return documentId; }
+        public double getScore() { return score; }
+    }
+}
@@ -0,0 +1,432 @@
+package com.writegy.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Readability and style counts of document text, in one pass and without a dictionary.
+ *
+ * The text is HTML as the editor produces it: inline tags are skipped without breaking a word,
+ * block tags and blank lines end a paragraph, and a paragraph always ends its last sentence.
+ * Sentences end at '.', '!' or '?' unless the dot follows an initial or a common abbreviation.
+ * Syllables are vowel groups less a silent final 'e'. The style checks are heuristics:
+ * <ul>
+ *   <li>passive voice is a form of "to be" followed, at most one adverb later, by a word ending
+ *       in "ed" or a common irregular participle;</li>
+ *   <li>adverbs are words of five or more letters ending in "ly", less a list of adjectives and
+ *       nouns that look like them;</li>
+ *   <li>a repeated word is the same word twice in a row with only whitespace between.</li>
+ * </ul>
+ *
+ * Since nothing carries across a paragraph end, counts of separate paragraphs simply add up. Text
+ * longer than the parallel threshold is cut at paragraph ends into pieces scanned by fork/join
+ * tasks and merged, with the same result as a single scan.
+ */
+public final class TextAnalyzer {
+
+    /** Sentence lengths are counted exactly up to this many words; longer ones share the last slot. */
+    public static final int MAX_TRACKED_SENTENCE = 100;
+    public static final int MAX_REPEATED_EXAMPLES = 10;
+
+    private static final long[] BE_FORMS = hashes("am", "is", "are", "was", "were", "be", "been", "being");
+    private static final long[] IRREGULAR_PARTICIPLES = hashes(
+            "known", "given", "taken", "written", "made", "done", "seen", "found", "shown", "built", "held",
+            "told", "sent", "paid", "sold", "brought", "bought", "thought", "caught", "taught", "left", "lost",
+            "kept", "put", "set", "cut", "hit", "read", "led", "fed", "met", "won", "hung", "struck", "driven",
+            "chosen", "spoken", "broken", "stolen", "frozen", "forgotten", "hidden", "eaten", "beaten", "born",
+            "worn", "torn", "sworn", "drawn", "grown", "thrown", "blown", "begun", "run", "sung", "drunk",
+            "understood", "meant", "felt", "heard", "said", "spent", "lent", "bent", "built", "dealt");
+    private static final long[] NOT_ADVERBS = hashes(
+            "family", "early", "daily", "weekly", "monthly", "yearly", "hourly", "likely", "unlikely", "lovely",
+            "friendly", "reply", "apply", "supply", "italy", "belly", "bully", "silly", "jolly", "lonely",
+            "costly", "elderly", "orderly", "lively", "curly", "hilly", "assembly", "anomaly", "butterfly",
+            "jelly", "rally", "tally", "homily", "melancholy", "ugly", "holy", "comply", "deadly", "womanly",
+            "manly", "chilly", "smelly", "wobbly", "bubbly", "burly", "surly", "kindly", "sly");
+    private static final long[] ABBREVIATIONS = hashes(
+            "mr", "mrs", "ms", "dr", "prof", "sr", "jr", "st", "vs", "eg", "ie", "inc", "ltd", "co", "fig",
+            "approx", "dept", "est", "gen", "gov", "mt", "rev", "sgt", "capt", "lt", "col");
+    private static final String[] BLOCK_TAGS = {
+            "p", "div", "h1", "h2", "h3", "h4", "h5", "h6", "li", "ul", "ol", "blockquote", "pre", "table",
+            "tr", "td", "th", "hr", "section", "article", "header", "footer"};
+
+    private TextAnalyzer() {}
+
+    public static Stats analyze(String text) {
+        return analyze(text, Integer.MAX_VALUE);
+    }
+
+    /** Scans pieces of about {@code parallelThreshold} chars in parallel once the text is longer than that. */
+    public static Stats analyze(String text, int parallelThreshold) {
+        int threshold = Math.max(1024, parallelThreshold);
+        if (text.length() <= threshold) {
+            return new Scanner(text).scan(0, text.length());
+        }
+        return ForkJoinPool.commonPool().invoke(new Task(text, 0, text.length(), threshold));
+    }
+
+    // Counts for a range of whole paragraphs
+    public static final class Stats {
+        private long words;
+        private long sentences;
+        private long paragraphs;
+        private long syllables;
+        private long adverbs;
+        private long passiveSentences;
+        private long repeatedWords;
+        private int longestSentence;
+        private final long[] sentenceLengths = new long[MAX_TRACKED_SENTENCE + 1];
+        private final List<String> repeatedExamples = new ArrayList<>();
+
+        public long getWords() { return words; }
+        public long getSentences() { return sentences; }
+        public long getParagraphs() { return paragraphs; }
+        public long getSyllables() { return syllables; }
+        public long getAdverbs() { return adverbs; }
+        public long getPassiveSentences() { return passiveSentences; }
+        public long getRepeatedWords() { return repeatedWords; }
+        public int getLongestSentence() { return longestSentence; }
+        public List<String> getRepeatedExamples() { return List.copyOf(repeatedExamples); }
+
+        /** Number of sentences of exactly {@code length} words, or of at least {@link #MAX_TRACKED_SENTENCE}. */
+        public long sentencesOfLength(int length) {
+            return sentenceLengths[Math.min(length, MAX_TRACKED_SENTENCE)];
+        }
+
+        /** Sentence length in words that {@code fraction} of the sentences are no longer than. */
+        public int sentenceLengthPercentile(double fraction) {
+            if (sentences == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * sentences));
+            long seen = 0;
+            for (int length = 1; length < sentenceLengths.length; length++) {
+                seen += sentenceLengths[length];
+                if (seen >= rank) {
+                    return length == MAX_TRACKED_SENTENCE ? longestSentence : length;
+                }
+            }
+            return longestSentence;
+        }
+
+        public double averageSentenceLength() {
+            return sentences == 0 ? 0 : (double) words / sentences;
+        }
+
+        public double fleschReadingEase() {
+            if (words == 0 || sentences == 0) {
+                return 0;
+            }
+            return 206.835 - 1.015 * words / sentences - 84.6 * syllables / words;
+        }
+
+        public double fleschKincaidGrade() {
+            if (words == 0 || sentences == 0) {
+                return 0;
+            }
+            return 0.39 * words / sentences + 11.8 * syllables / words - 15.59;
+        }
+
+        void merge(Stats other) {
+            words += other.words;
+            sentences += other.sentences;
+            paragraphs += other.paragraphs;
+            syllables += other.syllables;
+            adverbs += other.adverbs;
+            passiveSentences += other.passiveSentences;
+            repeatedWords += other.repeatedWords;
+            longestSentence = Math.max(longestSentence, other.longestSentence);
+            for (int length = 0; length < sentenceLengths.length; length++) {
+                sentenceLengths[length] += other.sentenceLengths[length];
+            }
+            for (String example : other.repeatedExamples) {
+                if (repeatedExamples.size() == MAX_REPEATED_EXAMPLES) break;
+                repeatedExamples.add(example);
+            }
+        }
+    }
+
+    private static final class Task extends RecursiveTask<Stats> {
+        private final String text;
+        private final int start;
+        private final int end;
+        private final int threshold;
+
+        private Task(String text, int start, int end, int threshold) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Stats compute() {
+            int split = end - start > threshold ? paragraphBoundary(text, start, end) : -1;
+            if (split < 0) {
+                return new Scanner(text).scan(start, end);
+            }
+            Task left = new Task(text, start, split, threshold);
+            left.fork();
+            Stats right = new Task(text, split, end, threshold).compute();
+            Stats stats = left.join();
+            stats.merge(right);
+            return stats;
+        }
+    }
+
+    // A paragraph end near the middle of the range, or -1 if there is none
+    static int paragraphBoundary(String text, int start, int end) {
+        int middle = start + (end - start) / 2;
+        for (int i = middle; i < end - 1; i++) {
+            int boundary = boundaryAt(text, i, end);
+            if (boundary > 0) return boundary;
+        }
+        for (int i = middle - 1; i > start; i--) {
+            int boundary = boundaryAt(text, i, end);
+            if (boundary > 0 && boundary < end) return boundary;
+        }
+        return -1;
+    }
+
+    // The position after a blank line or a closing block tag starting at i, if one does
+    private static int boundaryAt(String text, int i, int end) {
+        char c = text.charAt(i);
+        if (c == '\n' && text.charAt(i + 1) == '\n') {
+            return i + 2 < end ? i + 2 : -1;
+        }
+        if (c == '<' && text.charAt(i + 1) == '/') {
+            int close = text.indexOf('>', i);
+            if (close > 0 && close + 1 < end && isBlockTag(text, i + 2, close)) {
+                return close + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Whether the tag name starting at nameStart is a block element
+    private static boolean isBlockTag(String text, int nameStart, int tagEnd) {
+        int length = tagNameLength(text, nameStart, tagEnd);
+        for (String tag : BLOCK_TAGS) {
+            if (tag.length() == length && text.regionMatches(true, nameStart, tag, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int tagNameLength(String text, int nameStart, int tagEnd) {
+        int nameEnd = nameStart;
+        while (nameEnd < tagEnd && Character.isLetterOrDigit(text.charAt(nameEnd))) nameEnd++;
+        return nameEnd - nameStart;
+    }
+
+    private static final class Scanner {
+        private final String text;
+        private final Stats stats = new Stats();
+
+        // Current word; wordStart is -1 between words
+        private int wordStart = -1;
+        private int wordEnd;
+        private int wordLength;
+        private long wordHash;
+        private int vowelGroups;
+        private boolean lastWasVowel;
+        private boolean hasLetter;
+        private char last;
+        private char beforeLast;
+
+        // Current sentence and paragraph
+        private int sentenceWords;
+        private long paragraphWords;
+        private boolean sentencePassive;
+        private int passiveWindow;
+        private long previousWordHash;
+        private boolean onlySpaceSincePreviousWord;
+        private long previousWordCompleted = -1;
+
+        private Scanner(String text) {
+            this.text = text;
+        }
+
+        Stats scan(int start, int end) {
+            int newlines = 0;
+            int i = start;
+            while (i < end) {
+                char c = text.charAt(i);
+                if (c == '<') {
+                    int close = text.indexOf('>', i);
+                    if (close < 0 || close >= end) close = end - 1;
+                    int nameStart = text.charAt(i + Math.min(1, close - i)) == '/' ? i + 2 : i + 1;
+                    if (isBlockTag(text, nameStart, close)) {
+                        endParagraph();
+                    } else if (tagNameLength(text, nameStart, close) == 2 && text.regionMatches(true, nameStart, "br", 0, 2)) {
+                        endWord();
+                    }
+                    i = close + 1;
+                    continue;
+                }
+                if (c == '&') {
+                    int semicolon = text.indexOf(';', i);
+                    if (semicolon > i && semicolon - i <= 8 && semicolon < end) {
+                        endWord();
+                        onlySpaceSincePreviousWord &= text.startsWith("nbsp", i + 1);
+                        i = semicolon + 1;
+                        continue;
+                    }
+                }
+                if (Character.isLetterOrDigit(c)) {
+                    addChar(c, i);
+                    newlines = 0;
+                } else if ((c == '\'' || c == '\u2019' || c == '.') && wordStart >= 0 && i + 1 < end
+                        && Character.isLetterOrDigit(text.charAt(i + 1))) {
+                    // Contractions, decimals and dotted abbreviations stay one word
+                    wordLength++;
+                } else if (Character.isWhitespace(c)) {
+                    endWord();
+                    if (c == '\n' && ++newlines == 2) {
+                        endParagraph();
+                    }
+                } else {
+                    newlines = 0;
+                    boolean wasInWord = wordStart >= 0;
+                    endWord();
+                    onlySpaceSincePreviousWord = false;
+                    if (c == '!' || c == '?' || (c == '.' && !(wasInWord && isAbbreviation()))) {
+                        endSentence();
+                    }
+                }
+                i++;
+            }
+            endParagraph();
+            return stats;
+        }
+
+        private void addChar(char c, int index) {
+            if (wordStart < 0) {
+                wordStart = index;
+                wordLength = 0;
+                wordHash = 0xcbf29ce484222325L;
+                vowelGroups = 0;
+                lastWasVowel = false;
+                hasLetter = false;
+                last = 0;
+                beforeLast = 0;
+            }
+            char lower = Character.toLowerCase(c);
+            wordHash = (wordHash ^ lower) * 0x100000001b3L;
+            wordLength++;
+            hasLetter |= Character.isLetter(c);
+            boolean vowel = lower == 'a' || lower == 'e' || lower == 'i' || lower == 'o' || lower == 'u' || lower == 'y';
+            if (vowel && !lastWasVowel) vowelGroups++;
+            lastWasVowel = vowel;
+            beforeLast = last;
+            last = lower;
+            wordEnd = index + 1;
+        }
+
+        private void endWord() {
+            if (wordStart < 0) {
+                return;
+            }
+            stats.words++;
+            sentenceWords++;
+            paragraphWords++;
+            int syllables = vowelGroups;
+            if (last == 'e' && beforeLast != 'l' && syllables > 1) syllables--;
+            stats.syllables += Math.max(1, syllables);
+
+            boolean endsLy = wordLength >= 5 && beforeLast == 'l' && last == 'y';
+            boolean adverb = endsLy && !contains(NOT_ADVERBS, wordHash);
+            if (adverb) {
+                stats.adverbs++;
+            }
+
+            if (passiveWindow > 0 && !sentencePassive) {
+                boolean participle = (wordLength >= 4 && beforeLast == 'e' && last == 'd')
+                        || contains(IRREGULAR_PARTICIPLES, wordHash);
+                if (participle) {
+                    sentencePassive = true;
+                }
+                passiveWindow = participle || !adverb ? 0 : passiveWindow - 1;
+            }
+            if (contains(BE_FORMS, wordHash)) {
+                passiveWindow = 2;
+            }
+
+            if (hasLetter && onlySpaceSincePreviousWord && previousWordCompleted == stats.words - 1
+                    && wordHash == previousWordHash) {
+                stats.repeatedWords++;
+                if (stats.repeatedExamples.size() < MAX_REPEATED_EXAMPLES) {
+                    stats.repeatedExamples.add(lastWordText());
+                }
+            }
+            previousWordHash = wordHash;
+            previousWordCompleted = stats.words;
+            onlySpaceSincePreviousWord = true;
+            wordStart = -1;
+        }
+
+        // Only built for the few words reported; inline tags inside the word are dropped
+        private String lastWordText() {
+            StringBuilder word = new StringBuilder();
+            for (int i = wordStart; i < wordEnd; i++) {
+                char c = text.charAt(i);
+                if (c == '<') {
+                    i = text.indexOf('>', i);
+                } else {
+                    word.append(Character.toLowerCase(c));
+                }
+            }
+            return word.toString();
+        }
+
+        private boolean isAbbreviation() {
+            return (wordLength == 1 && hasLetter) || contains(ABBREVIATIONS, previousWordHash);
+        }
+
+        private void endSentence() {
+            if (sentenceWords == 0) {
+                return;
+            }
+            stats.sentences++;
+            stats.sentenceLengths[Math.min(sentenceWords, MAX_TRACKED_SENTENCE)]++;
+            stats.longestSentence = Math.max(stats.longestSentence, sentenceWords);
+            if (sentencePassive) {
+                stats.passiveSentences++;
+            }
+            sentenceWords = 0;
+            sentencePassive = false;
+            passiveWindow = 0;
+            onlySpaceSincePreviousWord = false;
+        }
+
+        private void endParagraph() {
+            endWord();
+            endSentence();
+            if (paragraphWords > 0) {
+                stats.paragraphs++;
+            }
+            paragraphWords = 0;
+            onlySpaceSincePreviousWord = false;
+        }
+    }
+
+    private static boolean contains(long[] sorted, long hash) {
+        return Arrays.binarySearch(sorted, hash) >= 0;
+    }
+
+    private static long[] hashes(String... words) {
+        long[] hashes = new long[words.length];
+        for (int w = 0; w < words.length; w++) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < words[w].length(); i++) {
+                hash = (hash ^ words[w].charAt(i)) * 0x100000001b3L;
+            }
+            hashes[w] = hash;
+        }
+        Arrays.sort(hashes);
+        return hashes;
+    }
+}
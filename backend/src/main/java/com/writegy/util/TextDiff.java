@@ -0,0 +1,331 @@
+package com.writegy.util;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Token-level diff of two texts with Myers' O(ND) algorithm in linear space.
+ *
+ * Texts are split into lines or words (runs of letters and digits, runs of whitespace, HTML tags
+ * and single other chars), and every distinct token gets an int id, so the search compares ints.
+ * The common head and tail are trimmed first, and the rest is split recursively at the middle
+ * snake found by searching forwards and backwards at once, which needs only two arrays over the
+ * diagonals. The result is a shortest edit script, emitted in text order as it is found.
+ *
+ * Each run is given a budget of search steps. Once it is spent, every region not yet diffed is
+ * reported as deleted and reinserted whole: the script still turns the base into the target,
+ * just less precisely, and {@link #run} returns false.
+ */
+public final class TextDiff {
+
+    public enum Granularity { LINE, WORD }
+
+    // Longest text handed to the sink in one insert call; longer inserts arrive as consecutive pieces
+    static final int INSERT_PIECE = 8192;
+
+    /**
+     * Receives the edit script: lengths are in chars of the base; inserted text is only valid during
+     * the call, and a long insert is split over several consecutive calls.
+     */
+    public interface Sink {
+        void equal(int length);
+        void delete(int length);
+        void insert(CharSequence text);
+    }
+
+    private final String base;
+    private final String target;
+    private final int[] baseStarts;
+    private final int[] targetStarts;
+    private final int[] a;
+    private final int[] b;
+    private final Coalescing sink;
+    private long budget;
+    private boolean complete = true;
+
+    private TextDiff(String base, String target, Granularity granularity, long maxCost, Sink sink) {
+        this.base = base;
+        this.target = target;
+        this.baseStarts = split(base, granularity);
+        this.targetStarts = split(target, granularity);
+        this.a = new int[baseStarts.length - 1];
+        this.b = new int[targetStarts.length - 1];
+        intern();
+        this.budget = maxCost;
+        this.sink = new Coalescing(sink, target);
+    }
+
+    /** Writes the edit script from {@code base} to {@code target}; false if the budget ran out. */
+    public static boolean run(String base, String target, Granularity granularity, long maxCost, Sink sink) {
+        TextDiff diff = new TextDiff(base, target, granularity, maxCost, sink);
+        diff.diff(0, diff.a.length, 0, diff.b.length);
+        diff.sink.flush();
+        return diff.complete;
+    }
+
+    private void diff(int aLo, int aHi, int bLo, int bHi) {
+        int prefix = 0;
+        while (aLo + prefix < aHi && bLo + prefix < bHi && a[aLo + prefix] == b[bLo + prefix]) prefix++;
+        int suffix = 0;
+        while (aHi - suffix > aLo + prefix && bHi - suffix > bLo + prefix && a[aHi - suffix - 1] == b[bHi - suffix - 1]) suffix++;
+        equal(aLo, aLo + prefix);
+        aLo += prefix;
+        bLo += prefix;
+        aHi -= suffix;
+        bHi -= suffix;
+
+        if (aLo == aHi) {
+            insert(bLo, bHi);
+        } else if (bLo == bHi) {
+            delete(aLo, aHi);
+        } else {
+            long split = budget > 0 ? middleSnake(aLo, aHi, bLo, bHi) : -1;
+            if (split < 0) {
+                complete &= budget > 0;
+                delete(aLo, aHi);
+                insert(bLo, bHi);
+            } else {
+                int x = (int) (split >>> 32);
+                int y = (int) split;
+                diff(aLo, x, bLo, y);
+                diff(x, aHi, y, bHi);
+            }
+        }
+        equal(aHi, aHi + suffix);
+    }
+
+    // A split point (x << 32 | y) on a shortest path, or -1 when the texts share nothing or the budget ran out
+    private long middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int kStart = 0, kEnd = 0, rStart = 0, rEnd = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            budget -= 2L * d + 1;
+            if (budget <= 0) {
+                return -1;
+            }
+            for (int k = -d + kStart; k <= d - kEnd; k += 2) {
+                int i = offset + k;
+                int x = k == -d || (k != d && forward[i - 1] < forward[i + 1]) ? forward[i + 1] : forward[i - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x++;
+                    y++;
+                }
+                forward[i] = x;
+                if (x > n) {
+                    kEnd += 2;
+                } else if (y > m) {
+                    kStart += 2;
+                } else if (odd) {
+                    int j = offset + delta - k;
+                    if (j >= 0 && j < length && backward[j] != -1 && x >= n - backward[j]) {
+                        return ((long) (aLo + x) << 32) | (bLo + y);
+                    }
+                }
+            }
+            for (int k = -d + rStart; k <= d - rEnd; k += 2) {
+                int j = offset + k;
+                int x = k == -d || (k != d && backward[j - 1] < backward[j + 1]) ? backward[j + 1] : backward[j - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aHi - x - 1] == b[bHi - y - 1]) {
+                    x++;
+                    y++;
+                }
+                backward[j] = x;
+                if (x > n) {
+                    rEnd += 2;
+                } else if (y > m) {
+                    rStart += 2;
+                } else if (!odd) {
+                    int i = offset + delta - k;
+                    if (i >= 0 && i < length && forward[i] != -1) {
+                        int forwardX = forward[i];
+                        int forwardY = offset + forwardX - i;
+                        if (forwardX >= n - x) {
+                            return ((long) (aLo + forwardX) << 32) | (bLo + forwardY);
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void equal(int from, int to) {
+        if (from < to) sink.equal(baseStarts[to] - baseStarts[from]);
+    }
+
+    private void delete(int from, int to) {
+        if (from < to) sink.delete(baseStarts[to] - baseStarts[from]);
+    }
+
+    private void insert(int from, int to) {
+        if (from < to) sink.insert(targetStarts[from], targetStarts[to]);
+    }
+
+    // Token ids: equal tokens share an id, checked against the text so a hash collision cannot merge two
+    private void intern() {
+        LongIntHashMap ids = new LongIntHashMap(Math.max(16, (a.length + b.length) / 2));
+        int[] firstStart = new int[16];
+        int[] firstEnd = new int[16];
+        boolean[] firstInBase = new boolean[16];
+        int next = 1;
+        for (int side = 0; side < 2; side++) {
+            String text = side == 0 ? base : target;
+            int[] starts = side == 0 ? baseStarts : targetStarts;
+            int[] out = side == 0 ? a : b;
+            for (int t = 0; t < out.length; t++) {
+                int start = starts[t];
+                int end = starts[t + 1];
+                long key = hash(text, start, end);
+                while (true) {
+                    int id = ids.get(key, 0);
+                    if (id == 0) {
+                        if (next == firstStart.length) {
+                            firstStart = Arrays.copyOf(firstStart, next * 2);
+                            firstEnd = Arrays.copyOf(firstEnd, next * 2);
+                            firstInBase = Arrays.copyOf(firstInBase, next * 2);
+                        }
+                        firstStart[next] = start;
+                        firstEnd[next] = end;
+                        firstInBase[next] = side == 0;
+                        ids.put(key, next);
+                        out[t] = next++;
+                        break;
+                    }
+                    String first = firstInBase[id] ? base : target;
+                    if (firstEnd[id] - firstStart[id] == end - start && text.regionMatches(start, first, firstStart[id], end - start)) {
+                        out[t] = id;
+                        break;
+                    }
+                    key = key * 0x9e3779b97f4a7c15L + 1;
+                }
+            }
+        }
+    }
+
+    private static long hash(String text, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // Token start offsets followed by the text length
+    static int[] split(String text, Granularity granularity) {
+        int[] starts = new int[Math.max(16, granularity == Granularity.LINE ? 64 : text.length() / 4)];
+        int count = 0;
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            if (count + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[count++] = i;
+            i = granularity == Granularity.LINE ? lineEnd(text, i) : wordEnd(text, i);
+        }
+        starts[count++] = n;
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static int lineEnd(String text, int i) {
+        int newline = text.indexOf('\n', i);
+        return newline >= 0 ? newline + 1 : text.length();
+    }
+
+    private static int wordEnd(String text, int i) {
+        int n = text.length();
+        char c = text.charAt(i);
+        if (c == '<') {
+            int close = text.indexOf('>', i);
+            if (close >= 0) return close + 1;
+        }
+        if (Character.isLetterOrDigit(c)) {
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) i++;
+            return i;
+        }
+        if (Character.isWhitespace(c)) {
+            while (i < n && Character.isWhitespace(text.charAt(i))) i++;
+            return i;
+        }
+        return i + 1;
+    }
+
+    // Merges consecutive operations, writing each run of changes as one delete followed by its
+    // inserted text. Inserts between two equal runs are adjacent in the target, so only their range
+    // is kept and the text is handed on as views of at most INSERT_PIECE chars, never copied whole.
+    private static final class Coalescing {
+        private final Sink out;
+        private final String target;
+        private int equal;
+        private int deleted;
+        private int insertStart;
+        private int insertEnd;
+
+        private Coalescing(Sink out, String target) {
+            this.out = out;
+            this.target = target;
+        }
+
+        void equal(int length) {
+            if (deleted > 0 || insertEnd > insertStart) {
+                flush();
+            }
+            equal += length;
+        }
+
+        void delete(int length) {
+            flushEqual();
+            deleted += length;
+        }
+
+        void insert(int start, int end) {
+            flushEqual();
+            if (insertEnd > insertStart && start != insertEnd) {
+                flush();
+            }
+            if (insertEnd == insertStart) {
+                insertStart = start;
+            }
+            insertEnd = end;
+        }
+
+        private void flushEqual() {
+            if (equal > 0) {
+                out.equal(equal);
+                equal = 0;
+            }
+        }
+
+        void flush() {
+            flushEqual();
+            if (deleted > 0) {
+                out.delete(deleted);
+                deleted = 0;
+            }
+            int start = insertStart;
+            while (start < insertEnd) {
+                int end = Math.min(start + INSERT_PIECE, insertEnd);
+                // Never split a surrogate pair across two pieces
+                if (end < insertEnd && Character.isHighSurrogate(target.charAt(end - 1))) end--;
+                out.insert(CharBuffer.wrap(target, start, end));
+                start = end;
+            }
+            insertStart = insertEnd = 0;
+        }
+    }
+}
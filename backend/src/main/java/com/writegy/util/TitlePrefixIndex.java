@@ -0,0 +1,168 @@
+package com.writegy.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact prefix index over one user's document titles.
+ *
+ * Every word start of a normalized title becomes one entry in a sorted String array,
+ * so "Q3 launch plan" is found by "q3", "lau" or "plan". Lookups are a binary search
+ * followed by a short forward scan; updates shift the parallel arrays in place.
+ */
+public class TitlePrefixIndex {
+
+    // Typeahead never needs more than this, and it keeps long titles from inflating the index
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private String[] keys = new String[0];
+    private long[] ids = new long[0];
+    private int size = 0;
+
+    // Original titles by document id, used for results and to locate entries on removal
+    private final Map<Long, String> titles = new HashMap<>();
+
+    public static TitlePrefixIndex build(Map<Long, String> titlesById) {
+        TitlePrefixIndex index = new TitlePrefixIndex();
+        List<String> keyList = new ArrayList<>();
+        List<Long> idList = new ArrayList<>();
+        for (Map.Entry<Long, String> entry : titlesById.entrySet()) {
+            if (entry.getValue() == null) continue;
+            index.titles.put(entry.getKey(), entry.getValue());
+            for (String key : keysFor(entry.getValue())) {
+                keyList.add(key);
+                idList.add(entry.getKey());
+            }
+        }
+
+        // Sort entries once instead of inserting them one by one
+        Integer[] order = new Integer[keyList.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> {
+            int cmp = keyList.get(a).compareTo(keyList.get(b));
+            return cmp != 0 ? cmp : Long.compare(idList.get(a), idList.get(b));
+        });
+
+        index.keys = new String[Math.max(order.length, 8)];
+        index.ids = new long[index.keys.length];
+        for (int i = 0; i < order.length; i++) {
+            index.keys[i] = keyList.get(order[i]);
+            index.ids[i] = idList.get(order[i]);
+        }
+        index.size = order.length;
+        return index;
+    }
+
+    public synchronized void put(long id, String title) {
+        String previous = titles.get(id);
+        if (previous != null) {
+            if (previous.equals(title)) return;
+            removeEntries(id, previous);
+        }
+        if (title == null) {
+            titles.remove(id);
+            return;
+        }
+        titles.put(id, title);
+        for (String key : keysFor(title)) {
+            insertEntry(key, id);
+        }
+    }
+
+    public synchronized void remove(long id) {
+        String previous = titles.remove(id);
+        if (previous != null) {
+            removeEntries(id, previous);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} document ids whose title has a word starting with {@code prefix},
+     * mapped to their titles in match order.
+     */
+    public synchronized Map<Long, String> search(String prefix, int limit) {
+        String normalized = truncate(normalize(prefix));
+        Map<Long, String> results = new LinkedHashMap<>();
+        if (normalized.isEmpty() || limit <= 0) return results;
+
+        int i = lowerBound(normalized, Long.MIN_VALUE);
+        while (i < size && keys[i].startsWith(normalized) && results.size() < limit) {
+            results.putIfAbsent(ids[i], titles.get(ids[i]));
+            i++;
+        }
+        return results;
+    }
+
+    public synchronized int size() {
+        return titles.size();
+    }
+
+    private void insertEntry(String key, long id) {
+        int pos = lowerBound(key, id);
+        if (size == keys.length) {
+            int capacity = Math.max(8, keys.length + (keys.length >> 1));
+            keys = Arrays.copyOf(keys, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        keys[pos] = key;
+        ids[pos] = id;
+        size++;
+    }
+
+    private void removeEntries(long id, String title) {
+        for (String key : keysFor(title)) {
+            int pos = lowerBound(key, id);
+            if (pos < size && keys[pos].equals(key) && ids[pos] == id) {
+                System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+                keys[size] = null;
+            }
+        }
+    }
+
+    // First position whose (key, id) is not less than the given pair
+    private int lowerBound(String key, long id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keys[mid].compareTo(key);
+            if (cmp < 0 || (cmp == 0 && ids[mid] < id)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Set<String> keysFor(String title) {
+        String normalized = normalize(title);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            if (normalized.charAt(i) != ' ' && (i == 0 || normalized.charAt(i - 1) == ' ')) {
+                keys.add(truncate(normalized.substring(i)));
+            }
+        }
+        return keys;
+    }
+
+    private static String truncate(String key) {
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private static String normalize(String value) {
+        if (value == null) return "";
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,246 @@
+package com.writegy.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Word counts of a text by interned term id, with the totals vocabulary insights are built from.
+ *
+ * Words are lower-cased runs of letters and digits, with inner apostrophes, of at most
+ * {@link #MAX_WORD_LENGTH} chars and containing a letter; HTML tags and entities are skipped.
+ * Which id a word has is up to the caller; the profile only counts ids.
+ *
+ * A saved document is updated from what changed: {@link #changedRegion} narrows the old and new
+ * text to the span between their common head and tail, and only the words there are uncounted
+ * and recounted. The byte form lists the entries in term order as varints: the entry count, then
+ * per entry the gap to the previous term id and the count.
+ */
+public final class VocabularyProfile {
+
+    public static final int MAX_WORD_LENGTH = 64;
+
+    private final IntIntHashMap counts;
+    private long totalWords;
+
+    public VocabularyProfile() {
+        this(new IntIntHashMap());
+    }
+
+    private VocabularyProfile(IntIntHashMap counts) {
+        this.counts = counts;
+    }
+
+    public long totalWords() {
+        return totalWords;
+    }
+
+    public int uniqueWords() {
+        return counts.size();
+    }
+
+    /** Type-token ratio: distinct words over all words. */
+    public double lexicalDiversity() {
+        return totalWords == 0 ? 0 : (double) counts.size() / totalWords;
+    }
+
+    public int count(int term) {
+        return counts.get(term, 0);
+    }
+
+    /** Adds signed per-term counts; a term whose count drops to zero or below is dropped. */
+    public void apply(IntIntHashMap delta) {
+        delta.forEach((term, change) -> {
+            int before = counts.get(term, 0);
+            int after = Math.max(0, before + change);
+            if (after == 0) {
+                counts.remove(term);
+            } else {
+                counts.put(term, after);
+            }
+            totalWords += after - before;
+        });
+    }
+
+    /** Calls {@code terms} with each term id counted at least once. */
+    public void forEachTerm(IntConsumer terms) {
+        counts.forEach((term, count) -> terms.accept(term));
+    }
+
+    /** Adds ({@code sign} 1) or takes away ({@code sign} -1) another profile's counts. */
+    public void add(VocabularyProfile other, int sign) {
+        apply(sign > 0 ? other.counts : negate(other.counts));
+    }
+
+    /** The {@code limit} most frequent terms not rejected by {@code skip}, most frequent first. */
+    public int[] top(int limit, IntPredicate skip) {
+        long[] ranked = new long[counts.size()];
+        int[] n = {0};
+        // Count in the high half; among equal counts the lower term id ranks first
+        counts.forEach((term, count) -> {
+            if (!skip.test(term)) {
+                ranked[n[0]++] = ((long) count << 32) | (Integer.MAX_VALUE - term);
+            }
+        });
+        Arrays.sort(ranked, 0, n[0]);
+        int kept = Math.min(limit, n[0]);
+        int[] terms = new int[kept];
+        for (int k = 0; k < kept; k++) {
+            terms[k] = Integer.MAX_VALUE - (int) ranked[n[0] - 1 - k];
+        }
+        return terms;
+    }
+
+    /** Approximate heap footprint, used by callers that budget memory. */
+    public long estimatedBytes() {
+        return 32L + counts.estimatedBytes();
+    }
+
+    public byte[] toBytes() {
+        long[] entries = new long[counts.size()];
+        int[] n = {0};
+        counts.forEach((term, count) -> entries[n[0]++] = ((long) term << 32) | (count & 0xffffffffL));
+        Arrays.sort(entries);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4 + entries.length * 3);
+        writeVarint(out, entries.length);
+        int previous = 0;
+        for (long entry : entries) {
+            int term = (int) (entry >>> 32);
+            writeVarint(out, term - previous);
+            writeVarint(out, (int) entry);
+            previous = term;
+        }
+        return out.toByteArray();
+    }
+
+    public static VocabularyProfile fromBytes(byte[] bytes) {
+        int[] position = {0};
+        int size = readVarint(bytes, position);
+        VocabularyProfile profile = new VocabularyProfile(new IntIntHashMap(size));
+        int term = 0;
+        for (int k = 0; k < size; k++) {
+            term += readVarint(bytes, position);
+            int count = readVarint(bytes, position);
+            profile.counts.put(term, count);
+            profile.totalWords += count;
+        }
+        return profile;
+    }
+
+    /** Calls {@code words} with each word of {@code text[start, end)}, lower-cased. */
+    public static void forEachWord(String text, int start, int end, Consumer<String> words) {
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                int close = text.indexOf('>', i);
+                i = close >= 0 && close < end ? close + 1 : end;
+                continue;
+            }
+            if (c == '&') {
+                int entityEnd = entityEnd(text, i, end);
+                if (entityEnd > 0) {
+                    i = entityEnd;
+                    continue;
+                }
+            }
+            if (!Character.isLetterOrDigit(c)) {
+                i++;
+                continue;
+            }
+            int wordStart = i;
+            boolean letters = false;
+            while (i < end) {
+                char ch = text.charAt(i);
+                if (Character.isLetterOrDigit(ch)) {
+                    letters |= Character.isLetter(ch);
+                } else if (!((ch == '\'' || ch == '\u2019') && i + 1 < end && Character.isLetter(text.charAt(i + 1)))) {
+                    break;
+                }
+                i++;
+            }
+            if (letters && i - wordStart <= MAX_WORD_LENGTH) {
+                words.accept(text.substring(wordStart, i).toLowerCase(Locale.ROOT).replace('\u2019', '\''));
+            }
+        }
+    }
+
+    /**
+     * The span where {@code before} and {@code after} differ, as {start, end in before, end in
+     * after}: both texts are equal before {@code start} and from the two ends on. The cuts fall on
+     * whitespace or a tag start outside any tag, so no word or tag straddles them and the words
+     * outside the span are the same in both texts.
+     */
+    public static int[] changedRegion(String before, String after) {
+        int beforeLength = before.length();
+        int afterLength = after.length();
+        int limit = Math.min(beforeLength, afterLength);
+        int prefix = 0;
+        while (prefix < limit && before.charAt(prefix) == after.charAt(prefix)) prefix++;
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && before.charAt(beforeLength - 1 - suffix) == after.charAt(afterLength - 1 - suffix)) suffix++;
+
+        // The texts agree before the prefix, but the char at a cut has to suit both
+        int start = prefix;
+        while (start > 0 && !(isCut(before, start) && isCut(after, start))) start--;
+        int beforeEnd = beforeLength - suffix;
+        int afterEnd = afterLength - suffix;
+        while (beforeEnd < beforeLength && !(isCut(before, beforeEnd) && isCut(after, afterEnd))) {
+            beforeEnd++;
+            afterEnd++;
+        }
+        return new int[]{start, Math.max(start, beforeEnd), Math.max(start, afterEnd)};
+    }
+
+    // The position after an entity such as &amp; or &#8217; starting at i, or -1
+    private static int entityEnd(String text, int i, int end) {
+        for (int j = i + 1; j < end && j <= i + 8; j++) {
+            char c = text.charAt(j);
+            if (c == ';') return j > i + 1 ? j + 1 : -1;
+            if (!Character.isLetterOrDigit(c) && c != '#') return -1;
+        }
+        return -1;
+    }
+
+    private static boolean isCut(String text, int i) {
+        if (i == 0 || i == text.length()) {
+            return true;
+        }
+        char c = text.charAt(i);
+        if (!Character.isWhitespace(c) && c != '<') {
+            return false;
+        }
+        return text.lastIndexOf('<', i - 1) <= text.lastIndexOf('>', i - 1);
+    }
+
+    private static IntIntHashMap negate(IntIntHashMap counts) {
+        IntIntHashMap negated = new IntIntHashMap(counts.size());
+        counts.forEach((term, count) -> negated.put(term, -count));
+        return negated;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] bytes, int[] position) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = bytes[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+-- Materialized path for the document tree: "/<root id>/.../<own id>/"
+ALTER TABLE documents ADD COLUMN path VARCHAR(2000);
+
+-- Backfill paths for the existing adjacency list
+WITH RECURSIVE tree AS (
+    SELECT id, '/' || id || '/' AS path
+    FROM documents
+    WHERE parent_id IS NULL
+    UNION ALL
+    SELECT d.id, t.path || d.id || '/'
+    FROM documents d
+    JOIN tree t ON d.parent_id = t.id
+)
+UPDATE documents d SET path = tree.path FROM tree WHERE d.id = tree.id;
+
+-- Prefix (LIKE 'abc%') lookups need pattern ops unless the database collation is C
+CREATE INDEX idx_documents_user_path ON documents(user_id, path varchar_pattern_ops);
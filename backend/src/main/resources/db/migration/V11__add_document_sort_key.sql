@@ -0,0 +1,14 @@
+-- Lexicographic fractional ordering keys for siblings (see FractionalIndex).
+-- COLLATE "C" makes comparison byte-wise, which the key format relies on.
+ALTER TABLE documents ADD COLUMN sort_key VARCHAR(255) COLLATE "C";
+
+-- Seed keys from the old integer order: fixed-width digits keep them sorted and distinct per parent
+UPDATE documents d SET sort_key = ranked.sort_key
+FROM (
+    SELECT id,
+           LPAD(ROW_NUMBER() OVER (PARTITION BY user_id, parent_id ORDER BY tree_order, id)::text, 9, '0') || 'V' AS sort_key
+    FROM documents
+) ranked
+WHERE d.id = ranked.id;
+
+CREATE INDEX idx_documents_user_parent_sort ON documents(user_id, parent_id, sort_key);
@@ -0,0 +1,17 @@
+-- Versions are stored as deltas against the previous version with periodic full snapshots.
+-- Existing rows hold full content, so they become snapshots.
+ALTER TABLE document_versions ADD COLUMN storage_type VARCHAR(10) NOT NULL DEFAULT 'SNAPSHOT';
+ALTER TABLE document_versions ADD COLUMN content_hash VARCHAR(64);
+ALTER TABLE document_versions ADD COLUMN content_length INTEGER;
+
+UPDATE document_versions
+SET content_hash = encode(sha256(convert_to(content, 'UTF8')), 'hex'),
+    content_length = LENGTH(content);
+
+ALTER TABLE document_versions ALTER COLUMN content_hash SET NOT NULL;
+ALTER TABLE document_versions ALTER COLUMN content_length SET NOT NULL;
+ALTER TABLE document_versions ALTER COLUMN storage_type DROP DEFAULT;
+
+-- Version numbers are per document; this also serves the chain lookup for reconstruction
+CREATE UNIQUE INDEX idx_document_versions_document_version ON document_versions(document_id, version_number);
+DROP INDEX IF EXISTS idx_document_versions_document_id;
@@ -0,0 +1,8 @@
+-- Optional compressed storage for document and version bodies (see CompressedContentConverter).
+-- A NULL content_compressed marks a legacy row whose text is still in content.
+ALTER TABLE documents ADD COLUMN content_compressed BYTEA;
+ALTER TABLE document_versions ADD COLUMN content_compressed BYTEA;
+
+-- Values are already compressed by the application; keep TOAST from compressing them again
+ALTER TABLE documents ALTER COLUMN content_compressed SET STORAGE EXTERNAL;
+ALTER TABLE document_versions ALTER COLUMN content_compressed SET STORAGE EXTERNAL;
@@ -0,0 +1,2 @@
+-- Optimistic locking for documents; the value is also exposed as the document's ETag
+ALTER TABLE documents ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,8 @@
+-- Switch documents and versions to pooled sequence ids (allocationSize 50) so inserts can be batched.
+-- Existing ids are kept; each sequence restarts just past the current maximum, and nextval then
+-- hands out the block (value - 50, value].
+ALTER SEQUENCE documents_id_seq INCREMENT BY 50;
+SELECT setval('documents_id_seq', COALESCE((SELECT MAX(id) FROM documents), 0) + 50, false);
+
+ALTER SEQUENCE document_versions_id_seq INCREMENT BY 50;
+SELECT setval('document_versions_id_seq', COALESCE((SELECT MAX(id) FROM document_versions), 0) + 50, false);
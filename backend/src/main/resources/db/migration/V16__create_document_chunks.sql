@@ -0,0 +1,15 @@
+-- Chunked storage for very large documents (see DocumentChunkService). A chunked document keeps an
+-- empty content column; its text is the concatenation of its chunks in chunk_key order.
+ALTER TABLE documents ADD COLUMN chunked BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE TABLE document_chunks (
+    document_id BIGINT NOT NULL REFERENCES documents(id) ON DELETE CASCADE,
+    -- Fractional key (see FractionalIndex); COLLATE "C" keeps the ordering byte-wise
+    chunk_key VARCHAR(255) COLLATE "C" NOT NULL,
+    content TEXT NOT NULL,
+    char_length INTEGER NOT NULL,
+    word_count INTEGER NOT NULL,
+    character_count INTEGER NOT NULL,
+    content_hash VARCHAR(64) NOT NULL,
+    PRIMARY KEY (document_id, chunk_key)
+);
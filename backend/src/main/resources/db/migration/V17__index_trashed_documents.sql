@@ -0,0 +1,3 @@
+-- Trash listing and the purge job only ever look at trashed rows; a partial index keeps them
+-- cheap without adding weight to the live rows.
+CREATE INDEX idx_documents_trashed ON documents(user_id, deleted_at) WHERE deleted_at IS NOT NULL;
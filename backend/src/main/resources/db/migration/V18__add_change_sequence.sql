@@ -0,0 +1,9 @@
+-- Change feed (see DocumentChangeSequence): a per-user counter on users, stamped onto every
+-- document write. purged_seq marks the last hard delete, which leaves no tombstone behind.
+ALTER TABLE users ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN purged_seq BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE documents ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0;
+
+-- Keyset reads of the feed: WHERE user_id = ? AND (change_seq, id) > (?, ?) ORDER BY change_seq, id
+CREATE INDEX idx_documents_user_change_seq ON documents(user_id, change_seq, id);
@@ -0,0 +1,3 @@
+-- Cold documents keep only metadata in the row; their text lives in object storage under this
+-- key (see DocumentTieringService). NULL means the content is in the row as usual.
+ALTER TABLE documents ADD COLUMN archive_key VARCHAR(255);
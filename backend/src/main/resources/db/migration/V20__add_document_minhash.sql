@@ -0,0 +1,14 @@
+-- Near-duplicate detection (see DocumentSimilarityService). minhash is the document's MinHash
+-- signature, NULL until computed; each signature is also filed under one bucket per LSH band.
+ALTER TABLE documents ADD COLUMN minhash BYTEA;
+
+CREATE INDEX idx_documents_minhash_pending ON documents(id) WHERE minhash IS NULL AND deleted_at IS NULL;
+
+CREATE TABLE document_minhash_buckets (
+    document_id BIGINT NOT NULL REFERENCES documents(id) ON DELETE CASCADE,
+    bucket BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    PRIMARY KEY (document_id, bucket)
+);
+
+CREATE INDEX idx_minhash_buckets_user_bucket ON document_minhash_buckets(user_id, bucket);
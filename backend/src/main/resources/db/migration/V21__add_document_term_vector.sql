@@ -0,0 +1,8 @@
+-- Related-document suggestions (see DocumentSimilarityService). term_vector holds the document's
+-- most frequent terms and their counts (see TermVector); like minhash it is NULL until computed,
+-- and the two are always computed together.
+ALTER TABLE documents ADD COLUMN term_vector BYTEA;
+
+DROP INDEX idx_documents_minhash_pending;
+CREATE INDEX idx_documents_fingerprint_pending ON documents(id)
+    WHERE (minhash IS NULL OR term_vector IS NULL) AND deleted_at IS NULL;
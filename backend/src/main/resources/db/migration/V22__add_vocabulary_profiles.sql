@@ -0,0 +1,11 @@
+-- Vocabulary profiles (see DocumentVocabularyService). Every distinct word is interned once in
+-- vocabulary_terms; documents.vocabulary holds the document's word counts by term id (see
+-- VocabularyProfile), NULL until computed.
+CREATE TABLE vocabulary_terms (
+    id SERIAL PRIMARY KEY,
+    term VARCHAR(64) NOT NULL UNIQUE
+);
+
+ALTER TABLE documents ADD COLUMN vocabulary BYTEA;
+
+CREATE INDEX idx_documents_vocabulary_pending ON documents(id) WHERE vocabulary IS NULL AND deleted_at IS NULL;
@@ -0,0 +1,9 @@
+-- Interned words belong to the user whose documents they came from, and go with the user. Existing
+-- profiles refer to terms shared across users, so they are cleared and rebuilt by the backfill
+-- (see DocumentVocabularyService).
+UPDATE documents SET vocabulary = NULL WHERE vocabulary IS NOT NULL;
+DELETE FROM vocabulary_terms;
+
+ALTER TABLE vocabulary_terms DROP CONSTRAINT vocabulary_terms_term_key;
+ALTER TABLE vocabulary_terms ADD COLUMN user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE;
+ALTER TABLE vocabulary_terms ADD CONSTRAINT vocabulary_terms_user_id_term_key UNIQUE (user_id, term);
@@ -0,0 +1,185 @@
+package com.writegy.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.writegy.model.entity.Document;
+import com.writegy.repository.DocumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Documents above the chunking threshold: created straight into chunks, edited in place by
+ * splices that are versioned like other saves, and moved back into the row when they shrink.
+ */
+@SpringBootTest(properties = "documents.chunking.threshold=8192")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class DocumentChunkingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository.deleteAll();
+    }
+
+    @Test
+    void testLargeDocumentIsCreatedChunked() throws Exception {
+        // Arrange
+        String content = prose(20_000);
+
+        // Act
+        long id = create(content);
+
+        // Assert
+        assertTrue(documentRepository.findById(id).orElseThrow().isChunked());
+        assertTrue(chunkCount(id) > 1);
+        mockMvc.perform(get("/api/documents/" + id)).andExpect(jsonPath("$.content").value(content));
+        mockMvc.perform(get("/api/documents/" + id + "/versions")).andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void testSpliceEditsInPlaceAndRecordsVersion() throws Exception {
+        // Arrange
+        String content = prose(20_000);
+        long id = create(content);
+        String eTag = mockMvc.perform(get("/api/documents/" + id))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        backdateVersions(id);
+
+        // Act
+        mockMvc.perform(patch("/api/documents/" + id + "/content")
+                        .header(HttpHeaders.IF_MATCH, eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"offset\":10000,\"deleteCount\":6,\"text\":\"SPLICED\"}"))
+                .andExpect(status().isOk());
+
+        // Assert
+        String expected = content.substring(0, 10_000) + "SPLICED" + content.substring(10_006);
+        mockMvc.perform(get("/api/documents/" + id)).andExpect(jsonPath("$.content").value(expected));
+        mockMvc.perform(get("/api/documents/" + id + "/versions")).andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(patch("/api/documents/" + id + "/content")
+                        .header(HttpHeaders.IF_MATCH, eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"offset\":0,\"deleteCount\":0,\"text\":\"stale \"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void testSpliceWritesBufferedAutosaveFirst() throws Exception {
+        // Arrange
+        String content = prose(20_000);
+        long id = create(content);
+        String autosaved = "AUTOSAVED " + content;
+        mockMvc.perform(put("/api/documents/" + id).param("autosave", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Chunked\",\"content\":\"" + autosaved + "\"}"))
+                .andExpect(status().isAccepted());
+
+        // Act: the offsets count the autosaved text
+        mockMvc.perform(patch("/api/documents/" + id + "/content")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"offset\":10,\"deleteCount\":0,\"text\":\"SPLICED \"}"))
+                .andExpect(status().isOk());
+
+        // Assert: the autosave is versioned; the splice right after it waits for the next version
+        String page = mockMvc.perform(get("/api/documents/" + id)).andReturn().getResponse().getContentAsString();
+        assertEquals("AUTOSAVED SPLICED " + content, JsonPath.read(page, "$.content"));
+        mockMvc.perform(get("/api/documents/" + id + "/versions")).andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void testSplicesWithinIntervalAreFoldedIntoOneVersion() throws Exception {
+        // Arrange
+        String content = prose(20_000);
+        long id = create(content);
+        backdateVersions(id);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(patch("/api/documents/" + id + "/content")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"offset\":0,\"deleteCount\":0,\"text\":\"" + i + "\"}"))
+                    .andExpect(status().isOk());
+        }
+
+        // Assert: only the first splice was versioned, and the next save records the rest
+        mockMvc.perform(get("/api/documents/" + id + "/versions")).andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(get("/api/documents/" + id + "/versions/2"))
+                .andExpect(jsonPath("$.content").value("0" + content));
+        mockMvc.perform(put("/api/documents/" + id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Chunked\",\"content\":\"43210" + content + "!\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/documents/" + id + "/versions/3"))
+                .andExpect(jsonPath("$.content").value("43210" + content + "!"));
+    }
+
+    @Test
+    void testShrunkDocumentMovesBackIntoRow() throws Exception {
+        // Arrange
+        long id = create(prose(20_000));
+
+        // Act
+        mockMvc.perform(put("/api/documents/" + id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Chunked\",\"content\":\"short again\"}"))
+                .andExpect(status().isOk());
+
+        // Assert
+        Document document = documentRepository.findById(id).orElseThrow();
+        assertFalse(document.isChunked());
+        assertEquals("short again", document.getContent());
+        assertEquals(0, chunkCount(id));
+        mockMvc.perform(get("/api/documents/" + id)).andExpect(jsonPath("$.content").value("short again"));
+    }
+
+    private long create(String content) throws Exception {
+        String page = mockMvc.perform(multipart("/api/documents").param("title", "Chunked").param("content", content))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return ((Number) JsonPath.read(page, "$.id")).longValue();
+    }
+
+    // Makes the next splice due for a version
+    private void backdateVersions(long id) {
+        jdbcTemplate.update("UPDATE document_versions SET created_at = ? WHERE document_id = ?",
+                LocalDateTime.now().minusHours(1), id);
+    }
+
+    private int chunkCount(long id) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM document_chunks WHERE document_id = ?", Integer.class, id);
+    }
+
+    private static String prose(int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < length; i++) {
+            text.append("word").append(i).append(' ');
+        }
+        return text.toString();
+    }
+}
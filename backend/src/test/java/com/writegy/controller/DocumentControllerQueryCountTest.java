@@ -0,0 +1,375 @@
+package com.writegy.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.writegy.model.entity.Document;
+import com.writegy.model.entity.User;
+import com.writegy.model.enums.DocumentStatus;
+import com.writegy.repository.DocumentRepository;
+import com.writegy.repository.UserRepository;
+import com.writegy.support.QueryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards against N+1 regressions: every document endpoint must issue a number of SQL statements
+ * that does not depend on how many documents are involved.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(QueryCounter.class)
+class DocumentControllerQueryCountTest {
+
+    // Unauthenticated requests run as the demo user
+    private static final String DEMO_EMAIL = "demo@example.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private QueryCounter queryCounter;
+
+    private User demoUser;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository.deleteAll();
+        demoUser = userRepository.findByEmail(DEMO_EMAIL).orElseGet(() -> {
+            User user = new User(DEMO_EMAIL, "demo");
+            user.setSupabaseId("demo-demo-example.com");
+            return userRepository.save(user);
+        });
+    }
+
+    @Test
+    void testListDocumentsIssuesFixedStatementCount() throws Exception {
+        // Arrange
+        createDocuments(null, 3);
+        long fewDocuments = countStatements(get("/api/documents"));
+
+        createDocuments(null, 30);
+        long manyDocuments = countStatements(get("/api/documents"));
+
+        // Assert
+        assertEquals(fewDocuments, manyDocuments);
+        assertTrue(manyDocuments <= 2, "list issued " + manyDocuments + " statements");
+    }
+
+    @Test
+    void testGetDocumentIsSingleStatement() throws Exception {
+        // Arrange
+        Document document = createDocument("Single", null);
+
+        // Act
+        long statements = countStatements(get("/api/documents/" + document.getId()));
+
+        // Assert
+        assertEquals(1, statements);
+    }
+
+    @Test
+    void testChildrenAndSubtreeIssueFixedStatementCount() throws Exception {
+        // Arrange
+        Document folder = createDocument("Folder", null);
+        createDocuments(folder, 3);
+        long fewChildren = countStatements(get("/api/documents/" + folder.getId() + "/children"));
+        long fewSubtree = countStatements(get("/api/documents/" + folder.getId() + "/subtree"));
+
+        createDocuments(folder, 25);
+        long manyChildren = countStatements(get("/api/documents/" + folder.getId() + "/children"));
+        long manySubtree = countStatements(get("/api/documents/" + folder.getId() + "/subtree"));
+
+        // Assert
+        assertEquals(fewChildren, manyChildren);
+        assertEquals(fewSubtree, manySubtree);
+        assertEquals(1, manyChildren);
+        assertTrue(manySubtree <= 2, "subtree issued " + manySubtree + " statements");
+    }
+
+    @Test
+    void testUpdateDocumentLoadsUserWithDocument() throws Exception {
+        // Arrange
+        Document document = createDocument("Before", null);
+
+        // Act
+        long statements = countStatements(put("/api/documents/" + document.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"After\",\"content\":\"some new words\"}"));
+
+        // Assert: the repeated update is a no-op, leaving the document load and the latest-version lookup
+        assertTrue(statements <= 2, "update issued " + statements + " statements");
+    }
+
+    @Test
+    void testConditionalGetIsAnsweredFromVersionLookup() throws Exception {
+        // Arrange
+        Document document = createDocument("Cached", null);
+        String eTag = mockMvc.perform(get("/api/documents/" + document.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        queryCounter.reset();
+
+        // Act
+        mockMvc.perform(get("/api/documents/" + document.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+
+        // Assert
+        assertEquals(1, queryCounter.getStatementCount());
+    }
+
+    @Test
+    void testStaleIfMatchIsRejected() throws Exception {
+        // Arrange
+        Document document = createDocument("Contested", null);
+        String staleETag = "\"" + document.getId() + "-" + (document.getVersion() - 1) + "\"";
+
+        // Act & Assert
+        mockMvc.perform(put("/api/documents/" + document.getId())
+                        .header(HttpHeaders.IF_MATCH, staleETag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Overwrite\",\"content\":\"lost update\"}"))
+                .andExpect(status().isPreconditionFailed());
+        assertEquals("Contested", documentRepository.findById(document.getId()).orElseThrow().getTitle());
+    }
+
+    @Test
+    void testUnknownDiffGranularityIsBadRequest() throws Exception {
+        // Arrange
+        Document document = createDocument("Diffed", null);
+
+        // Act & Assert: rejected before any version is read
+        queryCounter.reset();
+        mockMvc.perform(get("/api/documents/" + document.getId() + "/versions/diff")
+                        .param("from", "1").param("to", "2").param("granularity", "sentence"))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, queryCounter.getStatementCount());
+    }
+
+    @Test
+    void testMovingDocumentWithoutPathIsBadRequest() throws Exception {
+        // Arrange: a legacy row the hierarchy repair has not reached yet
+        Document folder = createDocument("Folder", null);
+        Document legacy = createDocument("Legacy", null);
+        legacy.setPath(null);
+        documentRepository.save(legacy);
+
+        // Act & Assert: every way of moving it is refused, as document or as parent
+        mockMvc.perform(post("/api/documents/" + legacy.getId() + "/parent").param("parentId", folder.getId().toString()))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/documents/" + folder.getId() + "/parent").param("parentId", legacy.getId().toString()))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(delete("/api/documents/" + legacy.getId() + "/parent"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/documents/moves").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"documentId\":" + legacy.getId() + ",\"parentId\":" + folder.getId() + "}]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/documents/moves").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"documentId\":" + folder.getId() + ",\"parentId\":" + legacy.getId() + "}]"))
+                .andExpect(status().isBadRequest());
+        assertNull(documentRepository.findById(legacy.getId()).orElseThrow().getParent());
+        assertNull(documentRepository.findById(folder.getId()).orElseThrow().getParent());
+    }
+
+    @Test
+    void testImportWritesNestedDocumentsAsDrafts() throws Exception {
+        // Arrange
+        String tree = "{\"documents\":[{\"title\":\"Book\",\"content\":\"intro\",\"children\":["
+                + "{\"title\":\"Chapter 1\",\"content\":\"one\"},{\"title\":\"Chapter 2\",\"content\":\"two\"}]}]}";
+
+        // Act
+        String result = mockMvc.perform(post("/api/documents/import").contentType(MediaType.APPLICATION_JSON).content(tree))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importedCount").value(3))
+                .andReturn().getResponse().getContentAsString();
+
+        // Assert
+        Long bookId = ((Number) JsonPath.read(result, "$.rootIds[0]")).longValue();
+        mockMvc.perform(get("/api/documents/" + bookId + "/children")).andExpect(jsonPath("$.length()").value(2));
+        assertTrue(documentRepository.findAll().stream().allMatch(document -> document.getStatus() == DocumentStatus.DRAFT));
+    }
+
+    @Test
+    void testDeleteTrashesSubtreeInFixedStatementsAndRestoreBringsItBack() throws Exception {
+        // Arrange
+        Document small = createDocument("Small", null);
+        createDocuments(small, 2);
+        Document root = createDocument("Root", null);
+        createDocuments(root, 10);
+
+        // Act
+        queryCounter.reset();
+        mockMvc.perform(delete("/api/documents/" + small.getId())).andExpect(status().isNoContent());
+        long smallStatements = queryCounter.getStatementCount();
+        queryCounter.reset();
+        mockMvc.perform(delete("/api/documents/" + root.getId())).andExpect(status().isNoContent());
+        long deleteStatements = queryCounter.getStatementCount();
+
+        // Assert: load, list the removed ids, bump change_seq (UPDATE and SELECT on H2), trash the subtree
+        assertEquals(smallStatements, deleteStatements);
+        assertTrue(deleteStatements <= 5, "delete issued " + deleteStatements + " statements");
+        assertEquals(14, documentRepository.count());
+        mockMvc.perform(get("/api/documents")).andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/api/documents/trash")).andExpect(jsonPath("$.length()").value(2));
+
+        mockMvc.perform(post("/api/documents/" + root.getId() + "/restore")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/documents")).andExpect(jsonPath("$.length()").value(11));
+        mockMvc.perform(get("/api/documents/trash"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(small.getId()));
+    }
+
+    @Test
+    void testChangeFeedReturnsOnlyWritesAfterTheCursor() throws Exception {
+        // Arrange
+        Document kept = createDocument("Kept", null);
+        Document edited = createDocument("Edited", null);
+        Document trashed = createDocument("Trashed", null);
+        String page = mockMvc.perform(get("/api/documents/changes"))
+                .andExpect(jsonPath("$.changes.length()").value(3))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = JsonPath.read(page, "$.cursor");
+
+        // Act
+        mockMvc.perform(put("/api/documents/" + edited.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Edited twice\",\"content\":\"new words\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/documents/" + trashed.getId())).andExpect(status().isNoContent());
+
+        // Assert: the untouched document stays out of the page and the trashed one is a tombstone
+        mockMvc.perform(get("/api/documents/changes").param("since", cursor))
+                .andExpect(jsonPath("$.reset").value(false))
+                .andExpect(jsonPath("$.changes.length()").value(2))
+                .andExpect(jsonPath("$.changes[0].id").value(edited.getId()))
+                .andExpect(jsonPath("$.changes[1].id").value(trashed.getId()))
+                .andExpect(jsonPath("$.changes[1].deletedAt").isNotEmpty());
+
+        mockMvc.perform(delete("/api/documents/" + kept.getId()).param("permanent", "true")).andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/documents/changes").param("since", cursor))
+                .andExpect(jsonPath("$.reset").value(true));
+    }
+
+    @Test
+    void testBatchRunsOperationsTogetherAndRollsBackOnFailure() throws Exception {
+        // Arrange
+        Document folder = createDocument("Folder", null);
+        createDocuments(folder, 3);
+        String operations = "[{\"op\":\"get\",\"id\":" + folder.getId() + "}," +
+                "{\"op\":\"children\",\"id\":" + folder.getId() + "}," +
+                "{\"op\":\"update\",\"id\":" + folder.getId() + ",\"title\":\"Renamed\",\"content\":\"new words\"}]";
+
+        // Act & Assert: every operation answers in one response and the update is kept
+        mockMvc.perform(post("/api/batch").contentType(MediaType.APPLICATION_JSON).content(operations))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed").value(true))
+                .andExpect(jsonPath("$.results[0].body.title").value("Folder"))
+                .andExpect(jsonPath("$.results[1].body.length()").value(3))
+                .andExpect(jsonPath("$.results[2].body.version").value(folder.getVersion() + 1));
+        assertEquals("Renamed", documentRepository.findById(folder.getId()).orElseThrow().getTitle());
+
+        // A failing operation rolls back the writes before it and skips the rest
+        String failing = "[{\"op\":\"update\",\"id\":" + folder.getId() + ",\"title\":\"Lost\",\"content\":\"lost\"}," +
+                "{\"op\":\"get\",\"id\":-1},{\"op\":\"get\",\"id\":" + folder.getId() + "}]";
+        mockMvc.perform(post("/api/batch").contentType(MediaType.APPLICATION_JSON).content(failing))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed").value(false))
+                .andExpect(jsonPath("$.results[1].status").value(404))
+                .andExpect(jsonPath("$.results[2].status").value(424));
+        assertEquals("Renamed", documentRepository.findById(folder.getId()).orElseThrow().getTitle());
+    }
+
+    @Test
+    void testBatchUpdatesSameDocumentTwice() throws Exception {
+        // Arrange
+        Document first = createDocument("First", null);
+        Document second = createDocument("Second", null);
+        String operations = "[{\"op\":\"update\",\"id\":" + first.getId() + ",\"title\":\"First\",\"content\":\"draft one\"}," +
+                "{\"op\":\"update\",\"id\":" + second.getId() + ",\"title\":\"Second\",\"content\":\"other words\"}," +
+                "{\"op\":\"update\",\"id\":" + first.getId() + ",\"title\":\"First\",\"content\":\"draft two\"}]";
+
+        // Act & Assert: the second update of a document sees the version the first one captured
+        mockMvc.perform(post("/api/batch").contentType(MediaType.APPLICATION_JSON).content(operations))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed").value(true))
+                .andExpect(jsonPath("$.results[2].body.version").value(first.getVersion() + 2));
+        mockMvc.perform(get("/api/documents/" + first.getId() + "/versions"))
+                .andExpect(jsonPath("$.length()").value(2));
+        assertEquals("draft two", documentRepository.findById(first.getId()).orElseThrow().getContent());
+    }
+
+    @Test
+    void testCloneCopiesSubtreeAsLastSibling() throws Exception {
+        // Arrange
+        Document folder = createDocument("Templates", null);
+        Document child = createDocument("Letter", folder);
+        createDocuments(child, 2);
+
+        // Act
+        String body = mockMvc.perform(post("/api/documents/" + folder.getId() + "/clone"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Templates (copy)"))
+                .andExpect(jsonPath("$.content").value("Lorem ipsum dolor sit amet"))
+                .andReturn().getResponse().getContentAsString();
+        Number cloneId = JsonPath.read(body, "$.id");
+
+        // Assert: same shape under new ids, original untouched
+        mockMvc.perform(get("/api/documents/" + cloneId + "/subtree"))
+                .andExpect(jsonPath("$.length()").value(4));
+        mockMvc.perform(get("/api/documents/" + cloneId + "/children"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].title").value("Letter"));
+        assertEquals(8, documentRepository.count());
+        mockMvc.perform(get("/api/documents/" + folder.getId() + "/subtree"))
+                .andExpect(jsonPath("$.length()").value(4));
+    }
+
+    // Runs the request once to warm per-user caches, then counts a second run
+    private long countStatements(RequestBuilder request) throws Exception {
+        mockMvc.perform(request).andExpect(status().isOk());
+        queryCounter.reset();
+        mockMvc.perform(request).andExpect(status().isOk());
+        return queryCounter.getStatementCount();
+    }
+
+    private void createDocuments(Document parent, int count) {
+        for (int i = 0; i < count; i++) {
+            createDocument("Document " + i, parent);
+        }
+    }
+
+    private Document createDocument(String title, Document parent) {
+        Document document = new Document(title, "Lorem ipsum dolor sit amet", demoUser);
+        document.setParent(parent);
+        document.setDepth(parent != null ? parent.getDepth() + 1 : 0);
+        document.setWordCount(5);
+        document.setCharacterCount(22);
+        document = documentRepository.save(document);
+        document.setPath((parent != null ? parent.getPath() : "/") + document.getId() + "/");
+        return documentRepository.save(document);
+    }
+}
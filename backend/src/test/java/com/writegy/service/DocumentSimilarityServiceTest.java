@@ -0,0 +1,131 @@
+package com.writegy.service;
+
+import com.writegy.dto.NearDuplicateDTO;
+import com.writegy.model.entity.Document;
+import com.writegy.model.entity.User;
+import com.writegy.repository.DocumentRepository;
+import com.writegy.repository.UserRepository;
+import com.writegy.util.MinHash;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DocumentSimilarityServiceTest {
+
+    @Autowired
+    private DocumentSimilarityService documentSimilarityService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository.deleteAll();
+        user = userRepository.findByEmail("similarity@example.com").orElseGet(() -> {
+            User created = new User("similarity@example.com", "similarity");
+            created.setSupabaseId("similarity-example.com");
+            return userRepository.save(created);
+        });
+    }
+
+    @Test
+    void testFindsNearDuplicatesFromBackfilledFingerprints() {
+        // Arrange: rows written without fingerprints, as imports and clones leave them
+        String text = prose(new Random(1), 400);
+        Document original = save("Original", text);
+        Document copy = save("Copy", text.replaceFirst("word", "changed"));
+        Document unrelated = save("Unrelated", prose(new Random(2), 400));
+
+        // Act
+        documentSimilarityService.backfill();
+        List<NearDuplicateDTO> matches = documentSimilarityService.findNearDuplicates(user.getId(), original.getId(), 10);
+
+        // Assert
+        assertEquals(List.of(copy.getId()), matches.stream().map(NearDuplicateDTO::getId).toList());
+        assertTrue(matches.get(0).getSimilarity() > 0.9);
+        assertEquals(bucketsOf(text), filedBuckets(original.getId()));
+        assertFalse(filedBuckets(unrelated.getId()).isEmpty());
+    }
+
+    @Test
+    void testSaveRefilesBuckets() {
+        // Arrange
+        String text = prose(new Random(3), 400);
+        Document original = save("Original", text);
+        Document copy = save("Copy", text);
+        documentSimilarityService.backfill();
+        assertEquals(1, documentSimilarityService.findNearDuplicates(user.getId(), original.getId(), 10).size());
+
+        // Act
+        String rewritten = prose(new Random(4), 400);
+        documentService.updateDocument(copy.getId(), "Copy", rewritten);
+
+        // Assert: the old buckets are gone, so the documents no longer find each other
+        assertEquals(bucketsOf(rewritten), filedBuckets(copy.getId()));
+        assertTrue(documentSimilarityService.findNearDuplicates(user.getId(), original.getId(), 10).isEmpty());
+    }
+
+    @Test
+    void testTrashedDocumentsAreNotReported() {
+        // Arrange
+        String text = prose(new Random(5), 400);
+        Document original = save("Original", text);
+        Document copy = save("Copy", text);
+        documentSimilarityService.backfill();
+
+        // Act
+        documentService.deleteDocument(copy.getId(), false);
+
+        // Assert
+        assertTrue(documentSimilarityService.findNearDuplicates(user.getId(), original.getId(), 10).isEmpty());
+    }
+
+    private Document save(String title, String content) {
+        Document document = new Document(title, content, user);
+        document = documentRepository.save(document);
+        document.setPath("/" + document.getId() + "/");
+        return documentRepository.save(document);
+    }
+
+    private Set<Long> filedBuckets(Long documentId) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT bucket FROM document_minhash_buckets WHERE document_id = ?", Long.class, documentId));
+    }
+
+    private static Set<Long> bucketsOf(String text) {
+        return Arrays.stream(MinHash.bandBuckets(MinHash.signature(text))).boxed().collect(Collectors.toSet());
+    }
+
+    private static String prose(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append("word").append(random.nextInt(2000)).append(' ');
+        }
+        return text.toString();
+    }
+}
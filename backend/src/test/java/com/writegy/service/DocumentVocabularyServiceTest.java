@@ -0,0 +1,180 @@
+package com.writegy.service;
+
+import com.writegy.dto.VocabularyProfileDTO;
+import com.writegy.dto.WordCountDTO;
+import com.writegy.model.entity.Document;
+import com.writegy.model.entity.User;
+import com.writegy.repository.DocumentRepository;
+import com.writegy.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DocumentVocabularyServiceTest {
+
+    @Autowired
+    private DocumentVocabularyService documentVocabularyService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentPurgeService documentPurgeService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private User other;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository.deleteAll();
+        // New users each time, since user profiles and interned words stay cached between tests
+        user = user("vocabulary");
+        other = user("vocabulary-other");
+    }
+
+    @Test
+    void testIncrementalSavesMatchRecount() {
+        // Arrange
+        Random random = new Random(1);
+        String text = prose(random, 300);
+        Document document = save(user, "Draft", text);
+        documentVocabularyService.backfill();
+
+        // Act: edits that start and end mid-word as well as on word boundaries
+        for (int i = 0; i < 50; i++) {
+            int start = random.nextInt(text.length() + 1);
+            int end = Math.min(text.length(), start + random.nextInt(40));
+            text = text.substring(0, start) + prose(random, random.nextInt(6)) + text.substring(end);
+            documentService.updateDocument(document.getId(), "Draft", text);
+        }
+
+        // Assert
+        Document recounted = save(user, "Recount", text);
+        documentVocabularyService.backfill();
+        assertProfilesEqual(documentVocabularyService.getDocumentProfile(user.getId(), recounted.getId(), 10000),
+                documentVocabularyService.getDocumentProfile(user.getId(), document.getId(), 10000));
+    }
+
+    @Test
+    void testCachedUserProfileIsPatchedOnSave() {
+        // Arrange
+        Document first = save(user, "First", "apple apple banana");
+        Document second = save(user, "Second", "cherry");
+        documentVocabularyService.backfill();
+        assertEquals(4, documentVocabularyService.getUserProfile(user.getId(), 100).getTotalWords());
+        // Hidden from a rebuild, so only a patched profile still counts it
+        jdbcTemplate.update("UPDATE documents SET vocabulary = NULL WHERE id = ?", second.getId());
+
+        // Act
+        documentService.updateDocument(first.getId(), "First", "apple banana banana durian");
+
+        // Assert
+        VocabularyProfileDTO profile = documentVocabularyService.getUserProfile(user.getId(), 100);
+        assertEquals(5, profile.getTotalWords());
+        assertEquals(Map.of("apple", 1, "banana", 2, "cherry", 1, "durian", 1), counts(profile));
+    }
+
+    @Test
+    void testCachedUserProfileAddsNewlyProfiledDocument() {
+        // Arrange
+        save(user, "First", "apple banana");
+        documentVocabularyService.backfill();
+        assertEquals(2, documentVocabularyService.getUserProfile(user.getId(), 100).getTotalWords());
+
+        // Act: profiled on first read, after the user profile was cached
+        Document added = save(user, "Added", "banana cherry");
+        documentVocabularyService.getDocumentProfile(user.getId(), added.getId(), 100);
+
+        // Assert
+        assertEquals(Map.of("apple", 1, "banana", 2, "cherry", 1),
+                counts(documentVocabularyService.getUserProfile(user.getId(), 100)));
+    }
+
+    @Test
+    void testTermsAreKeptPerUserAndPrunedWithTheirDocuments() {
+        // Arrange
+        Document kept = save(user, "Kept", "shared words");
+        Document deleted = save(user, "Deleted", "shared private");
+        Document trashed = save(user, "Trashed", "shared secret");
+        save(other, "Other", "shared private secret");
+        documentVocabularyService.backfill();
+        assertEquals(Set.of("shared", "words", "private", "secret"), terms(user));
+        assertEquals(Set.of("shared", "private", "secret"), terms(other));
+
+        // Act
+        documentService.deleteDocument(deleted.getId(), true);
+        documentService.deleteDocument(trashed.getId(), false);
+        Set<String> afterDelete = terms(user);
+        documentPurgeService.purgeTrashedBefore(LocalDateTime.now().plusDays(1));
+
+        // Assert: trashed documents keep their words until purged; other users are untouched
+        assertEquals(Set.of("shared", "words", "secret"), afterDelete);
+        assertEquals(Set.of("shared", "words"), terms(user));
+        assertEquals(Set.of("shared", "private", "secret"), terms(other));
+        assertEquals(Map.of("shared", 1, "words", 1),
+                counts(documentVocabularyService.getDocumentProfile(user.getId(), kept.getId(), 100)));
+    }
+
+    private User user(String name) {
+        String unique = name + "-" + UUID.randomUUID();
+        User created = new User(unique + "@example.com", name);
+        created.setSupabaseId(unique);
+        return userRepository.save(created);
+    }
+
+    private Document save(User owner, String title, String content) {
+        Document document = new Document(title, content, owner);
+        document = documentRepository.save(document);
+        document.setPath("/" + document.getId() + "/");
+        return documentRepository.save(document);
+    }
+
+    private Set<String> terms(User owner) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT term FROM vocabulary_terms WHERE user_id = ?", String.class, owner.getId()));
+    }
+
+    private static void assertProfilesEqual(VocabularyProfileDTO expected, VocabularyProfileDTO actual) {
+        assertEquals(expected.getTotalWords(), actual.getTotalWords());
+        assertEquals(expected.getUniqueWords(), actual.getUniqueWords());
+        assertEquals(counts(expected), counts(actual));
+    }
+
+    private static Map<String, Integer> counts(VocabularyProfileDTO profile) {
+        return profile.getTopWords().stream().collect(Collectors.toMap(WordCountDTO::getWord, WordCountDTO::getCount));
+    }
+
+    private static String prose(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        List<String> separators = List.of(" ", " ", ", ", ".\n");
+        for (int i = 0; i < words; i++) {
+            text.append("word").append(random.nextInt(200)).append(separators.get(random.nextInt(separators.size())));
+        }
+        return text.toString();
+    }
+}
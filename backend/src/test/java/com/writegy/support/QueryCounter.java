@@ -0,0 +1,112 @@
+package com.writegy.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Counts the SQL statements executed through the application's DataSource, whether Hibernate,
+ * JdbcTemplate or anything else issued them.
+ *
+ * Register it with {@code @Import(QueryCounter.class)}: it wraps the DataSource bean, and every
+ * execute call on a statement from it counts once (a JDBC batch is one). Counts are kept per
+ * thread, so scheduled jobs running meanwhile do not show up in a MockMvc request's count.
+ *
+ * Usage: {@code counter.reset()}, exercise an endpoint, then assert on the count.
+ */
+public class QueryCounter implements BeanPostProcessor {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)) {
+            return new CountingDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    public void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public long getStatementCount() {
+        return COUNT.get()[0];
+    }
+
+    public void assertStatementCount(long expected) {
+        assertEquals(expected, getStatementCount(), "Unexpected number of SQL statements");
+    }
+
+    public void assertStatementsAtMost(long max) {
+        long actual = getStatementCount();
+        assertTrue(actual <= max, "Expected at most " + max + " SQL statements but " + actual + " were executed");
+    }
+
+    private static final class CountingDataSource extends DelegatingDataSource {
+
+        private CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return counting(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return counting(super.getConnection(username, password));
+        }
+
+        private static Connection counting(Connection connection) {
+            return proxy(Connection.class, connection, (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                if (result instanceof CallableStatement statement) {
+                    return countingStatement(CallableStatement.class, statement);
+                }
+                if (result instanceof PreparedStatement statement) {
+                    return countingStatement(PreparedStatement.class, statement);
+                }
+                if (result instanceof Statement statement) {
+                    return countingStatement(Statement.class, statement);
+                }
+                return result;
+            });
+        }
+
+        private static <T extends Statement> T countingStatement(Class<T> type, T statement) {
+            return proxy(type, statement, (proxy, method, args) -> {
+                if (method.getName().startsWith("execute")) {
+                    COUNT.get()[0]++;
+                }
+                return invoke(statement, method, args);
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(QueryCounter.class.getClassLoader(), new Class<?>[]{type}, handler));
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
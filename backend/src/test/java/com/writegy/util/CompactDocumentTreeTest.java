@@ -0,0 +1,126 @@
+package com.writegy.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.writegy.dto.DocumentTreeRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactDocumentTreeTest {
+
+    @Test
+    void testPatchesMatchAFreshBuild() throws IOException {
+        // Arrange
+        Random random = new Random(42);
+        Map<Long, DocumentTreeRow> rows = new HashMap<>();
+        CompactDocumentTree tree = new CompactDocumentTree(List.of());
+        long nextId = 1;
+
+        // Act & Assert: random creates, moves, renames and subtree removals
+        for (int step = 0; step < 5000; step++) {
+            List<Long> ids = new ArrayList<>(rows.keySet());
+            int op = random.nextInt(10);
+            if (op < 4 || ids.isEmpty()) {
+                Long parentId = ids.isEmpty() || random.nextBoolean() ? null : ids.get(random.nextInt(ids.size()));
+                DocumentTreeRow row = row(nextId++, parentId, "Doc " + step, key(random), step);
+                rows.put(row.getId(), row);
+                tree.upsert(row);
+            } else if (op < 7) {
+                long id = ids.get(random.nextInt(ids.size()));
+                Long parentId = random.nextBoolean() ? null : ids.get(random.nextInt(ids.size()));
+                if (parentId != null && (parentId == id || isAncestor(rows, id, parentId))) continue;
+                DocumentTreeRow row = row(id, parentId, "Renamed " + step, key(random), step);
+                rows.put(id, row);
+                tree.upsert(row);
+            } else {
+                long id = ids.get(random.nextInt(ids.size()));
+                List<Long> subtree = new ArrayList<>();
+                for (Long candidate : ids) {
+                    if (candidate == id || isAncestor(rows, id, candidate)) subtree.add(candidate);
+                }
+                rows.keySet().removeAll(subtree);
+                tree.remove(id);
+            }
+
+            if (step % 50 == 0) {
+                assertEquals(json(rebuild(rows)), json(tree.snapshot()), "after step " + step);
+                assertEquals(rows.size(), tree.size());
+            }
+        }
+    }
+
+    @Test
+    void testPatchesAreIdempotent() throws IOException {
+        // Arrange
+        CompactDocumentTree tree = new CompactDocumentTree(List.of(row(1, null, "Root", "a", 0), row(2, 1L, "Child", "a", 0)));
+        String before = json(tree);
+
+        // Act
+        tree.upsert(row(2, 1L, "Child", "a", 0));
+        tree.move(2, 1L, "a");
+        tree.remove(3);
+
+        // Assert
+        assertEquals(before, json(tree));
+    }
+
+    @Test
+    void testSnapshotAnswersLookupsButRejectsPatches() {
+        // Arrange
+        CompactDocumentTree tree = new CompactDocumentTree(List.of(row(1, null, "Root", "a", 0), row(2, 1L, "Child", "a", 0),
+                row(3, null, "Other", "b", 0)));
+        tree.remove(3);
+
+        // Act
+        CompactDocumentTree snapshot = tree.snapshot();
+        tree.remove(2);
+
+        // Assert
+        assertTrue(snapshot.contains(1));
+        assertTrue(snapshot.contains(2));
+        assertFalse(snapshot.contains(3));
+        assertFalse(snapshot.contains(0));
+        assertFalse(tree.contains(2));
+        assertThrows(IllegalStateException.class, () -> snapshot.remove(1));
+    }
+
+    private static DocumentTreeRow row(long id, Long parentId, String title, String sortKey, int wordCount) {
+        return new DocumentTreeRow(id, parentId, title, sortKey, 0, wordCount, wordCount * 6);
+    }
+
+    private static String key(Random random) {
+        return String.valueOf((char) ('a' + random.nextInt(4)));
+    }
+
+    private static boolean isAncestor(Map<Long, DocumentTreeRow> rows, long ancestor, long id) {
+        for (Long parent = rows.get(id).getParentId(); parent != null; parent = rows.get(parent).getParentId()) {
+            if (parent == ancestor) return true;
+        }
+        return false;
+    }
+
+    // What the repository would return: the same rows ordered by (sortKey, id)
+    private static CompactDocumentTree rebuild(Map<Long, DocumentTreeRow> rows) {
+        List<DocumentTreeRow> ordered = new ArrayList<>(rows.values());
+        ordered.sort(Comparator.comparing(DocumentTreeRow::getSortKey).thenComparing(DocumentTreeRow::getId));
+        return new CompactDocumentTree(ordered);
+    }
+
+    private static String json(CompactDocumentTree tree) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(out)) {
+            tree.writeJson(generator);
+        }
+        return out.toString();
+    }
+}
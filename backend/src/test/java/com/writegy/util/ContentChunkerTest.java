@@ -0,0 +1,78 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentChunkerTest {
+
+    @Test
+    void testChunksRejoinAndEndAfterWhitespace() {
+        // Arrange
+        String text = randomProse(new Random(11), 2000);
+
+        // Act
+        List<String> chunks = ContentChunker.split(text);
+
+        // Assert
+        assertEquals(text, String.join("", chunks));
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            String chunk = chunks.get(i);
+            assertTrue(Character.isWhitespace(chunk.charAt(chunk.length() - 1)), "chunk " + i + " splits a word");
+            assertTrue(chunk.length() >= ContentChunker.MIN_CHUNK, "chunk " + i + " is too small");
+        }
+    }
+
+    @Test
+    void testLocalEditChangesOnlyNearbyChunks() {
+        // Arrange: single-line HTML, as the editor produces
+        Random random = new Random(5);
+        StringBuilder html = new StringBuilder("<p>");
+        for (int i = 0; i < 100_000; i++) {
+            html.append("word").append(random.nextInt(5000)).append(i % 40 == 39 ? "</p><p>" : " ");
+        }
+        String base = html.toString();
+        String edited = base.substring(0, 250_000) + "INSERTED " + base.substring(250_000);
+
+        // Act
+        List<String> before = ContentChunker.split(base);
+        List<String> after = ContentChunker.split(edited);
+
+        // Assert
+        int prefix = 0;
+        while (prefix < before.size() && before.get(prefix).equals(after.get(prefix))) prefix++;
+        int suffix = 0;
+        while (suffix < before.size() - prefix
+                && before.get(before.size() - 1 - suffix).equals(after.get(after.size() - 1 - suffix))) suffix++;
+        assertTrue(before.size() > 20);
+        assertTrue(before.size() - prefix - suffix <= 2, "rewrote " + (before.size() - prefix - suffix) + " chunks");
+    }
+
+    @Test
+    void testLongTextWithoutLineBreaksIsBounded() {
+        // Arrange
+        String text = "word ".repeat(20_000);
+
+        // Act
+        List<String> chunks = ContentChunker.split(text);
+
+        // Assert
+        assertEquals(text, String.join("", chunks));
+        assertTrue(chunks.stream().allMatch(chunk -> chunk.length() <= ContentChunker.MAX_CHUNK));
+    }
+
+    private static String randomProse(Random random, int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            int words = 5 + random.nextInt(100);
+            for (int w = 0; w < words; w++) {
+                text.append("word").append(random.nextInt(1000)).append(' ');
+            }
+            text.append(random.nextInt(3) == 0 ? "\n\n" : "\n");
+        }
+        return text.toString();
+    }
+}
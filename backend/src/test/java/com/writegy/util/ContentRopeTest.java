@@ -0,0 +1,54 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentRopeTest {
+
+    @Test
+    void testLocatesChunksByOffset() {
+        // Arrange
+        ContentRope rope = new ContentRope(List.of("a", "b", "c"), List.of(10, 5, 20));
+
+        // Act & Assert
+        assertEquals(35, rope.length());
+        assertEquals(15, rope.offsetOf(2));
+        assertEquals(0, rope.chunkAt(0));
+        assertEquals(0, rope.chunkAt(9));
+        assertEquals(1, rope.chunkAt(10));
+        assertEquals(2, rope.chunkAt(34));
+        assertEquals(2, rope.chunkAt(35), "the end of the text maps to the last chunk");
+        assertNull(rope.key(-1));
+        assertNull(rope.key(3));
+        assertThrows(IllegalArgumentException.class, () -> rope.chunkAt(36));
+    }
+
+    @Test
+    void testAffectedRangeCoversEditAndJoinsInsertAtBoundaryToPrecedingChunk() {
+        // Arrange
+        ContentRope rope = new ContentRope(List.of("a", "b", "c"), List.of(10, 5, 20));
+
+        // Act & Assert
+        assertArrayEquals(new int[]{0, 0}, rope.affectedRange(3, 4));
+        assertArrayEquals(new int[]{0, 2}, rope.affectedRange(8, 10));
+        assertArrayEquals(new int[]{0, 0}, rope.affectedRange(10, 0), "insert at a boundary joins the preceding chunk");
+        assertArrayEquals(new int[]{1, 1}, rope.affectedRange(11, 4));
+        assertArrayEquals(new int[]{0, 1}, rope.affectedRange(10, 5));
+        assertArrayEquals(new int[]{2, 2}, rope.affectedRange(35, 0), "append extends the last chunk");
+        assertThrows(IllegalArgumentException.class, () -> rope.affectedRange(30, 6));
+    }
+
+    @Test
+    void testEmptyRopeHasNoAffectedChunks() {
+        // Arrange
+        ContentRope rope = new ContentRope(List.of(), List.of());
+
+        // Act & Assert
+        assertEquals(0, rope.length());
+        assertEquals(-1, rope.chunkAt(0));
+        assertArrayEquals(new int[]{0, -1}, rope.affectedRange(0, 0));
+    }
+}
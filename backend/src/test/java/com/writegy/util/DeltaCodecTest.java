@@ -0,0 +1,88 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaCodecTest {
+
+    @Test
+    void testRandomEditsRoundTrip() {
+        // Arrange
+        Random random = new Random(7);
+
+        for (int run = 0; run < 2000; run++) {
+            String base = randomDocument(random);
+            StringBuilder edited = new StringBuilder(base);
+            for (int e = random.nextInt(4); e > 0 && edited.length() > 0; e--) {
+                int at = random.nextInt(edited.length());
+                if (random.nextBoolean()) {
+                    edited.insert(at, "inserted " + random.nextInt() + "\n");
+                } else {
+                    edited.delete(at, Math.min(edited.length(), at + random.nextInt(60)));
+                }
+            }
+            String target = edited.toString();
+
+            // Act
+            String delta = DeltaCodec.encode(base, target);
+
+            // Assert
+            assertEquals(target, DeltaCodec.decode(base, delta));
+        }
+    }
+
+    @Test
+    void testSmallEditToSingleLineContentIsCompact() {
+        // Arrange: rich-text content often arrives as one long line of HTML
+        String base = "<p>" + "word ".repeat(2000) + "</p>";
+        String target = base.substring(0, 5000) + "EDIT" + base.substring(5000);
+
+        // Act
+        String delta = DeltaCodec.encode(base, target);
+
+        // Assert
+        assertEquals(target, DeltaCodec.decode(base, delta));
+        assertTrue(delta.length() < 40, "delta was " + delta.length() + " chars");
+    }
+
+    @Test
+    void testMovedParagraphIsCopied() {
+        // Arrange
+        String first = "The first paragraph is long enough to be worth copying.\n";
+        String second = "The second paragraph is also long enough to be copied.\n";
+        String base = first + second;
+        String target = second + first;
+
+        // Act
+        String delta = DeltaCodec.encode(base, target);
+
+        // Assert
+        assertEquals(target, DeltaCodec.decode(base, delta));
+        assertFalse(delta.contains("paragraph"), "both paragraphs should be copies");
+    }
+
+    @Test
+    void testEmptyBaseAndTarget() {
+        assertEquals("abc", DeltaCodec.decode("", DeltaCodec.encode("", "abc")));
+        assertEquals("", DeltaCodec.decode("abc", DeltaCodec.encode("abc", "")));
+    }
+
+    @Test
+    void testCorruptDeltaIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> DeltaCodec.decode("short", "D1\nC0,100\n"));
+        assertThrows(IllegalArgumentException.class, () -> DeltaCodec.decode("short", "X9\n"));
+    }
+
+    private static String randomDocument(Random random) {
+        StringBuilder document = new StringBuilder();
+        int paragraphs = random.nextInt(30);
+        for (int i = 0; i < paragraphs; i++) {
+            document.append("Paragraph ").append(random.nextInt(15)).append(" lorem ipsum dolor sit amet\n");
+            if (random.nextInt(4) == 0) document.append('\n');
+        }
+        return document.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FailureBackoffTest {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void testDelaysDoubleUntilAttemptsAreUsedUp() {
+        // Arrange
+        FailureBackoff backoff = new FailureBackoff(3, Duration.ofMinutes(1), Duration.ofMinutes(90));
+
+        // Act & Assert
+        assertTrue(backoff.shouldTry(7, 1, START));
+        assertFalse(backoff.recordFailure(7, 1, START));
+        assertFalse(backoff.shouldTry(7, 1, START.plusSeconds(59)));
+        assertTrue(backoff.shouldTry(7, 1, START.plusSeconds(60)));
+
+        assertFalse(backoff.recordFailure(7, 1, START.plusSeconds(60)));
+        assertFalse(backoff.shouldTry(7, 1, START.plusSeconds(179)));
+        assertTrue(backoff.shouldTry(7, 1, START.plusSeconds(180)));
+
+        assertTrue(backoff.recordFailure(7, 1, START.plusSeconds(180)), "third failure uses up the attempts");
+        assertFalse(backoff.shouldTry(7, 1, START.plus(Duration.ofDays(30))));
+    }
+
+    @Test
+    void testNewVersionOrSuccessClearsRecord() {
+        // Arrange
+        FailureBackoff backoff = new FailureBackoff(1, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        backoff.recordFailure(7, 1, START);
+        backoff.recordFailure(8, 1, START);
+
+        // Act & Assert
+        assertFalse(backoff.shouldTry(7, 1, START.plus(Duration.ofDays(1))));
+        assertTrue(backoff.shouldTry(7, 2, START), "a saved document is tried again");
+        assertEquals(2, backoff.size());
+
+        backoff.recordSuccess(8);
+        assertTrue(backoff.shouldTry(8, 1, START));
+        backoff.retainOnly(List.of());
+        assertEquals(0, backoff.size());
+    }
+}
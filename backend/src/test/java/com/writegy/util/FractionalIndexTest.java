@@ -0,0 +1,78 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FractionalIndexTest {
+
+    @Test
+    void testBetweenIsStrictlyOrdered() {
+        // Arrange
+        Random random = new Random(42);
+        List<String> keys = new ArrayList<>();
+
+        // Act & Assert
+        for (int i = 0; i < 5000; i++) {
+            int position = random.nextInt(keys.size() + 1);
+            String lower = position > 0 ? keys.get(position - 1) : null;
+            String upper = position < keys.size() ? keys.get(position) : null;
+
+            String key = FractionalIndex.between(lower, upper);
+
+            if (lower != null) assertTrue(lower.compareTo(key) < 0, lower + " < " + key);
+            if (upper != null) assertTrue(key.compareTo(upper) < 0, key + " < " + upper);
+            assertFalse(key.endsWith("0"), "keys never end in the zero digit");
+            keys.add(position, key);
+        }
+    }
+
+    @Test
+    void testRepeatedAppendsStayShort() {
+        // Arrange
+        String key = null;
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            String next = FractionalIndex.after(key);
+            if (key != null) assertTrue(key.compareTo(next) < 0);
+            key = next;
+        }
+
+        // Assert
+        assertTrue(key.length() < 40, "1000 appends produced a key of length " + key.length());
+    }
+
+    @Test
+    void testKeysBetweenAreSortedAndCompact() {
+        // Act
+        List<String> keys = FractionalIndex.keysBetween(null, null, 3000);
+
+        // Assert
+        assertEquals(3000, keys.size());
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0);
+        }
+        assertTrue(keys.stream().allMatch(k -> k.length() <= 3));
+    }
+
+    @Test
+    void testBetweenWorksWithMigratedKeys() {
+        // Keys seeded by migration V11 are zero-padded row numbers followed by "V"
+        String first = "000000001V";
+        String second = "000000002V";
+
+        String middle = FractionalIndex.between(first, second);
+
+        assertTrue(first.compareTo(middle) < 0 && middle.compareTo(second) < 0);
+    }
+
+    @Test
+    void testOutOfOrderBoundsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> FractionalIndex.between("b", "a"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinHashTest {
+
+    @Test
+    void testSimilarityTracksSharedShingles() {
+        // Arrange: single-line HTML, as the editor produces
+        String draft = randomHtml(new Random(3), 3000);
+        String[] words = draft.split(" ");
+        for (int i = 0; i < words.length; i += 40) {
+            words[i] = "edited" + i;
+        }
+        String revised = String.join(" ", words);
+        String unrelated = randomHtml(new Random(4), 3000);
+
+        // Act
+        int[] signature = MinHash.signature(draft);
+        double nearDuplicate = MinHash.similarity(signature, MinHash.signature(revised));
+        double other = MinHash.similarity(signature, MinHash.signature(unrelated));
+
+        // Assert: every edited word breaks three shingles, so roughly 0.86 of them are shared
+        assertEquals(1.0, MinHash.similarity(signature, MinHash.signature(draft.toUpperCase())));
+        assertTrue(nearDuplicate > 0.7 && nearDuplicate < 0.97, "near duplicate scored " + nearDuplicate);
+        assertTrue(other < 0.1, "unrelated text scored " + other);
+        assertArrayEquals(signature, MinHash.fromBytes(MinHash.toBytes(signature)));
+    }
+
+    @Test
+    void testNearDuplicatesShareABucket() {
+        // Arrange
+        String draft = randomHtml(new Random(8), 2000);
+        int middle = draft.indexOf(' ', draft.length() / 2) + 1;
+        String revised = draft.substring(0, middle) + "inserted " + draft.substring(middle);
+
+        // Act
+        long[] a = MinHash.bandBuckets(MinHash.signature(draft));
+        long[] b = MinHash.bandBuckets(MinHash.signature(revised));
+
+        // Assert
+        int shared = 0;
+        for (int band = 0; band < MinHash.BANDS; band++) {
+            if (a[band] == b[band]) shared++;
+        }
+        assertTrue(shared > 0);
+        assertEquals(0, MinHash.signature("<p>two words</p>").length);
+        assertEquals(0, MinHash.bandBuckets(new int[0]).length);
+    }
+
+    private static String randomHtml(Random random, int words) {
+        StringBuilder html = new StringBuilder("<p>");
+        for (int i = 0; i < words; i++) {
+            html.append('w').append(random.nextInt(5000)).append(i % 30 == 29 ? "</p><p>" : " ");
+        }
+        return html.append("</p>").toString();
+    }
+}
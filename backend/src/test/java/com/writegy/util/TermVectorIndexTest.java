@@ -0,0 +1,109 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TermVectorIndexTest {
+
+    @Test
+    void testUnprunedQueriesMatchBruteForceCosine() {
+        // Arrange: documents on 20 topics, rewritten and removed at random
+        Random random = new Random(7);
+        Map<Long, TermVector> documents = new HashMap<>();
+        TermVectorIndex index = new TermVectorIndex();
+        for (int step = 0; step < 3000; step++) {
+            long id = 1 + random.nextInt(400);
+            if (random.nextInt(10) == 0) {
+                documents.remove(id);
+                index.remove(id);
+                continue;
+            }
+            TermVector vector = TermVector.of(topicText(random, random.nextInt(20)));
+            documents.put(id, vector);
+            index.put(id, vector);
+        }
+
+        // Act & Assert
+        assertEquals(documents.size(), index.size());
+        for (long id : new ArrayList<>(documents.keySet()).subList(0, 10)) {
+            List<TermVectorIndex.Match> matches = index.query(documents.get(id), id, 5, Integer.MAX_VALUE, 1.0);
+            List<Double> expected = bruteForce(documents, id);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(expected.get(i), matches.get(i).getScore(), 1e-4, "rank " + i + " for " + id);
+            }
+        }
+    }
+
+    @Test
+    void testTermVectorKeepsFrequentContentWords() {
+        // Act
+        TermVector vector = TermVector.of("<p>The <b>whale</b> and the whale and the sea, 1851.</p>");
+        TermVector copy = TermVector.fromBytes(vector.toBytes());
+
+        // Assert: stop words, numbers and markup are dropped
+        assertEquals(2, vector.size());
+        assertEquals(vector.size(), copy.size());
+        int total = 0;
+        for (int k = 0; k < copy.size(); k++) {
+            assertEquals(vector.term(k), copy.term(k));
+            total += copy.count(k);
+        }
+        assertEquals(3, total);
+    }
+
+    private static String topicText(Random random, int topic) {
+        StringBuilder text = new StringBuilder("<p>");
+        int words = 50 + random.nextInt(300);
+        for (int i = 0; i < words; i++) {
+            text.append(random.nextBoolean() ? "topic" + topic + "word" + random.nextInt(30) : "common" + random.nextInt(200))
+                    .append(' ');
+        }
+        return text.append("</p>").toString();
+    }
+
+    // Cosine similarity to every other document with the index's weighting, best first
+    private static List<Double> bruteForce(Map<Long, TermVector> documents, long queryId) {
+        Map<Integer, Integer> documentFrequencies = new HashMap<>();
+        for (TermVector vector : documents.values()) {
+            for (int k = 0; k < vector.size(); k++) {
+                documentFrequencies.merge(vector.term(k), 1, Integer::sum);
+            }
+        }
+        int n = documents.size();
+        Map<Integer, Double> query = weights(documents.get(queryId), documentFrequencies, n);
+        List<Double> scores = new ArrayList<>();
+        for (Map.Entry<Long, TermVector> entry : documents.entrySet()) {
+            if (entry.getKey() == queryId) continue;
+            Map<Integer, Double> other = weights(entry.getValue(), documentFrequencies, n);
+            double dot = 0;
+            for (Map.Entry<Integer, Double> term : query.entrySet()) {
+                dot += term.getValue() * other.getOrDefault(term.getKey(), 0.0);
+            }
+            if (dot > 0) scores.add(dot / (norm(query) * norm(other)));
+        }
+        scores.sort((a, b) -> Double.compare(b, a));
+        return scores;
+    }
+
+    private static Map<Integer, Double> weights(TermVector vector, Map<Integer, Integer> documentFrequencies, int n) {
+        Map<Integer, Double> weights = new HashMap<>();
+        for (int k = 0; k < vector.size(); k++) {
+            double idf = Math.log(1 + (double) n / documentFrequencies.get(vector.term(k)));
+            weights.put(vector.term(k), (1 + Math.log(vector.count(k))) * idf);
+        }
+        return weights;
+    }
+
+    private static double norm(Map<Integer, Double> weights) {
+        double sum = 0;
+        for (double weight : weights.values()) sum += weight * weight;
+        return Math.sqrt(sum);
+    }
+}
@@ -0,0 +1,75 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextAnalyzerTest {
+
+    @Test
+    void testCountsSentencesAndStyle() {
+        // Arrange
+        String html = "<h1>Release notes</h1>"
+                + "<p>The report was written by Dr. Smith in 2.5 days. It is <strong>very</strong> clearly "
+                + "the the best one!</p>"
+                + "<p>We quickly shipped it&nbsp;and the family was happy</p>";
+
+        // Act
+        TextAnalyzer.Stats stats = TextAnalyzer.analyze(html);
+
+        // Assert: "Dr." and "2.5" do not end a sentence, and the heading is a sentence of its own
+        assertEquals(29, stats.getWords());
+        assertEquals(4, stats.getSentences());
+        assertEquals(3, stats.getParagraphs());
+        assertEquals(1, stats.getPassiveSentences());
+        assertEquals(2, stats.getAdverbs());
+        assertEquals(1, stats.getRepeatedWords());
+        assertEquals(List.of("the"), stats.getRepeatedExamples());
+        assertEquals(1, stats.sentencesOfLength(2));
+        assertEquals(10, stats.getLongestSentence());
+        assertEquals(8, stats.sentenceLengthPercentile(0.5));
+    }
+
+    @Test
+    void testParallelScanMatchesSingleScan() {
+        // Arrange
+        Random random = new Random(21);
+        String[] words = {"the", "report", "was", "reviewed", "slowly", "and", "it", "is", "known", "Dr.",
+                "<em>really</em>", "quickly", "document", "writers", "read", "e.g.", "3.14", "it's"};
+        StringBuilder html = new StringBuilder();
+        while (html.length() < 400_000) {
+            html.append(random.nextBoolean() ? "<p>" : "\n\n");
+            int sentences = 1 + random.nextInt(4);
+            for (int s = 0; s < sentences; s++) {
+                int length = 1 + random.nextInt(30);
+                for (int w = 0; w < length; w++) {
+                    html.append(words[random.nextInt(words.length)]).append(' ');
+                }
+                html.append(random.nextInt(5) == 0 ? "? " : ". ");
+            }
+            html.append(html.charAt(html.length() - 1) == ' ' && random.nextBoolean() ? "</p>" : "");
+        }
+        String text = html.toString();
+
+        // Act
+        TextAnalyzer.Stats single = TextAnalyzer.analyze(text);
+        TextAnalyzer.Stats parallel = TextAnalyzer.analyze(text, 4096);
+
+        // Assert
+        assertEquals(single.getWords(), parallel.getWords());
+        assertEquals(single.getSentences(), parallel.getSentences());
+        assertEquals(single.getParagraphs(), parallel.getParagraphs());
+        assertEquals(single.getSyllables(), parallel.getSyllables());
+        assertEquals(single.getAdverbs(), parallel.getAdverbs());
+        assertEquals(single.getPassiveSentences(), parallel.getPassiveSentences());
+        assertEquals(single.getRepeatedWords(), parallel.getRepeatedWords());
+        assertEquals(single.getRepeatedExamples(), parallel.getRepeatedExamples());
+        for (int length = 1; length <= TextAnalyzer.MAX_TRACKED_SENTENCE; length++) {
+            assertEquals(single.sentencesOfLength(length), parallel.sentencesOfLength(length));
+        }
+        assertTrue(single.getPassiveSentences() > 0 && single.getRepeatedWords() > 0);
+    }
+}
@@ -0,0 +1,154 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextDiffTest {
+
+    @Test
+    void testScriptIsShortestAndRebuildsTarget() {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            // Arrange: small alphabets, so there are many competing alignments
+            String base = randomLines(random, random.nextInt(30));
+            String target = mutate(random, base);
+
+            // Act
+            Replay replay = new Replay(base);
+            boolean complete = TextDiff.run(base, target, TextDiff.Granularity.LINE, Long.MAX_VALUE, replay);
+
+            // Assert
+            assertTrue(complete);
+            assertEquals(target, replay.result.toString());
+            assertEquals(base.length(), replay.position);
+            String[] a = base.isEmpty() ? new String[0] : base.split("(?<=\n)");
+            String[] b = target.isEmpty() ? new String[0] : target.split("(?<=\n)");
+            assertEquals(a.length + b.length - 2 * lcs(a, b), replay.editedTokens(), "round " + round);
+        }
+    }
+
+    @Test
+    void testWordDiffAndBudgetCutoff() {
+        // Arrange
+        String base = "<p>The quick brown fox jumps over the lazy dog.</p>";
+        String target = "<p>The quick red fox leaps over the lazy dog!</p>";
+        Random random = new Random(5);
+        String large = randomLines(random, 4000);
+        String rewritten = randomLines(random, 4000);
+
+        // Act
+        Replay words = new Replay(base);
+        boolean wordsComplete = TextDiff.run(base, target, TextDiff.Granularity.WORD, Long.MAX_VALUE, words);
+        Replay cut = new Replay(large);
+        boolean cutComplete = TextDiff.run(large, rewritten, TextDiff.Granularity.LINE, 1000, cut);
+
+        // Assert: only the changed words are touched, and a cut-off script is still valid
+        assertTrue(wordsComplete);
+        assertEquals(target, words.result.toString());
+        assertEquals("-brown+red-jumps+leaps-.+!", words.changes.toString());
+        assertFalse(cutComplete);
+        assertEquals(rewritten, cut.result.toString());
+    }
+
+    @Test
+    void testLongInsertArrivesInPiecesWithoutSplittingSurrogates() {
+        // Arrange: an emoji straddles the first piece boundary
+        String inserted = "x".repeat(TextDiff.INSERT_PIECE - 1) + "\uD83D\uDE00" + "y".repeat(TextDiff.INSERT_PIECE * 2);
+        String base = "start\nend\n";
+        String target = "start\n" + inserted + "\nend\n";
+        List<Integer> pieces = new ArrayList<>();
+        Replay replay = new Replay(base) {
+            @Override
+            public void insert(CharSequence text) {
+                pieces.add(text.length());
+                assertFalse(Character.isHighSurrogate(text.charAt(text.length() - 1)), "piece ends inside a surrogate pair");
+                super.insert(text);
+            }
+        };
+
+        // Act
+        boolean complete = TextDiff.run(base, target, TextDiff.Granularity.LINE, Long.MAX_VALUE, replay);
+
+        // Assert
+        assertTrue(complete);
+        assertEquals(target, replay.result.toString());
+        assertEquals(List.of(TextDiff.INSERT_PIECE - 1, TextDiff.INSERT_PIECE, TextDiff.INSERT_PIECE, 3), pieces);
+    }
+
+    private static String randomLines(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("line ").append(random.nextInt(6)).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String mutate(Random random, String base) {
+        StringBuilder text = new StringBuilder();
+        for (String line : base.split("(?<=\n)")) {
+            int roll = random.nextInt(10);
+            if (roll == 0) continue;
+            if (roll == 1) text.append("new ").append(random.nextInt(6)).append('\n');
+            text.append(line);
+        }
+        return text.toString();
+    }
+
+    private static int lcs(String[] a, String[] b) {
+        int[][] table = new int[a.length + 1][b.length + 1];
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++) {
+                table[i][j] = a[i - 1].equals(b[j - 1])
+                        ? table[i - 1][j - 1] + 1
+                        : Math.max(table[i - 1][j], table[i][j - 1]);
+            }
+        }
+        return table[a.length][b.length];
+    }
+
+    // Applies the script to the base, counting deleted and inserted lines
+    private static class Replay implements TextDiff.Sink {
+        private final String base;
+        private final StringBuilder result = new StringBuilder();
+        private final StringBuilder changes = new StringBuilder();
+        private int position;
+        private int edited;
+
+        private Replay(String base) {
+            this.base = base;
+        }
+
+        @Override
+        public void equal(int length) {
+            result.append(base, position, position + length);
+            position += length;
+        }
+
+        @Override
+        public void delete(int length) {
+            changes.append('-').append(base, position, position + length);
+            edited += lines(base.substring(position, position + length));
+            position += length;
+        }
+
+        @Override
+        public void insert(CharSequence text) {
+            changes.append('+').append(text);
+            edited += lines(text.toString());
+            result.append(text);
+        }
+
+        private int editedTokens() {
+            return edited;
+        }
+
+        private static int lines(String text) {
+            return (int) text.chars().filter(c -> c == '\n').count();
+        }
+    }
+}
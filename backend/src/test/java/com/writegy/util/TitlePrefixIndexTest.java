@@ -0,0 +1,79 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TitlePrefixIndexTest {
+
+    @Test
+    void testFindsEveryWordStart() {
+        // Arrange
+        Map<Long, String> titles = new LinkedHashMap<>();
+        titles.put(1L, "Q3 launch plan");
+        titles.put(2L, "Launch retro");
+        titles.put(3L, "Planning   notes");
+        TitlePrefixIndex index = TitlePrefixIndex.build(titles);
+
+        // Act & Assert
+        assertEquals(List.of(1L, 2L), List.copyOf(index.search("LAU", 10).keySet()));
+        assertEquals(List.of(1L, 3L), List.copyOf(index.search("plan", 10).keySet()));
+        assertEquals(List.of(3L), List.copyOf(index.search("planning no", 10).keySet()));
+        assertEquals("Q3 launch plan", index.search("q3", 10).get(1L));
+        assertTrue(index.search("aunch", 10).isEmpty(), "only word starts match");
+        assertTrue(index.search("  ", 10).isEmpty());
+        assertEquals(1, index.search("l", 1).size());
+    }
+
+    @Test
+    void testPutAndRemoveKeepIndexInSync() {
+        // Arrange
+        TitlePrefixIndex index = TitlePrefixIndex.build(Map.of(1L, "Draft"));
+
+        // Act
+        index.put(2L, "Draft two");
+        index.put(1L, "Final copy");
+        index.remove(2L);
+        index.remove(99L);
+
+        // Assert
+        assertEquals(1, index.size());
+        assertTrue(index.search("draft", 10).isEmpty());
+        assertEquals(Map.of(1L, "Final copy"), index.search("cop", 10));
+    }
+
+    @Test
+    void testIncrementalUpdatesMatchRebuild() {
+        // Arrange
+        String[] words = {"alpha", "beta", "gamma", "delta", "alphabet", "be", "gam"};
+        Random random = new Random(7);
+        Map<Long, String> expected = new HashMap<>();
+        TitlePrefixIndex index = TitlePrefixIndex.build(Map.of());
+
+        // Act
+        for (int i = 0; i < 2000; i++) {
+            long id = random.nextInt(50);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                String title = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                index.put(id, title);
+                expected.put(id, title);
+            }
+        }
+
+        // Assert
+        TitlePrefixIndex rebuilt = TitlePrefixIndex.build(expected);
+        assertEquals(expected.size(), index.size());
+        for (String prefix : new String[]{"a", "alpha", "alphab", "b", "be", "g", "gamma", "d", "x"}) {
+            assertEquals(rebuilt.search(prefix, 100), index.search(prefix, 100), prefix);
+        }
+    }
+}
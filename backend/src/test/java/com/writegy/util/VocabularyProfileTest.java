@@ -0,0 +1,84 @@
+package com.writegy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VocabularyProfileTest {
+
+    @Test
+    void testIncrementalUpdateMatchesRecount() {
+        Random random = new Random(17);
+        Map<String, Integer> ids = new HashMap<>();
+        String text = randomHtml(random, 300);
+        VocabularyProfile profile = count(text, 0, text.length(), ids);
+        for (int edit = 0; edit < 500; edit++) {
+            // Arrange: insert, delete or replace a few chars, often inside a word or a tag
+            int at = random.nextInt(text.length() + 1);
+            int removed = Math.min(text.length() - at, random.nextInt(12));
+            String inserted = randomHtml(random, random.nextInt(3)).substring(0, random.nextInt(8));
+            String edited = text.substring(0, at) + inserted + text.substring(at + removed);
+
+            // Act
+            int[] region = VocabularyProfile.changedRegion(text, edited);
+            IntIntHashMap delta = new IntIntHashMap();
+            String before = text;
+            VocabularyProfile.forEachWord(before, region[0], region[1], word -> delta.addTo(id(word, ids), -1));
+            VocabularyProfile.forEachWord(edited, region[0], region[2], word -> delta.addTo(id(word, ids), 1));
+            profile.apply(delta);
+            profile = VocabularyProfile.fromBytes(profile.toBytes());
+            text = edited;
+
+            // Assert
+            VocabularyProfile recount = count(text, 0, text.length(), ids);
+            assertEquals(recount.totalWords(), profile.totalWords(), "edit " + edit);
+            assertEquals(recount.uniqueWords(), profile.uniqueWords(), "edit " + edit);
+            for (int id : ids.values()) {
+                assertEquals(recount.count(id), profile.count(id), "edit " + edit);
+            }
+        }
+    }
+
+    @Test
+    void testWordsAndTopTerms() {
+        // Arrange
+        String html = "<p class=\"lead\">It&rsquo;s the cat&#8217;s toy. The CAT's toy &amp; the dog's.</p>";
+        Map<String, Integer> ids = new HashMap<>();
+
+        // Act
+        VocabularyProfile profile = count(html, 0, html.length(), ids);
+        int[] top = profile.top(2, term -> term == ids.get("the"));
+
+        // Assert: an entity apostrophe splits a word, a typed one does not
+        assertEquals(Set.of("it", "s", "the", "cat", "toy", "cat's", "dog's"), ids.keySet());
+        assertEquals(11, profile.totalWords());
+        assertEquals(7, profile.uniqueWords());
+        assertArrayEquals(new int[]{ids.get("s"), ids.get("toy")}, top);
+    }
+
+    private static VocabularyProfile count(String text, int start, int end, Map<String, Integer> ids) {
+        IntIntHashMap counts = new IntIntHashMap();
+        VocabularyProfile.forEachWord(text, start, end, word -> counts.addTo(id(word, ids), 1));
+        VocabularyProfile profile = new VocabularyProfile();
+        profile.apply(counts);
+        return profile;
+    }
+
+    private static int id(String word, Map<String, Integer> ids) {
+        return ids.computeIfAbsent(word, w -> ids.size() + 1);
+    }
+
+    private static String randomHtml(Random random, int words) {
+        String[] vocabulary = {"alpha", "beta", "gamma", "it's", "delta", "<b>", "</b>", "&amp;", "<a href=\"x y\">", "</a>"};
+        StringBuilder html = new StringBuilder("<p>");
+        for (int i = 0; i < words; i++) {
+            html.append(vocabulary[random.nextInt(vocabulary.length)]).append(random.nextInt(4) == 0 ? "" : " ");
+        }
+        return html.append("</p>").toString();
+    }
+}
@@ -88,7 +88,7 @@ const FlowchartNode = ({ document, position, onEdit, onDelete, onToggle, isExpan
         {/* Body */}
         <div className="p-3">
           <p className="text-xs text-gray-500 line-clamp-3 min-h-[2.5rem]">
-            {document.content || "No content"}
+            {document.content || (document.contentOmitted ? "Open to view content" : "No content")}
           </p>
           
           <div className="mt-2 flex items-center justify-between text-xs text-gray-400">
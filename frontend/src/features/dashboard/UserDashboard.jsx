@@ -78,7 +78,8 @@ const UserDashboard = () => {
 
   const filteredDocuments = documents.filter(doc =>
     doc.title.toLowerCase().includes(searchTerm.toLowerCase()) ||
-    doc.content.toLowerCase().includes(searchTerm.toLowerCase())
+    // Chunked and archived documents are listed without their text; only titles can match
+    (doc.content || '').toLowerCase().includes(searchTerm.toLowerCase())
   )
 
   const formatDate = (dateString) => {
@@ -95,9 +95,40 @@ export const documentApi = {
   // Update document
   updateDocument: (id, data) => api.put(`/api/documents/${id}`, data),
 
-  // Delete document
+  // Autosave: acknowledged immediately, written back by the server's periodic flush
+  autosaveDocument: (id, data) => api.put(`/api/documents/${id}`, data, { params: { autosave: true } }),
+
+  // Delete document (moves it and its subtree to the trash)
   deleteDocument: (id) => api.delete(`/api/documents/${id}`),
 
+  // Trash: list, restore, or delete for good
+  getTrash: () => api.get('/api/documents/trash'),
+  restoreDocument: (id) => api.post(`/api/documents/${id}/restore`),
+  deleteDocumentPermanently: (id) => api.delete(`/api/documents/${id}`, { params: { permanent: true } }),
+
+  // Changes since a cursor from a previous call; on reset, reload the document list
+  getChanges: (since, limit = 100) => api.get('/api/documents/changes', { params: { since, limit } }),
+
+  // Several document operations in one round-trip, e.g. [{ op: 'get', id }, { op: 'children', id }]
+  batch: (operations) => api.post('/api/batch', operations),
+
+  // Documents whose content nearly duplicates this one, best match first
+  getNearDuplicates: (id, limit = 10) => api.get(`/api/documents/${id}/near-duplicates`, { params: { limit } }),
+
+  // Documents on similar subjects, closest first
+  getRelatedDocuments: (id, limit = 10) => api.get(`/api/documents/${id}/related`, { params: { limit } }),
+
+  // Readability and style figures of the current content, computed on the server without the LLM
+  getDocumentAnalytics: (id) => api.get(`/api/documents/${id}/analytics`),
+
+  // Word frequency profile of one document, or of all the user's documents
+  getDocumentVocabulary: (id, limit = 20) => api.get(`/api/documents/${id}/vocabulary`, { params: { limit } }),
+  getVocabulary: (limit = 20) => api.get('/api/documents/vocabulary', { params: { limit } }),
+
+  // Edit script between two versions: ["=", n] keep, ["-", n] drop, ["+", text] insert; granularity 'line' or 'word'
+  getVersionDiff: (id, from, to, granularity = 'line') =>
+    api.get(`/api/documents/${id}/versions/diff`, { params: { from, to, granularity } }),
+
   // Set document parent (for tree hierarchy)
   setDocumentParent: (id, parentId) => api.post(`/api/documents/${id}/parent`, null, {
     params: { parentId }